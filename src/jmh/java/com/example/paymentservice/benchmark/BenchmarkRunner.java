@@ -0,0 +1,143 @@
+package com.example.paymentservice.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs the JMH benchmarks, writes their results as JSON and compares every score with the stored baseline, which is
+ * JMH's JSON output of an earlier run. A benchmark regressed when its throughput dropped by more than the threshold
+ * (or, for time based modes, its time per operation grew by more than it) and by more than the error margins of both
+ * runs combined, so a noisy benchmark is not reported on its spread alone. Run through the {@code jmh} Maven profile:
+ * <pre>
+ * ./mvnw verify -Pjmh -DskipTests
+ * ./mvnw verify -Pjmh -DskipTests -Djmh.include=PaymentServiceBenchmark -Djmh.args="-f 1 -wi 1 -i 3"
+ * ./mvnw verify -Pjmh -DskipTests -Djmh.updateBaseline=true
+ * </pre>
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> arguments = parse(args);
+        Path result = Path.of(arguments.get("result"));
+        Path baseline = Path.of(arguments.get("baseline"));
+        double threshold = Double.parseDouble(arguments.getOrDefault("threshold", "0.15"));
+        boolean failOnRegression = Boolean.parseBoolean(arguments.get("fail-on-regression"));
+
+        Files.createDirectories(result.toAbsolutePath().getParent());
+        String jmhArgs = arguments.getOrDefault("jmh-args", "").trim();
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(jmhArgs.isEmpty() ? new String[0] : jmhArgs.split("\\s+")))
+                .include(arguments.getOrDefault("include", BenchmarkRunner.class.getPackageName()))
+                .resultFormat(ResultFormatType.JSON)
+                .result(result.toString())
+                .shouldFailOnError(true)
+                .build();
+        new Runner(options).run();
+
+        if (Boolean.parseBoolean(arguments.get("update-baseline"))) {
+            Files.copy(result, baseline, StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("Baseline updated: " + baseline);
+            return;
+        }
+        if (!Files.exists(baseline)) {
+            System.out.println("No baseline at " + baseline + ", run with -Djmh.updateBaseline=true to record one");
+            return;
+        }
+        List<String> regressions = compare(read(baseline), read(result), threshold);
+        if (!regressions.isEmpty()) {
+            System.out.printf("%d benchmark(s) regressed by more than %.0f%%: %s%n", regressions.size(),
+                    threshold * 100, regressions);
+            if (failOnRegression) {
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Prints how every current score compares with its baseline and returns the benchmarks that regressed.
+     */
+    static List<String> compare(Map<String, Score> baseline, Map<String, Score> current, double threshold) {
+        List<String> regressions = new ArrayList<>();
+        System.out.println();
+        System.out.printf("%-100s %14s %14s %8s%n", "Benchmark", "Baseline", "Current", "Change");
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score now = entry.getValue();
+            Score before = baseline.get(entry.getKey());
+            if (before == null || !before.unit().equals(now.unit())) {
+                System.out.printf("%-100s %14s %14.3f %8s  %s%n", entry.getKey(), "-", now.value(), "-",
+                        before == null ? "new" : "unit changed, not compared");
+                continue;
+            }
+            double change = (now.value() - before.value()) / before.value();
+            // For throughput higher is better, for time per operation lower is
+            double loss = now.throughput() ? -change : change;
+            boolean significant = Math.abs(now.value() - before.value()) > before.error() + now.error();
+            String verdict = "";
+            if (loss > threshold) {
+                verdict = significant ? "REGRESSION" : "slower, within error";
+                if (significant) {
+                    regressions.add(entry.getKey());
+                }
+            } else if (loss < -threshold && significant) {
+                verdict = "improved";
+            }
+            System.out.printf("%-100s %14.3f %14.3f %+7.1f%%  %s%n", entry.getKey(), before.value(), now.value(),
+                    change * 100, verdict);
+        }
+        return regressions;
+    }
+
+    // Scores of a JMH JSON result file, keyed by benchmark, mode and parameters
+    static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file.toFile())) {
+            Map<String, String> params = new TreeMap<>();
+            JsonNode paramsNode = run.path("params");
+            for (Iterator<Map.Entry<String, JsonNode>> it = paramsNode.fields(); it.hasNext(); ) {
+                Map.Entry<String, JsonNode> param = it.next();
+                params.put(param.getKey(), param.getValue().asText());
+            }
+            String mode = run.path("mode").asText();
+            String key = run.path("benchmark").asText() + " (" + mode + ")" + (params.isEmpty() ? "" : " " + params);
+            JsonNode metric = run.path("primaryMetric");
+            scores.put(key, new Score(metric.path("score").asDouble(), metric.path("scoreError").asDouble(0),
+                    metric.path("scoreUnit").asText(), mode.equals("thrpt")));
+        }
+        return scores;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> arguments = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            arguments.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return arguments;
+    }
+
+    record Score(double value, double error, String unit, boolean throughput) {
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.paymentservice.benchmark;
+
+import com.example.paymentservice.config.FraudRuleProperties;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.service.FraudRuleEngine;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local fraud screening with every kind of rule configured: thresholds, 1000-entry allow and deny lists and velocity
+ * limits on every provider. Screening runs for every payment, so it should stay well under a microsecond, over
+ * 1000 ops/ms.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FraudRuleEngineBenchmark {
+
+    private static final PaymentProviderType[] PROVIDERS = PaymentProviderType.values();
+
+    private FraudRuleEngine engine;
+    private Money[] amounts;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        FraudRuleProperties properties = new FraudRuleProperties();
+        properties.setApproveBelow(List.of(Money.parse("5")));
+        properties.setDenyAbove(List.of(Money.parse("10000")));
+        List<Money> allow = new ArrayList<>();
+        List<Money> deny = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            allow.add(Money.of(999 + i * 100L, 2));
+            deny.add(Money.of(50 + i * 300L, 2));
+        }
+        properties.setAllow(allow);
+        properties.setDeny(deny);
+        properties.getVelocity().setLimits(Map.of("paypal", 1_000_000L, "stripe", 1_000_000L,
+                "square", 1_000_000L, "auto", 1_000_000L));
+        engine = new FraudRuleEngine(properties, new StandardEnvironment(),
+                new PrometheusMeterRegistry(PrometheusConfig.DEFAULT));
+
+        // A mix that reaches every rule
+        SplittableRandom random = new SplittableRandom(42);
+        amounts = new Money[1024];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = Money.of(random.nextLong(1, 1_200_000), 2);
+        }
+    }
+
+    @Benchmark
+    public FraudRuleEngine.Decision screen() {
+        int i = next++ & (amounts.length - 1);
+        // Every fourth payment is AUTO routed
+        PaymentProviderType provider = (i & 3) == 3 ? null : PROVIDERS[i % PROVIDERS.length];
+        return engine.screen(provider, amounts[i]);
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.paymentservice.benchmark;
+
+import com.example.paymentservice.config.PaymentProviderProperties;
+import com.example.paymentservice.controller.PaymentController;
+import com.example.paymentservice.exception.GlobalExceptionHandler;
+import com.example.paymentservice.exception.PaymentRejectedException;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.example.paymentservice.provider.PaymentProviderResilience;
+import com.example.paymentservice.service.PaymentRequestValidator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.beanvalidation.SpringValidatorAdapter;
+import org.springframework.web.bind.MethodArgumentNotValidException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turning the errors a payment most often ends with into a response body: creating the exception where the service
+ * would, mapping it in {@link GlobalExceptionHandler} and writing the JSON. Rejections are measured both as they are
+ * made now, with a {@link PaymentRejectedException}, and as they used to be, with an exception that fills in its stack
+ * trace and a body serialized per response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GlobalExceptionHandlerBenchmark {
+
+    private GlobalExceptionHandler handler;
+    private ObjectMapper objectMapper;
+    private CircuitBreaker circuitBreaker;
+    private Validator validator;
+    private PaymentRequestValidator requestValidator;
+    private PaymentRequest invalidRequest;
+    private MethodParameter requestParameter;
+
+    @Setup
+    public void setUp() throws NoSuchMethodException {
+        handler = new GlobalExceptionHandler();
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        circuitBreaker = new PaymentProviderResilience(new PaymentProviderProperties(), new SimpleMeterRegistry())
+                .circuitBreaker(PaymentProviderType.STRIPE);
+        circuitBreaker.transitionToOpenState();
+
+        validator = Validation.buildDefaultValidatorFactory().getValidator();
+        requestValidator = new PaymentRequestValidator(validator);
+        invalidRequest = new PaymentRequest();
+        invalidRequest.setProvider(PaymentProviderType.STRIPE);
+        invalidRequest.setAmount(Money.of(-1, 0));
+        requestParameter = new MethodParameter(
+                PaymentController.class.getMethod("processPaymentReactive", PaymentRequest.class), 0);
+    }
+
+    @Benchmark
+    public byte[] fraudRejection() {
+        return handler.handlePaymentRejectedException(PaymentRejectedException.FRAUDULENT).getBody();
+    }
+
+    @Benchmark
+    public byte[] fraudRejectionWithStackTrace() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(
+                handler.handleIllegalArgumentException(new IllegalArgumentException("Fraudulent transaction detected")));
+    }
+
+    @Benchmark
+    public byte[] providerUnavailable() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(handler.handleCallNotPermittedException(
+                CallNotPermittedException.createCallNotPermittedException(circuitBreaker)));
+    }
+
+    @Benchmark
+    public byte[] validationFailure() {
+        try {
+            requestValidator.validate(invalidRequest);
+        } catch (PaymentRejectedException e) {
+            return handler.handlePaymentRejectedException(e).getBody();
+        }
+        throw new IllegalStateException("The request should have been rejected");
+    }
+
+    @Benchmark
+    public byte[] validationFailureWithStackTrace() throws JsonProcessingException {
+        // What @Valid does: validate into a binding result, then throw if it has errors
+        BeanPropertyBindingResult bindingResult = new BeanPropertyBindingResult(invalidRequest, "paymentRequest");
+        new SpringValidatorAdapter(validator).validate(invalidRequest, bindingResult);
+        return objectMapper.writeValueAsBytes(handler.handleValidationExceptions(
+                new MethodArgumentNotValidException(requestParameter, bindingResult)));
+    }
+
+    @Benchmark
+    public byte[] unexpectedError() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(handler.handleException(new IllegalStateException("Provider call failed")));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.paymentservice.benchmark;
+
+import com.example.paymentservice.config.ObserverDispatchProperties;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentTransaction;
+import com.example.paymentservice.observer.AsyncObserverDispatcher;
+import com.example.paymentservice.observer.OverflowPolicy;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handing a committed transaction to the three observers the application registers. The observers do nothing, so this
+ * is the cost the payment thread pays for the hand-off, plus whatever waiting the overflow policy adds.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObserverDispatchBenchmark {
+
+    @Param({"BLOCK", "DROP_OLDEST"})
+    private OverflowPolicy overflowPolicy;
+
+    private AsyncObserverDispatcher dispatcher;
+    private PaymentTransaction transaction;
+
+    @Setup
+    public void setUp() {
+        ObserverDispatchProperties properties = new ObserverDispatchProperties();
+        properties.setOverflowPolicy(overflowPolicy);
+        dispatcher = new AsyncObserverDispatcher(properties, new SimpleMeterRegistry());
+        // Separate classes, as the dispatcher names its meters and threads after them
+        dispatcher.registerObserver(new LoggingStub());
+        dispatcher.registerObserver(new AnalyticsStub());
+        dispatcher.registerObserver(new NotificationStub());
+
+        transaction = new PaymentTransaction();
+        transaction.setId(1L);
+        transaction.setProvider("StripeProvider");
+        transaction.setAmount(Money.of(14999, 2));
+        transaction.setSuccessful(true);
+    }
+
+    @TearDown
+    public void tearDown() {
+        dispatcher.destroy();
+    }
+
+    @Benchmark
+    public void notifyObservers() {
+        dispatcher.notifyObservers(transaction);
+    }
+
+    private static final class LoggingStub extends Stubs.NoOpObserver {
+    }
+
+    private static final class AnalyticsStub extends Stubs.NoOpObserver {
+    }
+
+    private static final class NotificationStub extends Stubs.NoOpObserver {
+    }
+}
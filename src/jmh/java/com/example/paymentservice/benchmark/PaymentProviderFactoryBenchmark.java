@@ -0,0 +1,46 @@
+package com.example.paymentservice.benchmark;
+
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.provider.PaymentProvider;
+import com.example.paymentservice.provider.PaymentProviderFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Provider lookup, done once or twice for every payment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentProviderFactoryBenchmark {
+
+    private static final PaymentProviderType[] PROVIDERS = PaymentProviderType.values();
+
+    private PaymentProviderFactory factory;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        factory = Stubs.providerFactory();
+    }
+
+    @Benchmark
+    public PaymentProvider getPaymentProvider() {
+        // Cycle through the providers so the lookup cannot be folded into a constant
+        next = next == PROVIDERS.length - 1 ? 0 : next + 1;
+        return factory.getPaymentProvider(PROVIDERS[next]);
+    }
+}
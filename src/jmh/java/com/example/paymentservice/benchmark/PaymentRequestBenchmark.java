@@ -0,0 +1,80 @@
+package com.example.paymentservice.benchmark;
+
+import com.example.paymentservice.model.PaymentRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading a payment request body the way {@code @Valid @RequestBody} does: Jackson with Spring's defaults, then bean
+ * validation. The invalid request fails the class-level provider check and the amount range.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentRequestBenchmark {
+
+    private static final byte[] PINNED = "{\"provider\": \"STRIPE\", \"amount\": 149.99}"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] AUTO = "{\"routing\": \"AUTO\", \"allowFailover\": true, \"amount\": 149.99}"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final byte[] INVALID = "{\"amount\": -1}".getBytes(StandardCharsets.UTF_8);
+
+    private ObjectMapper objectMapper;
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+    }
+
+    @TearDown
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public PaymentRequest deserialize() throws IOException {
+        return objectMapper.readValue(PINNED, PaymentRequest.class);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PaymentRequest>> deserializeAndValidate() throws IOException {
+        return validator.validate(objectMapper.readValue(PINNED, PaymentRequest.class));
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PaymentRequest>> deserializeAndValidateAuto() throws IOException {
+        return validator.validate(objectMapper.readValue(AUTO, PaymentRequest.class));
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<PaymentRequest>> deserializeAndValidateInvalid() throws IOException {
+        return validator.validate(objectMapper.readValue(INVALID, PaymentRequest.class));
+    }
+}
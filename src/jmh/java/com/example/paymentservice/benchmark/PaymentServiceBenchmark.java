@@ -0,0 +1,113 @@
+package com.example.paymentservice.benchmark;
+
+import com.example.paymentservice.config.BatchPaymentProperties;
+import com.example.paymentservice.config.FraudRuleProperties;
+import com.example.paymentservice.config.ObserverDispatchProperties;
+import com.example.paymentservice.config.PaymentProviderProperties;
+import com.example.paymentservice.config.ProviderRoutingProperties;
+import com.example.paymentservice.config.TransactionPersistenceProperties;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.example.paymentservice.model.PaymentRouting;
+import com.example.paymentservice.observer.AsyncObserverDispatcher;
+import com.example.paymentservice.provider.PaymentProviderResilience;
+import com.example.paymentservice.provider.PaymentProviderRouter;
+import com.example.paymentservice.service.DurabilityMode;
+import com.example.paymentservice.service.FraudRuleEngine;
+import com.example.paymentservice.service.PaymentService;
+import com.example.paymentservice.service.PaymentStageMetrics;
+import com.example.paymentservice.service.PaymentTransactionWriter;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PaymentService#processPayment} with the fraud service, the providers and the database stubbed out, so what
+ * is left is the service's own work: routing, circuit breakers and bulkheads, stage timers and the transaction writer.
+ * No observers are registered; {@link ObserverDispatchBenchmark} covers them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PaymentServiceBenchmark {
+
+    @Param({"SYNC", "GROUP_COMMIT", "WRITE_BEHIND"})
+    private DurabilityMode durabilityMode;
+
+    private PaymentService paymentService;
+    private AsyncObserverDispatcher observerDispatcher;
+    private PaymentTransactionWriter transactionWriter;
+    private PaymentRequest pinned;
+    private PaymentRequest auto;
+
+    @Setup
+    public void setUp() {
+        PrometheusMeterRegistry meterRegistry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+        PaymentProviderProperties providerProperties = new PaymentProviderProperties();
+        PaymentProviderResilience providerResilience = new PaymentProviderResilience(providerProperties, meterRegistry);
+        TransactionPersistenceProperties persistenceProperties = new TransactionPersistenceProperties();
+        persistenceProperties.setMode(durabilityMode);
+        observerDispatcher = new AsyncObserverDispatcher(new ObserverDispatchProperties(), meterRegistry);
+        transactionWriter = new PaymentTransactionWriter(Stubs.transactionRepository(), persistenceProperties,
+                meterRegistry);
+
+        paymentService = new PaymentService();
+        ReflectionTestUtils.setField(paymentService, "observerDispatcher", observerDispatcher);
+        ReflectionTestUtils.setField(paymentService, "paymentProviderFactory", Stubs.providerFactory());
+        ReflectionTestUtils.setField(paymentService, "providerResilience", providerResilience);
+        ReflectionTestUtils.setField(paymentService, "providerRouter",
+                new PaymentProviderRouter(providerResilience, new ProviderRoutingProperties(), meterRegistry));
+        ReflectionTestUtils.setField(paymentService, "transactionWriter", transactionWriter);
+        ReflectionTestUtils.setField(paymentService, "stageMetrics", new PaymentStageMetrics(meterRegistry));
+        // No rules, so every payment still goes through the fraud service stub
+        ReflectionTestUtils.setField(paymentService, "fraudRules",
+                new FraudRuleEngine(new FraudRuleProperties(), new StandardEnvironment(), meterRegistry));
+        ReflectionTestUtils.setField(paymentService, "fraudDetectionService",
+                Stubs.fraudDetectionService(meterRegistry));
+        ReflectionTestUtils.setField(paymentService, "providerProperties", providerProperties);
+        ReflectionTestUtils.setField(paymentService, "batchProperties", new BatchPaymentProperties());
+
+        pinned = new PaymentRequest();
+        pinned.setProvider(PaymentProviderType.STRIPE);
+        pinned.setAmount(Money.of(14999, 2));
+        auto = new PaymentRequest();
+        auto.setRouting(PaymentRouting.AUTO);
+        auto.setAllowFailover(true);
+        auto.setAmount(Money.of(14999, 2));
+    }
+
+    @TearDown
+    public void tearDown() {
+        transactionWriter.destroy();
+        observerDispatcher.destroy();
+    }
+
+    @Benchmark
+    public PaymentProviderType processPinned() {
+        return paymentService.processPayment(pinned);
+    }
+
+    @Benchmark
+    public PaymentProviderType processAuto() {
+        return paymentService.processPayment(auto);
+    }
+}
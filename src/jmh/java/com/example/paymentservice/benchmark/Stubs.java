@@ -0,0 +1,77 @@
+package com.example.paymentservice.benchmark;
+
+import com.example.paymentservice.config.FraudBatchProperties;
+import com.example.paymentservice.config.FraudCacheProperties;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.example.paymentservice.model.PaymentTransaction;
+import com.example.paymentservice.observer.Observer;
+import com.example.paymentservice.provider.PaymentProvider;
+import com.example.paymentservice.provider.PaymentProviderFactory;
+import com.example.paymentservice.repository.PaymentTransactionRepository;
+import com.example.paymentservice.service.FraudDetectionService;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * In-process stand-ins for the fraud service, the providers' APIs and the database, so benchmarks measure the
+ * service's own code.
+ */
+final class Stubs {
+
+    private Stubs() {
+    }
+
+    static class NoOpObserver implements Observer {
+
+        @Override
+        public void update(PaymentTransaction transaction) {
+        }
+    }
+
+    record Provider(PaymentProviderType getType) implements PaymentProvider {
+
+        @Override
+        public void processPayment(PaymentRequest request) {
+        }
+    }
+
+    // One provider stub for every type
+    static PaymentProviderFactory providerFactory() {
+        PaymentProviderType[] types = PaymentProviderType.values();
+        PaymentProvider[] providers = new PaymentProvider[types.length];
+        for (int i = 0; i < types.length; i++) {
+            providers[i] = new Provider(types[i]);
+        }
+        return PaymentProviderFactory.of(providers);
+    }
+
+    // Never flags a payment and never calls the fraud service
+    static FraudDetectionService fraudDetectionService(MeterRegistry meterRegistry) {
+        return new FraudDetectionService("http://localhost", Duration.ofSeconds(2), Duration.ofSeconds(3),
+                new FraudCacheProperties(), new FraudBatchProperties(), meterRegistry) {
+            @Override
+            public boolean isFraudulent(Money amount) {
+                return false;
+            }
+        };
+    }
+
+    // save and saveAll hand back what they were given; nothing else is used on the payment path
+    static PaymentTransactionRepository transactionRepository() {
+        return (PaymentTransactionRepository) Proxy.newProxyInstance(Stubs.class.getClassLoader(),
+                new Class<?>[]{PaymentTransactionRepository.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "save", "saveAll" -> args[0];
+                    case "findJournalSequencesFrom" -> List.of();
+                    case "findMaxJournalSequence" -> 0L;
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "PaymentTransactionRepository stub";
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
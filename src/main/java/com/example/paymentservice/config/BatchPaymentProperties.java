@@ -0,0 +1,32 @@
+package com.example.paymentservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.batch")
+public class BatchPaymentProperties {
+
+    // Larger submissions are rejected with 400
+    private int maxItems = 10_000;
+
+    // Items fraud-checked together, and successful items whose records are written together
+    private int chunkSize = 100;
+
+    // Getters and setters
+    public int getMaxItems() {
+        return maxItems;
+    }
+
+    public void setMaxItems(int maxItems) {
+        this.maxItems = maxItems;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+}
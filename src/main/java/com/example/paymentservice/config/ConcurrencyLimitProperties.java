@@ -0,0 +1,124 @@
+package com.example.paymentservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled = true;
+
+    // Payments processed at once, before the limit has adapted to the observed latency
+    private int initialLimit = 20;
+
+    private int minLimit = 10;
+
+    // Keep it below server.tomcat.threads.max, so that some request threads are always free to shed the excess
+    private int maxLimit = 150;
+
+    // Latency may grow to this multiple of its long-term average before the limit shrinks
+    private double tolerance = 1.5;
+
+    // Weight of each new limit estimate; lower values react more slowly but keep the limit steadier
+    private double smoothing = 0.2;
+
+    // The limit is adjusted once per window, from the average latency of the payments that completed in it
+    private Duration window = Duration.ofMillis(100);
+
+    // Windows averaged into the long-term latency
+    private int longWindow = 600;
+
+    // Sent as Retry-After with shed payments
+    private Duration retryAfter = Duration.ofSeconds(1);
+
+    // Share of the limit kept for each of paypal, stripe, square and auto, usable even when the rest is taken. Carved
+    // out of the limit, so a provider alone can use the limit less the others' shares
+    private Map<String, Double> reserved = new HashMap<>(Map.of(
+            "paypal", 0.1, "stripe", 0.1, "square", 0.1, "auto", 0.1));
+
+    // Getters and setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public double getTolerance() {
+        return tolerance;
+    }
+
+    public void setTolerance(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public double getSmoothing() {
+        return smoothing;
+    }
+
+    public void setSmoothing(double smoothing) {
+        this.smoothing = smoothing;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    public int getLongWindow() {
+        return longWindow;
+    }
+
+    public void setLongWindow(int longWindow) {
+        this.longWindow = longWindow;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public Map<String, Double> getReserved() {
+        return reserved;
+    }
+
+    public void setReserved(Map<String, Double> reserved) {
+        this.reserved = reserved;
+    }
+}
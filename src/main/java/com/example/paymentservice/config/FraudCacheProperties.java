@@ -0,0 +1,87 @@
+package com.example.paymentservice.config;
+
+import com.example.paymentservice.model.Money;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConfigurationProperties(prefix = "fraud.cache")
+public class FraudCacheProperties {
+
+    private boolean enabled = true;
+
+    // Verdicts are re-checked remotely once they are this old
+    private Duration ttl = Duration.ofSeconds(30);
+
+    // Entry cap; Caffeine evicts with W-TinyLFU beyond it
+    private long maximumSize = 10_000;
+
+    // Checked in order, each against amounts in its currency; amounts no rule covers are cached to the exact minor unit
+    private List<Bucket> buckets = new ArrayList<>();
+
+    // Getters and setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public List<Bucket> getBuckets() {
+        return buckets;
+    }
+
+    public void setBuckets(List<Bucket> buckets) {
+        this.buckets = buckets;
+    }
+
+    /**
+     * Amounts up to {@code upTo} share one verdict per {@code width}-wide bucket, e.g. {@code upTo: 100, width: 1}
+     * treats 12.10 and 12.95 as the same check. Both are in the same currency, e.g. {@code upTo: 10000 JPY,
+     * width: 100 JPY}, and the bucket only covers amounts in it.
+     */
+    public static class Bucket {
+
+        private Money upTo;
+
+        private Money width;
+
+        // Getters and setters
+        public Money getUpTo() {
+            return upTo;
+        }
+
+        public void setUpTo(Money upTo) {
+            this.upTo = upTo;
+        }
+
+        public Money getWidth() {
+            return width;
+        }
+
+        public void setWidth(Money width) {
+            this.width = width;
+        }
+    }
+}
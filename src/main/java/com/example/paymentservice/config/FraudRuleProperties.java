@@ -0,0 +1,144 @@
+package com.example.paymentservice.config;
+
+import com.example.paymentservice.model.Money;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@ConfigurationProperties(prefix = "fraud.rules")
+public class FraudRuleProperties {
+
+    private boolean enabled = true;
+
+    // Amounts are written as 19.99, in Money.DEFAULT_CURRENCY, or 1500 JPY; each rule only applies to amounts in its
+    // own currency
+
+    // Amounts below these are approved without a remote check, at most one per currency; none by default
+    private List<Money> approveBelow = new ArrayList<>();
+
+    // Amounts above these are rejected without a remote check, at most one per currency; none by default
+    private List<Money> denyAbove = new ArrayList<>();
+
+    // Exact amounts approved or rejected without a remote check, e.g. plan prices or known card-testing amounts
+    private List<Money> allow = new ArrayList<>();
+
+    private List<Money> deny = new ArrayList<>();
+
+    private Velocity velocity = new Velocity();
+
+    // Optional file with fraud.rules overrides, re-read when it changes; file and reload-interval are not reloaded
+    private String file;
+
+    private Duration reloadInterval = Duration.ofSeconds(10);
+
+    // Getters and setters
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<Money> getApproveBelow() {
+        return approveBelow;
+    }
+
+    public void setApproveBelow(List<Money> approveBelow) {
+        this.approveBelow = approveBelow;
+    }
+
+    public List<Money> getDenyAbove() {
+        return denyAbove;
+    }
+
+    public void setDenyAbove(List<Money> denyAbove) {
+        this.denyAbove = denyAbove;
+    }
+
+    public List<Money> getAllow() {
+        return allow;
+    }
+
+    public void setAllow(List<Money> allow) {
+        this.allow = allow;
+    }
+
+    public List<Money> getDeny() {
+        return deny;
+    }
+
+    public void setDeny(List<Money> deny) {
+        this.deny = deny;
+    }
+
+    public Velocity getVelocity() {
+        return velocity;
+    }
+
+    public void setVelocity(Velocity velocity) {
+        this.velocity = velocity;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public Duration getReloadInterval() {
+        return reloadInterval;
+    }
+
+    public void setReloadInterval(Duration reloadInterval) {
+        this.reloadInterval = reloadInterval;
+    }
+
+    /**
+     * Once a provider has taken {@code limits.<provider>} payments within {@code window}, its payments are no longer
+     * approved locally. Keys are {@code paypal}, {@code stripe}, {@code square} and {@code auto}, the last for
+     * {@code AUTO} routed payments, which have no provider yet when they are screened.
+     */
+    public static class Velocity {
+
+        private Duration window = Duration.ofMinutes(1);
+
+        // The window slides in steps of window / slots
+        private int slots = 12;
+
+        private Map<String, Long> limits = new HashMap<>();
+
+        // Getters and setters
+        public Duration getWindow() {
+            return window;
+        }
+
+        public void setWindow(Duration window) {
+            this.window = window;
+        }
+
+        public int getSlots() {
+            return slots;
+        }
+
+        public void setSlots(int slots) {
+            this.slots = slots;
+        }
+
+        public Map<String, Long> getLimits() {
+            return limits;
+        }
+
+        public void setLimits(Map<String, Long> limits) {
+            this.limits = limits;
+        }
+    }
+}
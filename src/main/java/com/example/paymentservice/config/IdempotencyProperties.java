@@ -0,0 +1,45 @@
+package com.example.paymentservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.idempotency")
+public class IdempotencyProperties {
+
+    // How long a completed response is replayed for the same Idempotency-Key
+    private Duration ttl = Duration.ofHours(24);
+
+    // Keys kept in memory; older ones are still found in the database
+    private long maximumSize = 100_000;
+
+    // How often expired keys are deleted from the database
+    private Duration purgeInterval = Duration.ofHours(1);
+
+    // Getters and setters
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(long maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Duration getPurgeInterval() {
+        return purgeInterval;
+    }
+
+    public void setPurgeInterval(Duration purgeInterval) {
+        this.purgeInterval = purgeInterval;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.paymentservice.config;
+
+import com.example.paymentservice.model.Money;
+import org.springframework.boot.context.properties.ConfigurationPropertiesBinding;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Binds amount properties such as {@code 10000} or {@code 1500000 JPY} to {@link Money}, from text or from the numbers
+ * YAML files hold, without going through {@code double} arithmetic.
+ */
+@Component
+@ConfigurationPropertiesBinding
+public class MoneyPropertyConverter implements Converter<Object, Money> {
+
+    @Override
+    public Money convert(Object source) {
+        return Money.valueOf(source.toString());
+    }
+}
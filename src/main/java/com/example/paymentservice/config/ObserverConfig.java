@@ -6,10 +6,13 @@ import com.example.paymentservice.observer.NotificationObserver;
 import com.example.paymentservice.service.PaymentService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
 
-import javax.annotation.PostConstruct;
+import jakarta.annotation.PostConstruct;
 
+// Registers the observers, so it must run even though nothing depends on it
 @Configuration
+@Lazy(false)
 public class ObserverConfig {
 
     @Autowired
@@ -0,0 +1,45 @@
+package com.example.paymentservice.config;
+
+import com.example.paymentservice.observer.OverflowPolicy;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.observers")
+public class ObserverDispatchProperties {
+
+    // Transactions buffered per observer before the overflow policy applies
+    private int queueCapacity = 1024;
+
+    private OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+
+    // How long shutdown waits for each observer to drain its queue
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+    // Getters and setters
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public Duration getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    public void setShutdownTimeout(Duration shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+}
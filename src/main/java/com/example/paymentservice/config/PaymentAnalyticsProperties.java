@@ -0,0 +1,34 @@
+package com.example.paymentservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.analytics")
+public class PaymentAnalyticsProperties {
+
+    // Aggregates are kept per time slice of this length, the finest window that can be queried
+    private Duration resolution = Duration.ofMinutes(1);
+
+    // How far back aggregates are kept, in whole slices
+    private Duration retention = Duration.ofHours(1);
+
+    // Getters and setters
+    public Duration getResolution() {
+        return resolution;
+    }
+
+    public void setResolution(Duration resolution) {
+        this.resolution = resolution;
+    }
+
+    public Duration getRetention() {
+        return retention;
+    }
+
+    public void setRetention(Duration retention) {
+        this.retention = retention;
+    }
+}
@@ -1,38 +1,325 @@
 package com.example.paymentservice.config;
 
+import com.example.paymentservice.model.PaymentProviderType;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
 @Configuration
 @ConfigurationProperties(prefix = "external.payment")
 public class PaymentProviderProperties {
 
-    private String paypalUrl;
-    private String stripeUrl;
-    private String squareUrl;
+    private Map<PaymentProviderType, Provider> providers = new EnumMap<>(PaymentProviderType.class);
+
+    public Map<PaymentProviderType, Provider> getProviders() {
+        return providers;
+    }
+
+    public void setProviders(Map<PaymentProviderType, Provider> providers) {
+        this.providers = providers;
+    }
 
-    // Getters and setters
-    public String getPaypalUrl() {
-        return paypalUrl;
+    public Provider getProvider(PaymentProviderType providerType) {
+        return providers.computeIfAbsent(providerType, type -> new Provider());
     }
 
-    public void setPaypalUrl(String paypalUrl) {
-        this.paypalUrl = paypalUrl;
+    /**
+     * Endpoint and HTTP client settings of one provider, bound from {@code external.payment.providers.<provider>}.
+     */
+    public static class Provider {
+
+        // Stored with the provider's transactions; defaults to the type's name followed by Provider
+        private String name;
+
+        private String url;
+
+        // Regional endpoints that share this provider's payments round-robin, in place of url
+        private List<String> endpoints = new ArrayList<>();
+
+        // Connection pool cap per endpoint
+        private int maxConnections = 50;
+
+        private Duration connectTimeout = Duration.ofSeconds(2);
+
+        private Duration readTimeout = Duration.ofSeconds(5);
+
+        // How long a request may wait for a pooled connection before failing
+        private Duration poolAcquireTimeout = Duration.ofSeconds(1);
+
+        // Idle connections are kept open for reuse this long
+        private Duration keepAlive = Duration.ofSeconds(30);
+
+        // Negotiate HTTP/2 on the reactive client (h2 over TLS, h2c otherwise), falling back to HTTP/1.1
+        private boolean http2;
+
+        private CircuitBreakerSettings circuitBreaker = new CircuitBreakerSettings();
+
+        private BulkheadSettings bulkhead = new BulkheadSettings();
+
+        // Items of one bulk submission sent to this provider at once; keep it below the bulkhead limit
+        private int batchConcurrency = 10;
+
+        private SerializationSettings serialization = new SerializationSettings();
+
+        /**
+         * The endpoints payments go to: {@code endpoints} if any are set, otherwise {@code url}, otherwise none.
+         */
+        public List<String> getEndpointUrls() {
+            if (!endpoints.isEmpty()) {
+                return endpoints;
+            }
+            return url == null ? List.of() : List.of(url);
+        }
+
+        // Getters and setters
+        public String getName() {
+            return name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public List<String> getEndpoints() {
+            return endpoints;
+        }
+
+        public void setEndpoints(List<String> endpoints) {
+            this.endpoints = endpoints;
+        }
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Duration getConnectTimeout() {
+            return connectTimeout;
+        }
+
+        public void setConnectTimeout(Duration connectTimeout) {
+            this.connectTimeout = connectTimeout;
+        }
+
+        public Duration getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(Duration readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+
+        public Duration getPoolAcquireTimeout() {
+            return poolAcquireTimeout;
+        }
+
+        public void setPoolAcquireTimeout(Duration poolAcquireTimeout) {
+            this.poolAcquireTimeout = poolAcquireTimeout;
+        }
+
+        public Duration getKeepAlive() {
+            return keepAlive;
+        }
+
+        public void setKeepAlive(Duration keepAlive) {
+            this.keepAlive = keepAlive;
+        }
+
+        public boolean isHttp2() {
+            return http2;
+        }
+
+        public void setHttp2(boolean http2) {
+            this.http2 = http2;
+        }
+
+        public CircuitBreakerSettings getCircuitBreaker() {
+            return circuitBreaker;
+        }
+
+        public void setCircuitBreaker(CircuitBreakerSettings circuitBreaker) {
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        public BulkheadSettings getBulkhead() {
+            return bulkhead;
+        }
+
+        public void setBulkhead(BulkheadSettings bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        public int getBatchConcurrency() {
+            return batchConcurrency;
+        }
+
+        public void setBatchConcurrency(int batchConcurrency) {
+            this.batchConcurrency = batchConcurrency;
+        }
+
+        public SerializationSettings getSerialization() {
+            return serialization;
+        }
+
+        public void setSerialization(SerializationSettings serialization) {
+            this.serialization = serialization;
+        }
     }
 
-    public String getStripeUrl() {
-        return stripeUrl;
+    /**
+     * Circuit breaker over a sliding window of the last {@code slidingWindowSize} calls to one provider. It opens when
+     * either the failure rate or the rate of calls slower than {@code slowCallDurationThreshold} reaches its threshold.
+     */
+    public static class CircuitBreakerSettings {
+
+        private int slidingWindowSize = 20;
+
+        private int minimumNumberOfCalls = 10;
+
+        private float failureRateThreshold = 50;
+
+        private float slowCallRateThreshold = 80;
+
+        private Duration slowCallDurationThreshold = Duration.ofSeconds(2);
+
+        private Duration waitDurationInOpenState = Duration.ofSeconds(10);
+
+        private int permittedNumberOfCallsInHalfOpenState = 3;
+
+        // Getters and setters
+        public int getSlidingWindowSize() {
+            return slidingWindowSize;
+        }
+
+        public void setSlidingWindowSize(int slidingWindowSize) {
+            this.slidingWindowSize = slidingWindowSize;
+        }
+
+        public int getMinimumNumberOfCalls() {
+            return minimumNumberOfCalls;
+        }
+
+        public void setMinimumNumberOfCalls(int minimumNumberOfCalls) {
+            this.minimumNumberOfCalls = minimumNumberOfCalls;
+        }
+
+        public float getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(float failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public float getSlowCallRateThreshold() {
+            return slowCallRateThreshold;
+        }
+
+        public void setSlowCallRateThreshold(float slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+        }
+
+        public Duration getSlowCallDurationThreshold() {
+            return slowCallDurationThreshold;
+        }
+
+        public void setSlowCallDurationThreshold(Duration slowCallDurationThreshold) {
+            this.slowCallDurationThreshold = slowCallDurationThreshold;
+        }
+
+        public Duration getWaitDurationInOpenState() {
+            return waitDurationInOpenState;
+        }
+
+        public void setWaitDurationInOpenState(Duration waitDurationInOpenState) {
+            this.waitDurationInOpenState = waitDurationInOpenState;
+        }
+
+        public int getPermittedNumberOfCallsInHalfOpenState() {
+            return permittedNumberOfCallsInHalfOpenState;
+        }
+
+        public void setPermittedNumberOfCallsInHalfOpenState(int permittedNumberOfCallsInHalfOpenState) {
+            this.permittedNumberOfCallsInHalfOpenState = permittedNumberOfCallsInHalfOpenState;
+        }
     }
 
-    public void setStripeUrl(String stripeUrl) {
-        this.stripeUrl = stripeUrl;
+    /**
+     * Caps the calls in flight to one provider, so a slow provider cannot take every request thread with it.
+     */
+    public static class BulkheadSettings {
+
+        private int maxConcurrentCalls = 25;
+
+        // Zero rejects immediately once the provider is at its limit
+        private Duration maxWaitDuration = Duration.ZERO;
+
+        // Getters and setters
+        public int getMaxConcurrentCalls() {
+            return maxConcurrentCalls;
+        }
+
+        public void setMaxConcurrentCalls(int maxConcurrentCalls) {
+            this.maxConcurrentCalls = maxConcurrentCalls;
+        }
+
+        public Duration getMaxWaitDuration() {
+            return maxWaitDuration;
+        }
+
+        public void setMaxWaitDuration(Duration maxWaitDuration) {
+            this.maxWaitDuration = maxWaitDuration;
+        }
     }
 
-    public String getSquareUrl() {
-        return squareUrl;
+    /**
+     * How payment requests are written to one provider. Each provider gets its own copy of the application's
+     * {@code ObjectMapper} with these settings applied.
+     */
+    public static class SerializationSettings {
+
+        private PropertyNaming propertyNaming = PropertyNaming.LOWER_CAMEL_CASE;
+
+        // Leaving out null fields keeps requests to providers that reject unknown nulls valid, and smaller
+        private boolean includeNulls = true;
+
+        // Getters and setters
+        public PropertyNaming getPropertyNaming() {
+            return propertyNaming;
+        }
+
+        public void setPropertyNaming(PropertyNaming propertyNaming) {
+            this.propertyNaming = propertyNaming;
+        }
+
+        public boolean isIncludeNulls() {
+            return includeNulls;
+        }
+
+        public void setIncludeNulls(boolean includeNulls) {
+            this.includeNulls = includeNulls;
+        }
     }
 
-    public void setSquareUrl(String squareUrl) {
-        this.squareUrl = squareUrl;
+    public enum PropertyNaming {
+        LOWER_CAMEL_CASE,
+        SNAKE_CASE,
+        KEBAB_CASE
     }
 }
@@ -0,0 +1,34 @@
+package com.example.paymentservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.routing")
+public class ProviderRoutingProperties {
+
+    // Weight of the newest call in a provider's latency and error rate averages
+    private double alpha = 0.2;
+
+    // A provider's averages fade over this time without calls, so providers that were avoided are tried again
+    private Duration decay = Duration.ofSeconds(10);
+
+    // Getters and setters
+    public double getAlpha() {
+        return alpha;
+    }
+
+    public void setAlpha(double alpha) {
+        this.alpha = alpha;
+    }
+
+    public Duration getDecay() {
+        return decay;
+    }
+
+    public void setDecay(Duration decay) {
+        this.decay = decay;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.paymentservice.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.startup")
+public class StartupProperties {
+
+    // Connect to the providers and the fraud service and run the request path once before reporting ready
+    private boolean warmup;
+
+    // Readiness is reported after this long even if some connections are still being opened
+    private Duration warmupTimeout = Duration.ofSeconds(10);
+
+    // Getters and setters
+    public boolean isWarmup() {
+        return warmup;
+    }
+
+    public void setWarmup(boolean warmup) {
+        this.warmup = warmup;
+    }
+
+    public Duration getWarmupTimeout() {
+        return warmupTimeout;
+    }
+
+    public void setWarmupTimeout(Duration warmupTimeout) {
+        this.warmupTimeout = warmupTimeout;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.paymentservice.config;
+
+import com.example.paymentservice.model.PaymentRequest;
+import com.example.paymentservice.provider.PaymentHttpClients;
+import com.example.paymentservice.service.FraudDetectionService;
+import com.example.paymentservice.service.PaymentRequestValidator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.stereotype.Controller;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warms the payment path up when {@code payment.startup.warmup} is set. Application runners finish before the
+ * readiness state turns to accepting traffic, so a pod is only sent payments once this is done. Under lazy
+ * initialization it is also what creates the beans behind the endpoints, instead of the first requests.
+ */
+@Component
+@ConditionalOnProperty(prefix = "payment.startup", name = "warmup", havingValue = "true")
+public class StartupWarmup implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+    private static final String SAMPLE_REQUEST = "{\"provider\": \"PAYPAL\", \"amount\": 10.0}";
+
+    private final StartupProperties properties;
+    private final ApplicationContext applicationContext;
+    private final ObjectMapper objectMapper;
+    private final PaymentRequestValidator paymentRequestValidator;
+    private final PaymentHttpClients httpClients;
+    private final FraudDetectionService fraudDetectionService;
+
+    public StartupWarmup(StartupProperties properties, ApplicationContext applicationContext,
+                         ObjectMapper objectMapper, PaymentRequestValidator paymentRequestValidator,
+                         PaymentHttpClients httpClients, FraudDetectionService fraudDetectionService) {
+        this.properties = properties;
+        this.applicationContext = applicationContext;
+        this.objectMapper = objectMapper;
+        this.paymentRequestValidator = paymentRequestValidator;
+        this.httpClients = httpClients;
+        this.fraudDetectionService = fraudDetectionService;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        long start = System.nanoTime();
+        applicationContext.getBeansWithAnnotation(Controller.class);
+
+        // Loads the request binding and validation classes; nothing is processed or stored
+        paymentRequestValidator.validate(objectMapper.readValue(SAMPLE_REQUEST, PaymentRequest.class));
+        if (applicationContext instanceof WebServerApplicationContext webServerContext) {
+            requestHealth(webServerContext.getWebServer().getPort());
+        }
+
+        boolean connected = Boolean.TRUE.equals(Mono.when(httpClients.warmUp(), fraudDetectionService.warmUp())
+                .thenReturn(true)
+                .timeout(properties.getWarmupTimeout(), Mono.just(false))
+                .block());
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (connected) {
+            log.info("Warmed up in {} ms", millis);
+        } else {
+            log.warn("Warm-up gave up on connecting after {}, starting anyway", properties.getWarmupTimeout());
+        }
+    }
+
+    // One request through the server builds the security filter chain and the dispatcher's handlers
+    private void requestHealth(int port) throws InterruptedException {
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            client.send(HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/actuator/health"))
+                    .timeout(properties.getWarmupTimeout())
+                    .build(), HttpResponse.BodyHandlers.discarding());
+        } catch (IOException e) {
+            log.warn("Warm-up request to the health endpoint failed: {}", e.toString());
+        }
+    }
+}
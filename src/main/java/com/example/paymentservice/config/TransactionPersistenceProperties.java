@@ -0,0 +1,117 @@
+package com.example.paymentservice.config;
+
+import com.example.paymentservice.service.DurabilityMode;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "payment.persistence")
+public class TransactionPersistenceProperties {
+
+    private DurabilityMode mode = DurabilityMode.GROUP_COMMIT;
+
+    // Records buffered for batching; when full, callers save their own record synchronously
+    private int bufferCapacity = 10_000;
+
+    // Records per insert batch; keep in line with spring.jpa.properties.hibernate.jdbc.batch_size
+    private int batchSize = 100;
+
+    // How long a batch may wait to fill up after its first record; zero flushes whatever queued during the last flush
+    private Duration flushInterval = Duration.ZERO;
+
+    // How long shutdown waits for buffered records to be written
+    private Duration shutdownTimeout = Duration.ofSeconds(10);
+
+    private Journal journal = new Journal();
+
+    // Getters and setters
+    public DurabilityMode getMode() {
+        return mode;
+    }
+
+    public void setMode(DurabilityMode mode) {
+        this.mode = mode;
+    }
+
+    public int getBufferCapacity() {
+        return bufferCapacity;
+    }
+
+    public void setBufferCapacity(int bufferCapacity) {
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    public void setFlushInterval(Duration flushInterval) {
+        this.flushInterval = flushInterval;
+    }
+
+    public Duration getShutdownTimeout() {
+        return shutdownTimeout;
+    }
+
+    public void setShutdownTimeout(Duration shutdownTimeout) {
+        this.shutdownTimeout = shutdownTimeout;
+    }
+
+    public Journal getJournal() {
+        return journal;
+    }
+
+    public void setJournal(Journal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * The memory-mapped journal used in {@code JOURNAL} mode, bound from {@code payment.persistence.journal}.
+     */
+    public static class Journal {
+
+        private String directory = "journal";
+
+        // Size of each memory-mapped segment file; a full segment is closed and a new one started
+        private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+        // Force appended records to disk before answering; without it they survive a process crash but not a power loss
+        private boolean fsync = true;
+
+        // Getters and setters
+        public String getDirectory() {
+            return directory;
+        }
+
+        public void setDirectory(String directory) {
+            this.directory = directory;
+        }
+
+        public DataSize getSegmentSize() {
+            return segmentSize;
+        }
+
+        public void setSegmentSize(DataSize segmentSize) {
+            this.segmentSize = segmentSize;
+        }
+
+        public boolean isFsync() {
+            return fsync;
+        }
+
+        public void setFsync(boolean fsync) {
+            this.fsync = fsync;
+        }
+    }
+}
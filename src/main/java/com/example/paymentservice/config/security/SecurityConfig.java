@@ -1,24 +1,43 @@
 package com.example.paymentservice.config.security;
 
+import org.springframework.boot.actuate.autoconfigure.security.servlet.EndpointRequest;
+import org.springframework.boot.actuate.health.HealthEndpoint;
+import org.springframework.boot.actuate.metrics.MetricsEndpoint;
+import org.springframework.boot.actuate.metrics.export.prometheus.PrometheusScrapeEndpoint;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.security.servlet.PathRequest;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
-import org.springframework.security.config.annotation.web.configuration.WebSecurityConfigurerAdapter;
+import org.springframework.security.config.annotation.web.configurers.AbstractHttpConfigurer;
+import org.springframework.security.config.annotation.web.configurers.HeadersConfigurer;
+import org.springframework.security.web.SecurityFilterChain;
+
+import static org.springframework.security.web.util.matcher.AntPathRequestMatcher.antMatcher;
 
 @Configuration
 @EnableWebSecurity
-public class SecurityConfig extends WebSecurityConfigurerAdapter {
+public class SecurityConfig {
 
-    @Override
-    protected void configure(HttpSecurity http) throws Exception {
-        http.authorizeRequests()
-                .antMatchers("/h2-console/**").permitAll() // Allow access to H2 console
-                .antMatchers("/api/payments/**").permitAll() // Allow unauthenticated access to API endpoints
-                .anyRequest().authenticated()
-                .and().formLogin().permitAll()
-                .and().logout().permitAll()
-                .and().csrf().disable(); // Disable CSRF protection for H2 console
+    @Bean
+    public SecurityFilterChain securityFilterChain(HttpSecurity http,
+                                                   @Value("${spring.h2.console.enabled:false}") boolean h2Console)
+            throws Exception {
+        if (h2Console) {
+            // The matcher needs the console's settings, which only exist while it is enabled
+            http.authorizeHttpRequests(requests -> requests
+                    .requestMatchers(PathRequest.toH2Console()).permitAll()); // Allow access to H2 console
+        }
+        http.authorizeHttpRequests(requests -> requests
+                        .requestMatchers(antMatcher("/api/payments/**")).permitAll() // Allow unauthenticated access to API endpoints
+                        .requestMatchers(EndpointRequest.to(HealthEndpoint.class, MetricsEndpoint.class, PrometheusScrapeEndpoint.class)).permitAll() // Allow health checks and metrics scraping
+                        .anyRequest().authenticated())
+                .formLogin(form -> form.permitAll())
+                .logout(logout -> logout.permitAll())
+                .csrf(AbstractHttpConfigurer::disable); // Disable CSRF protection for H2 console
 
-        http.headers().frameOptions().disable(); // Allow the H2 console to be displayed in a frame
+        http.headers(headers -> headers.frameOptions(HeadersConfigurer.FrameOptionsConfig::disable)); // Allow the H2 console to be displayed in a frame
+        return http.build();
     }
 }
@@ -0,0 +1,26 @@
+package com.example.paymentservice.controller;
+
+import com.example.paymentservice.model.PaymentAnalytics;
+import com.example.paymentservice.observer.AnalyticsObserver;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/payments/analytics")
+public class PaymentAnalyticsController {
+
+    @Autowired
+    private AnalyticsObserver analyticsObserver;
+
+    /**
+     * Aggregates over the last {@code window}, e.g. {@code 15m} or {@code PT15M}, from memory only.
+     */
+    @GetMapping
+    public PaymentAnalytics getAnalytics(@RequestParam(defaultValue = "1h") String window) {
+        return analyticsObserver.snapshot(DurationStyle.detectAndParse(window));
+    }
+}
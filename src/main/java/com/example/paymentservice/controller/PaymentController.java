@@ -1,29 +1,135 @@
 package com.example.paymentservice.controller;
 
+import com.example.paymentservice.config.BatchPaymentProperties;
+import com.example.paymentservice.model.BatchPaymentResult;
+import com.example.paymentservice.model.PaymentProviderType;
 import com.example.paymentservice.model.PaymentRequest;
+import com.example.paymentservice.service.ConcurrencyLimiter;
+import com.example.paymentservice.service.IdempotencyService;
+import com.example.paymentservice.service.PaymentRequestValidator;
 import com.example.paymentservice.service.PaymentService;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.validation.annotation.Validated;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import javax.validation.Valid;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/payments")
-@Validated
 public class PaymentController {
 
     @Autowired
     private PaymentService paymentService;
 
-    @PostMapping("/process")
-    public ResponseEntity<String> processPayment(@Valid @RequestBody PaymentRequest paymentRequest) {
-        paymentService.setPaymentProvider(paymentRequest.getProvider());
-        paymentService.processPayment(paymentRequest);
-        return ResponseEntity.ok(String.format( "%s payment processed successfully", paymentRequest.getProvider()));
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private PaymentRequestValidator paymentRequestValidator;
+
+    @Autowired
+    private ConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private BatchPaymentProperties batchProperties;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @PostMapping(value = "/process", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<String> processPayment(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody byte[] body, HttpServletRequest request) throws IOException {
+        // Bound here rather than by Spring, so the body is still at hand to fingerprint for the Idempotency-Key
+        PaymentRequest paymentRequest = readPayment(body, new ServletServerHttpRequest(request));
+        paymentRequestValidator.validate(paymentRequest);
+        ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire(paymentRequest);
+        try {
+            ResponseEntity<String> response = idempotencyKey == null || idempotencyKey.isBlank()
+                    ? process(paymentRequest)
+                    : idempotencyService.execute(idempotencyKey, body, () -> process(paymentRequest));
+            permit.release(null);
+            return response;
+        } catch (RuntimeException e) {
+            permit.release(e);
+            throw e;
+        }
+    }
+
+    private PaymentRequest readPayment(byte[] body, ServletServerHttpRequest inputMessage) throws IOException {
+        PaymentRequest paymentRequest;
+        try {
+            paymentRequest = objectMapper.readValue(body, PaymentRequest.class);
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException(e.getOriginalMessage(), e, inputMessage);
+        }
+        if (paymentRequest == null) {
+            throw new HttpMessageNotReadableException("Required request body is missing", inputMessage);
+        }
+        return paymentRequest;
+    }
+
+    private ResponseEntity<String> process(PaymentRequest paymentRequest) {
+        PaymentProviderType provider = paymentService.processPayment(paymentRequest);
+        return ResponseEntity.ok(String.format( "%s payment processed successfully", provider));
+    }
+
+    @PostMapping("/process-reactive")
+    public Mono<ResponseEntity<String>> processPaymentReactive(@RequestBody PaymentRequest paymentRequest) {
+        paymentRequestValidator.validate(paymentRequest);
+        ConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire(paymentRequest);
+        return Mono.defer(() -> paymentService.processPaymentReactive(paymentRequest))
+                .doOnSuccess(provider -> permit.release(null))
+                .doOnError(permit::release)
+                .doOnCancel(permit::cancel)
+                .map(provider -> ResponseEntity.ok(String.format("%s payment processed successfully", provider)));
+    }
+
+    @PostMapping(value = "/batch", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<BatchPaymentResult> processBatch(HttpServletRequest request) throws IOException {
+        // Invalid items are rejected one by one in the results rather than failing the whole batch
+        List<PaymentRequest> paymentRequests = readBatch(new ServletServerHttpRequest(request));
+        // One JSON result per line, written as each item completes
+        return paymentService.processBatch(paymentRequests);
+    }
+
+    // Reads the array item by item, so an oversized batch is turned down before the rest of it is bound
+    private List<PaymentRequest> readBatch(ServletServerHttpRequest inputMessage) throws IOException {
+        List<PaymentRequest> paymentRequests = new ArrayList<>();
+        try (JsonParser parser = objectMapper.createParser(inputMessage.getBody())) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new HttpMessageNotReadableException("Batch must be a JSON array of payments", inputMessage);
+            }
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (paymentRequests.size() == batchProperties.getMaxItems()) {
+                    throw new IllegalArgumentException(
+                            "A batch may hold at most " + batchProperties.getMaxItems() + " payments");
+                }
+                paymentRequests.add(parser.readValueAs(PaymentRequest.class));
+            }
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException(e.getOriginalMessage(), e, inputMessage);
+        }
+        if (paymentRequests.isEmpty()) {
+            throw new IllegalArgumentException("Batch must hold at least one payment");
+        }
+        return paymentRequests;
     }
 }
@@ -0,0 +1,40 @@
+package com.example.paymentservice.controller;
+
+import com.example.paymentservice.model.TransactionFilter;
+import com.example.paymentservice.model.TransactionPage;
+import com.example.paymentservice.service.TransactionQueryService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping("/api/payments/transactions")
+public class PaymentTransactionController {
+
+    @Autowired
+    private TransactionQueryService transactionQueryService;
+
+    /**
+     * Filters come from the query string: {@code provider}, {@code successful}, {@code currency},
+     * {@code minAmount}, {@code maxAmount}, and {@code from} and {@code to} as ISO-8601 instants.
+     */
+    @GetMapping
+    public TransactionPage listTransactions(TransactionFilter filter,
+                                            @RequestParam(required = false) String after,
+                                            @RequestParam(defaultValue = "50") int limit) {
+        return transactionQueryService.findPage(filter, after, limit);
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(TransactionFilter filter) {
+        // Written as it is read, one JSON line per transaction
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(out -> transactionQueryService.export(filter, out));
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.paymentservice.exception;
+
+/**
+ * The fraud check of a payment could not be made, so the payment was never sent to a provider.
+ */
+public class FraudCheckFailedException extends RuntimeException {
+
+    public FraudCheckFailedException(Throwable cause) {
+        super("Fraud check failed: " + cause.getMessage(), cause);
+    }
+}
@@ -1,7 +1,12 @@
 package com.example.paymentservice.exception;
 
 import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
 import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -11,8 +16,8 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.validation.FieldError;
 
-import javax.persistence.EntityNotFoundException;
-import javax.validation.ConstraintViolationException;
+import jakarta.persistence.EntityNotFoundException;
+import jakarta.validation.ConstraintViolationException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -20,6 +25,9 @@ import java.util.Map;
 @RestController
 public class GlobalExceptionHandler {
 
+    // A fraud service that timed out or failed is usually back within a second or two
+    private static final String FRAUD_CHECK_RETRY_AFTER_SECONDS = "1";
+
     @ExceptionHandler(IllegalArgumentException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleIllegalArgumentException(IllegalArgumentException e) {
@@ -29,6 +37,12 @@ public class GlobalExceptionHandler {
         return response;
     }
 
+    @ExceptionHandler(PaymentRejectedException.class)
+    public ResponseEntity<byte[]> handlePaymentRejectedException(PaymentRejectedException ex) {
+        // Serialized once per kind of rejection, not per response
+        return ex.getResponse();
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleValidationExceptions(MethodArgumentNotValidException ex) {
@@ -49,6 +63,20 @@ public class GlobalExceptionHandler {
         return response;
     }
 
+    @ExceptionHandler(HttpMessageNotReadableException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public Map<String, String> handleHttpMessageNotReadableException(HttpMessageNotReadableException ex) {
+        // Amounts their currency cannot hold and unknown routings or currencies arrive wrapped like this
+        if (ex.getCause() instanceof InvalidFormatException) {
+            return handleInvalidFormatException((InvalidFormatException) ex.getCause());
+        }
+
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Malformed request");
+        response.put("message", ex.getMessage());
+        return response;
+    }
+
     @ExceptionHandler(ConstraintViolationException.class)
     @ResponseStatus(HttpStatus.BAD_REQUEST)
     public Map<String, String> handleConstraintViolationException(ConstraintViolationException ex) {
@@ -85,6 +113,63 @@ public class GlobalExceptionHandler {
         return response;
     }
 
+    @ExceptionHandler(CallNotPermittedException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, String> handleCallNotPermittedException(CallNotPermittedException ex) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Payment provider unavailable");
+        response.put("message", ex.getMessage());
+        return response;
+    }
+
+    @ExceptionHandler(BulkheadFullException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, String> handleBulkheadFullException(BulkheadFullException ex) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Payment provider busy");
+        response.put("message", ex.getMessage());
+        return response;
+    }
+
+    @ExceptionHandler(NoProviderAvailableException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public Map<String, String> handleNoProviderAvailableException(NoProviderAvailableException ex) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "No payment provider available");
+        response.put("message", ex.getMessage());
+        return response;
+    }
+
+    @ExceptionHandler(FraudCheckFailedException.class)
+    public ResponseEntity<Map<String, String>> handleFraudCheckFailedException(FraudCheckFailedException ex) {
+        // Nothing reached a provider, so the payment is safe to retry
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Fraud check unavailable");
+        response.put("message", ex.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, FRAUD_CHECK_RETRY_AFTER_SECONDS)
+                .body(response);
+    }
+
+    @ExceptionHandler(PaymentNotRecordedException.class)
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Map<String, String> handlePaymentNotRecordedException(PaymentNotRecordedException ex) {
+        // The provider took the payment, so it must not be retried; only its record is missing
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Payment not recorded");
+        response.put("message", ex.getMessage());
+        return response;
+    }
+
+    @ExceptionHandler(IdempotencyKeyReusedException.class)
+    @ResponseStatus(HttpStatus.UNPROCESSABLE_ENTITY)
+    public Map<String, String> handleIdempotencyKeyReusedException(IdempotencyKeyReusedException ex) {
+        Map<String, String> response = new HashMap<>();
+        response.put("error", "Idempotency key reused");
+        response.put("message", ex.getMessage());
+        return response;
+    }
+
     @ExceptionHandler(Exception.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
     public Map<String, String> handleException(Exception ex) {
@@ -0,0 +1,11 @@
+package com.example.paymentservice.exception;
+
+/**
+ * An Idempotency-Key was sent again with a different payment than the one it was first used for.
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String idempotencyKey) {
+        super("Idempotency-Key " + idempotencyKey + " was already used for a different payment");
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.paymentservice.exception;
+
+/**
+ * An {@code AUTO} routed or failing over payment found no provider left to try.
+ */
+public class NoProviderAvailableException extends RuntimeException {
+
+    public NoProviderAvailableException() {
+        super("Every payment provider is unavailable or was already tried");
+    }
+}
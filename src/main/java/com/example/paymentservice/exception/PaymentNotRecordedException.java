@@ -0,0 +1,11 @@
+package com.example.paymentservice.exception;
+
+/**
+ * A provider took the payment, but its transaction could not be recorded.
+ */
+public class PaymentNotRecordedException extends RuntimeException {
+
+    public PaymentNotRecordedException(Throwable cause) {
+        super("Payment processed but not recorded: " + cause.getMessage(), cause);
+    }
+}
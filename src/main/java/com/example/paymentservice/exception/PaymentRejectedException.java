@@ -0,0 +1,63 @@
+package com.example.paymentservice.exception;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A payment turned down before it reached a provider. Rejections are a large share of traffic under attack, so they
+ * are cheap: no stack trace is captured, the common ones are shared instances, and each carries its response body
+ * already serialized, which {@link GlobalExceptionHandler} writes as is.
+ */
+public class PaymentRejectedException extends RuntimeException {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static final PaymentRejectedException FRAUDULENT =
+            rejection("Invalid argument", "Fraudulent transaction detected");
+
+    public static final PaymentRejectedException UNKNOWN_PROVIDER =
+            rejection("Invalid argument", "No payment provider found for the requested type");
+
+    private final ResponseEntity<byte[]> response;
+
+    /**
+     * A rejection answered with {@code 400 Bad Request} and {@code body} as JSON.
+     */
+    public PaymentRejectedException(String message, Map<String, String> body) {
+        this(HttpStatus.BAD_REQUEST, HttpHeaders.EMPTY, message, body);
+    }
+
+    /**
+     * A rejection answered with {@code status}, {@code headers} and {@code body} as JSON.
+     */
+    public PaymentRejectedException(HttpStatus status, HttpHeaders headers, String message, Map<String, String> body) {
+        // Shared and rethrown from many threads, so no stack trace and no suppressed exceptions
+        super(message, null, false, false);
+        try {
+            this.response = ResponseEntity.status(status)
+                    .headers(headers)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(objectMapper.writeValueAsBytes(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public ResponseEntity<byte[]> getResponse() {
+        return response;
+    }
+
+    private static PaymentRejectedException rejection(String error, String message) {
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("error", error);
+        body.put("message", message);
+        return new PaymentRejectedException(message, body);
+    }
+}
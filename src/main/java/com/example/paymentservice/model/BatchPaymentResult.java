@@ -0,0 +1,74 @@
+package com.example.paymentservice.model;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+/**
+ * Outcome of one item of a bulk submission. {@code index} is the item's position in the submitted list, since results
+ * are streamed back as they complete rather than in submission order. {@code provider} is the provider that took the
+ * payment, and is null for an {@code AUTO} routed item that never reached one.
+ */
+public class BatchPaymentResult {
+
+    public enum Status {
+        PROCESSED,
+        // Invalid, or flagged by the fraud check; never sent to the provider
+        REJECTED,
+        FAILED
+    }
+
+    private int index;
+    private PaymentProviderType provider;
+    private Money amount;
+    private Status status;
+    private String message;
+
+    public BatchPaymentResult(int index, PaymentProviderType provider, Money amount, Status status, String message) {
+        this.index = index;
+        this.provider = provider;
+        this.amount = amount;
+        this.status = status;
+        this.message = message;
+    }
+
+    // Getters and setters
+    public int getIndex() {
+        return index;
+    }
+
+    public void setIndex(int index) {
+        this.index = index;
+    }
+
+    public PaymentProviderType getProvider() {
+        return provider;
+    }
+
+    public void setProvider(PaymentProviderType provider) {
+        this.provider = provider;
+    }
+
+    @JsonUnwrapped
+    public Money getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Money amount) {
+        this.amount = amount;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
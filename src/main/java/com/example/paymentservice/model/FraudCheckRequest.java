@@ -1,17 +1,20 @@
 package com.example.paymentservice.model;
 
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
 public class FraudCheckRequest {
-    private double amount;
+    private Money amount;
 
-    public FraudCheckRequest(double amount) {
+    public FraudCheckRequest(Money amount) {
         this.amount = amount;
     }
 
-    public double getAmount() {
+    @JsonUnwrapped
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 }
\ No newline at end of file
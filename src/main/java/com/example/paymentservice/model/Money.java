@@ -0,0 +1,229 @@
+package com.example.paymentservice.model;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import jakarta.persistence.Embeddable;
+import org.hibernate.annotations.EmbeddableInstantiator;
+
+import java.util.Currency;
+import java.util.Objects;
+
+/**
+ * An amount as a whole number of its currency's minor units, e.g. 1999 for 19.99 USD or 500 for 500 JPY, so amounts
+ * are exact and fit in a long. Currencies without minor units, such as gold, are not supported. Written to JSON as
+ * {@code {"amount": 19.99, "currency": "USD"}}, or as {@code amount} and {@code currency} fields of the enclosing
+ * object when the property is {@code @JsonUnwrapped}.
+ */
+@Embeddable
+@EmbeddableInstantiator(MoneyInstantiator.class)
+@JsonSerialize(using = MoneySerializer.class)
+public record Money(long minorUnits, Currency currency) {
+
+    // Amounts arriving without a currency are in this one
+    public static final Currency DEFAULT_CURRENCY = Currency.getInstance("USD");
+
+    // Decimal places parsed amounts are held at before their currency is known; no ISO 4217 currency has more
+    static final int PARSE_SCALE = 4;
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    public Money {
+        Objects.requireNonNull(currency, "currency");
+        if (currency.getDefaultFractionDigits() < 0) {
+            throw new IllegalArgumentException(currency + " has no minor units");
+        }
+    }
+
+    /**
+     * The amount {@code unscaled * 10^-scale} in {@code currency}, like {@code BigDecimal.valueOf(unscaled, scale)}.
+     *
+     * @throws ArithmeticException if the currency has fewer decimal places than the amount needs, or it overflows
+     */
+    public static Money of(long unscaled, int scale, Currency currency) {
+        int fractionDigits = currency.getDefaultFractionDigits();
+        if (scale < 0 || scale >= POWERS_OF_TEN.length || fractionDigits < 0) {
+            throw new ArithmeticException("Unsupported scale " + scale + " for " + currency);
+        }
+        if (scale <= fractionDigits) {
+            return new Money(Math.multiplyExact(unscaled, POWERS_OF_TEN[fractionDigits - scale]), currency);
+        }
+        long divisor = POWERS_OF_TEN[scale - fractionDigits];
+        if (unscaled % divisor != 0) {
+            throw new ArithmeticException("More decimal places than " + currency + " has");
+        }
+        return new Money(unscaled / divisor, currency);
+    }
+
+    public static Money of(long unscaled, int scale) {
+        return of(unscaled, scale, DEFAULT_CURRENCY);
+    }
+
+    /**
+     * Parses a plain or exponent decimal such as {@code 19.99} or {@code 1.5e3}.
+     *
+     * @throws NumberFormatException if the text is not a decimal number
+     * @throws ArithmeticException   if the currency has fewer decimal places than the amount needs, or it overflows
+     */
+    public static Money parse(String text, Currency currency) {
+        return of(parseScaled(text.toCharArray(), 0, text.length()), PARSE_SCALE, currency);
+    }
+
+    public static Money parse(String text) {
+        return parse(text, DEFAULT_CURRENCY);
+    }
+
+    /**
+     * Parses an amount optionally followed by a currency code, as written by {@link #toString()}, e.g.
+     * {@code 19.99 USD} or {@code 500 JPY}; a bare amount is in {@link #DEFAULT_CURRENCY}.
+     *
+     * @throws IllegalArgumentException if the text is not a decimal number or the currency code is unknown
+     * @throws ArithmeticException      if the currency has fewer decimal places than the amount needs, or it overflows
+     */
+    public static Money valueOf(String text) {
+        String trimmed = text.trim();
+        int space = trimmed.lastIndexOf(' ');
+        if (space < 0) {
+            return parse(trimmed);
+        }
+        return parse(trimmed.substring(0, space), Currency.getInstance(trimmed.substring(space + 1)));
+    }
+
+    /**
+     * Parses the decimal in {@code chars[offset, offset + length)} into a long at {@link #PARSE_SCALE} decimal places,
+     * without going through {@code double} or {@code BigDecimal}. Surrounding spaces are ignored.
+     *
+     * @throws NumberFormatException if the text is not a decimal number
+     * @throws ArithmeticException   if it has non-zero digits past {@link #PARSE_SCALE} decimal places, or overflows
+     */
+    static long parseScaled(char[] chars, int offset, int length) {
+        int i = offset;
+        int end = offset + length;
+        while (i < end && chars[i] == ' ') {
+            i++;
+        }
+        while (end > i && chars[end - 1] == ' ') {
+            end--;
+        }
+        boolean negative = i < end && chars[i] == '-';
+        if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+            i++;
+        }
+
+        long digits = 0;
+        // Zeros after the last non-zero digit, multiplied in only when another digit follows, so that trailing zeros
+        // never overflow
+        int pendingZeros = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            char c = chars[i];
+            if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (seenPoint) {
+                    scale++;
+                }
+                if (c == '0') {
+                    pendingZeros++;
+                } else {
+                    if (digits != 0) {
+                        digits = Math.multiplyExact(digits, pow10(pendingZeros + 1));
+                    }
+                    digits = Math.addExact(digits, c - '0');
+                    pendingZeros = 0;
+                }
+            } else if ((c == 'e' || c == 'E') && seenDigit) {
+                break;
+            } else {
+                throw new NumberFormatException("Not a decimal number: " + new String(chars, offset, length));
+            }
+        }
+        if (!seenDigit) {
+            throw new NumberFormatException("Not a decimal number: " + new String(chars, offset, length));
+        }
+        scale -= pendingZeros;
+
+        if (i < end) {
+            // Exponent
+            i++;
+            boolean negativeExponent = i < end && chars[i] == '-';
+            if (i < end && (chars[i] == '-' || chars[i] == '+')) {
+                i++;
+            }
+            if (i == end) {
+                throw new NumberFormatException("Not a decimal number: " + new String(chars, offset, length));
+            }
+            int exponent = 0;
+            for (; i < end; i++) {
+                char c = chars[i];
+                if (c < '0' || c > '9') {
+                    throw new NumberFormatException("Not a decimal number: " + new String(chars, offset, length));
+                }
+                // Past this any non-zero amount overflows anyway
+                exponent = Math.min(exponent * 10 + (c - '0'), 1000);
+            }
+            scale += negativeExponent ? exponent : -exponent;
+        }
+
+        if (digits == 0) {
+            return 0;
+        }
+        int shift = PARSE_SCALE - scale;
+        if (shift < 0) {
+            throw new ArithmeticException("More than " + PARSE_SCALE + " decimal places: "
+                    + new String(chars, offset, length));
+        }
+        long scaled = Math.multiplyExact(digits, pow10(shift));
+        return negative ? -scaled : scaled;
+    }
+
+    public int scale() {
+        return currency.getDefaultFractionDigits();
+    }
+
+    public boolean isNegative() {
+        return minorUnits < 0;
+    }
+
+    /**
+     * The amount as a decimal with its currency's decimal places, e.g. {@code 19.90}, {@code -0.05} or {@code 500}.
+     */
+    public String toPlainString() {
+        int scale = scale();
+        boolean negative = minorUnits < 0;
+        String digits = Long.toUnsignedString(negative ? -minorUnits : minorUnits);
+        if (scale == 0) {
+            return negative ? "-" + digits : digits;
+        }
+        StringBuilder text = new StringBuilder(digits.length() + scale + 2);
+        if (negative) {
+            text.append('-');
+        }
+        for (int i = digits.length(); i <= scale; i++) {
+            text.append('0');
+        }
+        text.append(digits);
+        text.insert(text.length() - scale, '.');
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toPlainString() + " " + currency.getCurrencyCode();
+    }
+
+    private static long pow10(int exponent) {
+        if (exponent >= POWERS_OF_TEN.length) {
+            throw new ArithmeticException("Amount overflows");
+        }
+        return POWERS_OF_TEN[exponent];
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.paymentservice.model;
+
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metamodel.spi.EmbeddableInstantiator;
+import org.hibernate.metamodel.spi.ValueAccess;
+
+import java.util.Currency;
+
+/**
+ * Creates {@link Money} from its columns. Hibernate hands over embeddable values in attribute name order, and its
+ * standard record instantiator passes them to the constructor in that order when copying, which does not match
+ * {@code Money(minorUnits, currency)}.
+ */
+public class MoneyInstantiator implements EmbeddableInstantiator {
+
+    @Override
+    public Object instantiate(ValueAccess valueAccess, SessionFactoryImplementor sessionFactory) {
+        // currency, minorUnits
+        Currency currency = valueAccess.getValue(0, Currency.class);
+        Long minorUnits = valueAccess.getValue(1, Long.class);
+        return currency == null || minorUnits == null ? null : new Money(minorUnits, currency);
+    }
+
+    @Override
+    public boolean isInstance(Object object, SessionFactoryImplementor sessionFactory) {
+        return object instanceof Money;
+    }
+
+    @Override
+    public boolean isSameClass(Object object, SessionFactoryImplementor sessionFactory) {
+        return object.getClass() == Money.class;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.paymentservice.model;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import jakarta.validation.constraints.Min;
+
+/**
+ * Lets {@code @Min} apply to {@link Money}, with the minimum in major units of the amount's currency. Registered with
+ * Hibernate Validator through {@code META-INF/services/jakarta.validation.ConstraintValidator}.
+ */
+public class MoneyMinValidator implements ConstraintValidator<Min, Money> {
+
+    private long minimum;
+
+    @Override
+    public void initialize(Min constraint) {
+        this.minimum = constraint.value();
+    }
+
+    @Override
+    public boolean isValid(Money money, ConstraintValidatorContext context) {
+        return money == null || money.minorUnits() >= Money.of(minimum, 0, money.currency()).minorUnits();
+    }
+}
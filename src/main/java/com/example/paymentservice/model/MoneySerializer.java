@@ -0,0 +1,53 @@
+package com.example.paymentservice.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.fasterxml.jackson.databind.util.NameTransformer;
+
+import java.io.IOException;
+
+/**
+ * Writes {@link Money} as {@code {"amount": 19.99, "currency": "USD"}}, the amount as a JSON number with the currency's
+ * decimal places, formatted from the minor units rather than from a {@code double}. Under {@code @JsonUnwrapped}, the
+ * two fields are written into the enclosing object, which keeps the flat {@code amount} field clients already read.
+ */
+public class MoneySerializer extends StdSerializer<Money> {
+
+    private final NameTransformer unwrapping;
+
+    public MoneySerializer() {
+        this(null);
+    }
+
+    private MoneySerializer(NameTransformer unwrapping) {
+        super(Money.class);
+        this.unwrapping = unwrapping;
+    }
+
+    @Override
+    public void serialize(Money money, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        if (unwrapping == null) {
+            gen.writeStartObject(money);
+            gen.writeFieldName("amount");
+            gen.writeNumber(money.toPlainString());
+            gen.writeStringField("currency", money.currency().getCurrencyCode());
+            gen.writeEndObject();
+        } else {
+            gen.writeFieldName(unwrapping.transform("amount"));
+            gen.writeNumber(money.toPlainString());
+            gen.writeStringField(unwrapping.transform("currency"), money.currency().getCurrencyCode());
+        }
+    }
+
+    @Override
+    public boolean isUnwrappingSerializer() {
+        return unwrapping != null;
+    }
+
+    @Override
+    public JsonSerializer<Money> unwrappingSerializer(NameTransformer unwrapper) {
+        return new MoneySerializer(unwrapper);
+    }
+}
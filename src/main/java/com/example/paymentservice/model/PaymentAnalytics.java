@@ -0,0 +1,18 @@
+package com.example.paymentservice.model;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Payment aggregates over {@code [from, to)}, for all providers and per provider, keyed by the provider name stored
+ * in {@link PaymentTransaction}. Amounts are only ever added up within one currency, so they are given per currency
+ * code. Quantiles are approximate, within 1%.
+ */
+public record PaymentAnalytics(Instant from, Instant to, Summary total, Map<String, Summary> providers) {
+
+    public record Summary(long count, long successful, double successRate, Map<String, Amounts> amounts) {
+    }
+
+    public record Amounts(long count, double total, Map<String, Double> quantiles) {
+    }
+}
@@ -3,5 +3,19 @@ package com.example.paymentservice.model;
 public enum PaymentProviderType {
     PAYPAL,
     STRIPE,
-    SQUARE
-}
\ No newline at end of file
+    SQUARE;
+
+    private static final PaymentProviderType[] VALUES = values();
+
+    /**
+     * The provider with this name, or null if there is none. Unlike {@link #valueOf}, never throws.
+     */
+    public static PaymentProviderType fromName(String name) {
+        for (PaymentProviderType type : VALUES) {
+            if (type.name().equals(name)) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
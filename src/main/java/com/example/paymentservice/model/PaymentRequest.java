@@ -1,16 +1,29 @@
 package com.example.paymentservice.model;
 
-import javax.validation.constraints.Min;
-import javax.validation.constraints.NotNull;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
 
+@JsonDeserialize(using = PaymentRequestDeserializer.class)
 public class PaymentRequest {
 
-    @NotNull(message = "Provider is mandatory")
     private PaymentProviderType provider;
 
+    // The provider as sent when it names none, so validation rejects it rather than Jackson throwing
+    private String unknownProvider;
+
+    private PaymentRouting routing = PaymentRouting.PINNED;
+
+    // Lets a payment that a provider refused without processing it be retried on another provider
+    private boolean allowFailover;
+
+    // Sent as "amount" and "currency" fields; the minimum is checked by MoneyMinValidator
     @NotNull(message = "Amount is mandatory")
     @Min(value = 0, message = "Amount must be greater than or equal to 0")
-    private Double amount;
+    private Money amount;
 
     // Getters and setters
     public PaymentProviderType getProvider() {
@@ -19,13 +32,49 @@ public class PaymentRequest {
 
     public void setProvider(PaymentProviderType provider) {
         this.provider = provider;
+        this.unknownProvider = null;
+    }
+
+    public void setProviderName(String name) {
+        this.provider = PaymentProviderType.fromName(name);
+        this.unknownProvider = provider == null ? name : null;
+    }
+
+    public PaymentRouting getRouting() {
+        return routing;
+    }
+
+    public void setRouting(PaymentRouting routing) {
+        this.routing = routing;
+    }
+
+    public boolean isAllowFailover() {
+        return allowFailover;
+    }
+
+    public void setAllowFailover(boolean allowFailover) {
+        this.allowFailover = allowFailover;
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "Provider is mandatory")
+    public boolean isProviderSet() {
+        // An unknown provider is reported by isProviderKnown instead
+        return provider != null || routing == PaymentRouting.AUTO || unknownProvider != null;
+    }
+
+    @JsonIgnore
+    @AssertTrue(message = "Provider must be one of PAYPAL, STRIPE or SQUARE")
+    public boolean isProviderKnown() {
+        return unknownProvider == null;
     }
 
-    public double getAmount() {
+    @JsonUnwrapped
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 }
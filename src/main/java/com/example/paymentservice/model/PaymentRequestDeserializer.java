@@ -0,0 +1,158 @@
+package com.example.paymentservice.model;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Currency;
+
+/**
+ * Reads a {@link PaymentRequest} field by field, straight from the parser's buffers: the amount is parsed into minor
+ * units without a {@code double} or {@code BigDecimal} in between, and providers, routings and the default currency
+ * are matched without building strings. An unknown provider is kept for validation to reject, as the setter does. An
+ * unknown routing or currency, or an amount its currency cannot hold exactly, fails like any other value Jackson cannot
+ * convert.
+ */
+public class PaymentRequestDeserializer extends StdDeserializer<PaymentRequest> {
+
+    private static final PaymentProviderType[] PROVIDERS = PaymentProviderType.values();
+    private static final PaymentRouting[] ROUTINGS = PaymentRouting.values();
+
+    public PaymentRequestDeserializer() {
+        super(PaymentRequest.class);
+    }
+
+    @Override
+    public PaymentRequest deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        String field;
+        if (p.isExpectedStartObjectToken()) {
+            field = p.nextFieldName();
+        } else if (p.hasToken(JsonToken.FIELD_NAME)) {
+            field = p.currentName();
+        } else {
+            return (PaymentRequest) ctxt.handleUnexpectedToken(PaymentRequest.class, p);
+        }
+
+        PaymentRequest request = new PaymentRequest();
+        // The currency may come after the amount, so the amount is held at Money.PARSE_SCALE until the end
+        boolean hasAmount = false;
+        long amount = 0;
+        Currency currency = Money.DEFAULT_CURRENCY;
+        for (; field != null; field = p.nextFieldName()) {
+            JsonToken token = p.nextToken();
+            switch (field) {
+                case "provider" -> {
+                    if (token == JsonToken.VALUE_NULL) {
+                        request.setProvider(null);
+                    } else if (token == JsonToken.VALUE_STRING) {
+                        PaymentProviderType provider = match(PROVIDERS, p);
+                        if (provider != null) {
+                            request.setProvider(provider);
+                        } else {
+                            request.setProviderName(p.getText());
+                        }
+                    } else if (token.isScalarValue()) {
+                        request.setProviderName(p.getText());
+                    } else {
+                        ctxt.handleUnexpectedToken(String.class, p);
+                    }
+                }
+                case "routing" -> {
+                    if (token != JsonToken.VALUE_NULL) {
+                        PaymentRouting routing = token == JsonToken.VALUE_STRING ? match(ROUTINGS, p) : null;
+                        if (routing == null) {
+                            throw ctxt.weirdStringException(p.getText(), PaymentRouting.class,
+                                    "not one of the values accepted");
+                        }
+                        request.setRouting(routing);
+                    }
+                }
+                case "allowFailover" -> {
+                    if (!token.isScalarValue()) {
+                        ctxt.handleUnexpectedToken(boolean.class, p);
+                    }
+                    request.setAllowFailover(p.getValueAsBoolean());
+                }
+                case "amount" -> {
+                    hasAmount = false;
+                    if (token == JsonToken.VALUE_NULL
+                            || token == JsonToken.VALUE_STRING && p.getTextLength() == 0) {
+                        continue;
+                    }
+                    if (!token.isNumeric() && token != JsonToken.VALUE_STRING) {
+                        ctxt.handleUnexpectedToken(Money.class, p);
+                        continue;
+                    }
+                    try {
+                        amount = Money.parseScaled(p.getTextCharacters(), p.getTextOffset(), p.getTextLength());
+                        hasAmount = true;
+                    } catch (NumberFormatException | ArithmeticException e) {
+                        throw ctxt.weirdStringException(p.getText(), Money.class, e.getMessage());
+                    }
+                }
+                case "currency" -> {
+                    if (token == JsonToken.VALUE_STRING) {
+                        currency = currency(p, ctxt);
+                    } else if (token != JsonToken.VALUE_NULL) {
+                        ctxt.handleUnexpectedToken(Currency.class, p);
+                    }
+                }
+                default -> ctxt.handleUnknownProperty(p, this, request, field);
+            }
+        }
+
+        if (hasAmount) {
+            try {
+                request.setAmount(Money.of(amount, Money.PARSE_SCALE, currency));
+            } catch (ArithmeticException e) {
+                // Only on the way to an error response, so the BigDecimal is no cost to valid requests
+                throw ctxt.weirdStringException(BigDecimal.valueOf(amount, Money.PARSE_SCALE)
+                        .stripTrailingZeros().toPlainString(), Money.class, e.getMessage());
+            }
+        }
+        return request;
+    }
+
+    private static Currency currency(JsonParser p, DeserializationContext ctxt) throws IOException {
+        if (matches(Money.DEFAULT_CURRENCY.getCurrencyCode(), p)) {
+            return Money.DEFAULT_CURRENCY;
+        }
+        String code = p.getText();
+        try {
+            Currency currency = Currency.getInstance(code);
+            if (currency.getDefaultFractionDigits() >= 0) {
+                return currency;
+            }
+        } catch (IllegalArgumentException e) {
+            // Reported below
+        }
+        throw ctxt.weirdStringException(code, Currency.class, "not an ISO 4217 currency with minor units");
+    }
+
+    private static <E extends Enum<E>> E match(E[] values, JsonParser p) throws IOException {
+        for (E value : values) {
+            if (matches(value.name(), p)) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(String name, JsonParser p) throws IOException {
+        int length = p.getTextLength();
+        if (name.length() != length) {
+            return false;
+        }
+        char[] chars = p.getTextCharacters();
+        int offset = p.getTextOffset();
+        for (int i = 0; i < length; i++) {
+            if (chars[offset + i] != name.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.paymentservice.model;
+
+public enum PaymentRouting {
+    // The payment goes to the requested provider
+    PINNED,
+    // The service picks the provider with the best recent latency, error rate and load; provider may be omitted
+    AUTO
+}
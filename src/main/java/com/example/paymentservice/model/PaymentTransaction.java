@@ -1,18 +1,46 @@
 package com.example.paymentservice.model;
 
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.GenerationType;
-import javax.persistence.Id;
+import jakarta.persistence.AttributeOverride;
+import jakarta.persistence.Column;
+import jakarta.persistence.Embedded;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
 
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+// Transactions are listed newest first, so every index ends in created_at, id for keyset pagination
 @Entity
+@Table(indexes = {
+        @Index(name = "idx_payment_transaction_created", columnList = "created_at desc, id desc"),
+        @Index(name = "idx_payment_transaction_provider_created", columnList = "provider, created_at desc, id desc"),
+        @Index(name = "idx_payment_transaction_provider_successful_created",
+                columnList = "provider, successful, created_at desc, id desc")
+})
 public class PaymentTransaction {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // Ids from a pooled sequence are known before the insert, unlike IDENTITY, so Hibernate can batch inserts
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "payment_transaction_seq")
+    @SequenceGenerator(name = "payment_transaction_seq", sequenceName = "payment_transaction_seq", allocationSize = 50)
     private Long id;
     private String provider;
-    private double amount;
+    @Embedded
+    @AttributeOverride(name = "minorUnits", column = @Column(name = "amount_minor", nullable = false))
+    @AttributeOverride(name = "currency", column = @Column(name = "currency", length = 3, nullable = false))
+    private Money amount;
     private boolean successful;
+    // Position in the transaction journal, for records written through it
+    @Column(unique = true)
+    private Long journalSequence;
+    // To the microsecond, the precision the database keeps
+    @Column(nullable = false)
+    private Instant createdAt;
 
     // Default constructor
     public PaymentTransaction() {}
@@ -34,11 +62,11 @@ public class PaymentTransaction {
         this.provider = provider;
     }
 
-    public double getAmount() {
+    public Money getAmount() {
         return amount;
     }
 
-    public void setAmount(double amount) {
+    public void setAmount(Money amount) {
         this.amount = amount;
     }
 
@@ -49,4 +77,28 @@ public class PaymentTransaction {
     public void setSuccessful(boolean successful) {
         this.successful = successful;
     }
+
+    public Long getJournalSequence() {
+        return journalSequence;
+    }
+
+    public void setJournalSequence(Long journalSequence) {
+        this.journalSequence = journalSequence;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Instant createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    // Only records recovered from journal segments written before the journal kept creation times lack one
+    @PrePersist
+    void stampCreatedAt() {
+        if (createdAt == null) {
+            createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        }
+    }
 }
@@ -0,0 +1,12 @@
+package com.example.paymentservice.model;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+import java.time.Instant;
+
+/**
+ * The columns of a {@link PaymentTransaction} that transaction listings read.
+ */
+public record PaymentTransactionSummary(Long id, String provider, @JsonUnwrapped Money amount, boolean successful,
+                                        Instant createdAt) {
+}
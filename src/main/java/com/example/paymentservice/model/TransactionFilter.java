@@ -0,0 +1,14 @@
+package com.example.paymentservice.model;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Currency;
+
+/**
+ * Criteria for listing transactions; null fields match everything. {@code provider} is the provider name as stored,
+ * e.g. {@code PayPalProvider}. Amounts are inclusive and in {@code currency}, which defaults to
+ * {@link Money#DEFAULT_CURRENCY} when either is set. {@code from} is inclusive and {@code to} exclusive.
+ */
+public record TransactionFilter(String provider, Boolean successful, Currency currency, BigDecimal minAmount,
+                                BigDecimal maxAmount, Instant from, Instant to) {
+}
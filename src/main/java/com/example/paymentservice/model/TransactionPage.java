@@ -0,0 +1,10 @@
+package com.example.paymentservice.model;
+
+import java.util.List;
+
+/**
+ * One page of a transaction listing, newest first. {@code next} is passed as {@code after} to get the following
+ * page, and is null on the last one.
+ */
+public record TransactionPage(List<PaymentTransactionSummary> items, String next) {
+}
@@ -0,0 +1,70 @@
+package com.example.paymentservice.observer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Approximate quantiles of payment amounts, within 1% of the true value. Amounts are counted in buckets whose bounds
+ * grow geometrically, the same for every sketch, so sketches merge by adding their bucket counts.
+ */
+final class AmountSketch {
+
+    private static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    // Bucket 0 holds zero amounts; the last bucket holds everything from 10^10 minor units up
+    static final int BUCKETS = (int) Math.ceil(Math.log(1e10) / LOG_GAMMA) + 2;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    void add(long minorUnits) {
+        counts.incrementAndGet(bucketOf(minorUnits));
+    }
+
+    /**
+     * Adds this sketch's counts to {@code totals}, which then holds the merge of every sketch added to it.
+     */
+    void addTo(long[] totals) {
+        for (int i = 0; i < BUCKETS; i++) {
+            totals[i] += counts.get(i);
+        }
+    }
+
+    /**
+     * The {@code q} quantile of the amounts counted in {@code totals}, in minor units, or 0 if there are none.
+     */
+    static double quantile(long[] totals, double q) {
+        long total = 0;
+        for (long count : totals) {
+            total += count;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += totals[i];
+            if (seen >= Math.max(1, rank)) {
+                return valueOf(i);
+            }
+        }
+        return valueOf(BUCKETS - 1);
+    }
+
+    private static int bucketOf(long minorUnits) {
+        if (minorUnits <= 0) {
+            return 0;
+        }
+        return (int) Math.min(BUCKETS - 1, 1 + (long) Math.ceil(Math.log(minorUnits) / LOG_GAMMA));
+    }
+
+    // The point of bucket i's range (gamma^(k-1), gamma^k] within RELATIVE_ACCURACY of all of it
+    private static double valueOf(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        double upper = Math.pow(GAMMA, bucket - 1);
+        return Math.max(1, 2 * upper / (GAMMA + 1));
+    }
+}
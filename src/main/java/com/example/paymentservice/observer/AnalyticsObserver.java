@@ -1,12 +1,186 @@
 package com.example.paymentservice.observer;
 
+import com.example.paymentservice.config.PaymentAnalyticsProperties;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentAnalytics;
 import com.example.paymentservice.model.PaymentTransaction;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps rolling payment aggregates in memory, per provider and per {@code payment.analytics.resolution} time slice,
+ * for the last {@code payment.analytics.retention}. Counts and sums are {@link LongAdder}s and amounts go into
+ * mergeable {@link AmountSketch}es, so concurrent updates rarely contend, and reading the aggregates never touches
+ * the database. They start empty when the service starts. Amounts are summed and sketched in minor units, separately
+ * per currency. A transaction is counted in the slice of its {@code createdAt}, however late it is observed, and
+ * dropped once that slice is past the retention.
+ */
 @Component
 public class AnalyticsObserver implements Observer {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99};
+
+    private final Clock clock;
+    private final long resolutionMillis;
+    private final int slices;
+    // One ring of time slices per provider, indexed by slice number modulo the ring size
+    private final Map<String, AtomicReferenceArray<Slice>> providers = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AnalyticsObserver(PaymentAnalyticsProperties properties) {
+        this(properties, Clock.systemUTC());
+    }
+
+    AnalyticsObserver(PaymentAnalyticsProperties properties, Clock clock) {
+        this.clock = clock;
+        this.resolutionMillis = Math.max(1, properties.getResolution().toMillis());
+        this.slices = (int) Math.max(1, properties.getRetention().toMillis() / resolutionMillis);
+    }
+
     @Override
     public void update(PaymentTransaction transaction) {
-        System.out.println("Updating analytics for transaction: " + transaction);
+        long current = Math.floorDiv(clock.millis(), resolutionMillis);
+        Instant createdAt = transaction.getCreatedAt();
+        // A creation time ahead of this clock is counted now, so it cannot replace a slice still retained
+        long number = createdAt == null ? current
+                : Math.min(current, Math.floorDiv(createdAt.toEpochMilli(), resolutionMillis));
+        if (number <= current - slices) {
+            return;
+        }
+        AtomicReferenceArray<Slice> ring = providers.computeIfAbsent(String.valueOf(transaction.getProvider()),
+                provider -> new AtomicReferenceArray<>(slices));
+        int index = (int) Math.floorMod(number, (long) slices);
+        Slice slice = ring.get(index);
+        while (slice == null || slice.number < number) {
+            // The slice a full retention ago is replaced, not cleared, so no update is ever lost to a reset
+            Slice fresh = new Slice(number);
+            if (ring.compareAndSet(index, slice, fresh)) {
+                slice = fresh;
+            } else {
+                slice = ring.get(index);
+            }
+        }
+        if (slice.number > number) {
+            // The transaction's slice went past the retention while it was being counted
+            return;
+        }
+        slice.record(transaction);
+    }
+
+    /**
+     * Aggregates over the last {@code window}, rounded up to whole time slices and capped at the retention. The
+     * current slice counts as a whole one.
+     */
+    public PaymentAnalytics snapshot(Duration window) {
+        long current = Math.floorDiv(clock.millis(), resolutionMillis);
+        long count = Math.min(slices, Math.max(1, (window.toMillis() + resolutionMillis - 1) / resolutionMillis));
+        long oldest = current - count + 1;
+
+        Totals total = new Totals();
+        Map<String, PaymentAnalytics.Summary> byProvider = new TreeMap<>();
+        providers.forEach((provider, ring) -> {
+            Totals totals = new Totals();
+            for (int i = 0; i < ring.length(); i++) {
+                Slice slice = ring.get(i);
+                if (slice != null && slice.number >= oldest && slice.number <= current) {
+                    totals.add(slice);
+                    total.add(slice);
+                }
+            }
+            if (totals.count > 0) {
+                byProvider.put(provider, totals.summary());
+            }
+        });
+        return new PaymentAnalytics(Instant.ofEpochMilli(oldest * resolutionMillis),
+                Instant.ofEpochMilli((current + 1) * resolutionMillis), total.summary(), byProvider);
+    }
+
+    private static final class Slice {
+
+        private final long number;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder successful = new LongAdder();
+        private final Map<Currency, CurrencyAmounts> amounts = new ConcurrentHashMap<>();
+
+        private Slice(long number) {
+            this.number = number;
+        }
+
+        private void record(PaymentTransaction transaction) {
+            count.increment();
+            if (transaction.isSuccessful()) {
+                successful.increment();
+            }
+            Money amount = transaction.getAmount();
+            amounts.computeIfAbsent(amount.currency(), currency -> new CurrencyAmounts()).add(amount.minorUnits());
+        }
+    }
+
+    private static final class CurrencyAmounts {
+
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AmountSketch sketch = new AmountSketch();
+
+        private void add(long minorUnits) {
+            count.increment();
+            sum.add(minorUnits);
+            sketch.add(minorUnits);
+        }
+    }
+
+    private static final class Totals {
+
+        private long count;
+        private long successful;
+        private final Map<Currency, CurrencyTotals> amounts = new HashMap<>();
+
+        private void add(Slice slice) {
+            count += slice.count.sum();
+            successful += slice.successful.sum();
+            slice.amounts.forEach((currency, sliceAmounts) -> {
+                CurrencyTotals totals = amounts.computeIfAbsent(currency, c -> new CurrencyTotals());
+                totals.count += sliceAmounts.count.sum();
+                totals.sum += sliceAmounts.sum.sum();
+                sliceAmounts.sketch.addTo(totals.sketch);
+            });
+        }
+
+        private PaymentAnalytics.Summary summary() {
+            Map<String, PaymentAnalytics.Amounts> byCurrency = new TreeMap<>();
+            amounts.forEach((currency, totals) ->
+                    byCurrency.put(currency.getCurrencyCode(), totals.amounts(currency)));
+            return new PaymentAnalytics.Summary(count, successful, count == 0 ? 0 : (double) successful / count,
+                    byCurrency);
+        }
+    }
+
+    private static final class CurrencyTotals {
+
+        private long count;
+        private long sum;
+        private final long[] sketch = new long[AmountSketch.BUCKETS];
+
+        // In the currency's major unit
+        private PaymentAnalytics.Amounts amounts(Currency currency) {
+            double unit = Math.pow(10, currency.getDefaultFractionDigits());
+            Map<String, Double> quantiles = new LinkedHashMap<>();
+            for (double q : QUANTILES) {
+                quantiles.put("p" + Math.round(q * 100), AmountSketch.quantile(sketch, q) / unit);
+            }
+            return new PaymentAnalytics.Amounts(count, sum / unit, quantiles);
+        }
     }
 }
@@ -0,0 +1,296 @@
+package com.example.paymentservice.observer;
+
+import com.example.paymentservice.config.ObserverDispatchProperties;
+import com.example.paymentservice.model.PaymentTransaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Delivers transactions to observers off the payment thread. Every observer gets its own bounded queue and worker
+ * thread, so a slow observer only delays itself, and each observer sees transactions in the order they were published.
+ * Publishers that should get ahead of a full {@code BLOCK} queue hand transactions to {@link #publisher()} instead,
+ * whose backlog is bounded the same way. Once a worker stops, transactions still reaching it are delivered on the
+ * publisher's thread rather than lost.
+ */
+@Component
+public class AsyncObserverDispatcher implements Subject, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(AsyncObserverDispatcher.class);
+
+    // Tells apart the meters and threads of observers of the same class
+    private static final AtomicInteger nextObserverId = new AtomicInteger();
+
+    private final List<ObserverWorker> workers = new CopyOnWriteArrayList<>();
+    private final ObserverDispatchProperties properties;
+    private final MeterRegistry meterRegistry;
+    // Only needed under BLOCK, the one policy that makes publishers wait; null otherwise
+    private final ThreadPoolExecutor publisher;
+
+    public AsyncObserverDispatcher(ObserverDispatchProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        if (properties.getOverflowPolicy() == OverflowPolicy.BLOCK) {
+            this.publisher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(properties.getQueueCapacity()), runnable -> {
+                        Thread thread = new Thread(runnable, "observer-publisher");
+                        thread.setDaemon(true);
+                        return thread;
+                    }, AsyncObserverDispatcher::waitForRoom);
+            Gauge.builder("payment.observer.publish.pending", publisher, executor -> executor.getQueue().size())
+                    .register(meterRegistry);
+        } else {
+            this.publisher = null;
+        }
+    }
+
+    /**
+     * Publishes what is handed to it in order, for publishers such as the transaction writer's flusher, which should
+     * keep going for a while when a full observer queue holds back {@code BLOCK} publishers. Under {@code BLOCK}, a
+     * single thread publishes from a queue of {@code queue-capacity} transactions, and callers wait when it is full,
+     * as they would for an observer's queue. Other policies never make publishers wait, so they publish on the caller.
+     */
+    public Executor publisher() {
+        return publisher != null ? publisher : Runnable::run;
+    }
+
+    // Under BLOCK, a full publisher queue pushes back on the caller; after shutdown, the caller publishes itself
+    private static void waitForRoom(Runnable runnable, ThreadPoolExecutor executor) {
+        try {
+            while (!executor.isShutdown()) {
+                if (executor.getQueue().offer(runnable, ObserverWorker.OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    // The publisher thread may have finished its last task just before this was queued
+                    if (executor.isTerminated() && executor.getQueue().remove(runnable)) {
+                        runnable.run();
+                    }
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        runnable.run();
+    }
+
+    @Override
+    public synchronized void registerObserver(Observer observer) {
+        for (ObserverWorker worker : workers) {
+            if (worker.observer == observer) {
+                return;
+            }
+        }
+        ObserverWorker worker = new ObserverWorker(observer, properties, meterRegistry);
+        workers.add(worker);
+        worker.start();
+    }
+
+    @Override
+    public synchronized void unregisterObserver(Observer observer) {
+        for (ObserverWorker worker : workers) {
+            if (worker.observer == observer) {
+                workers.remove(worker);
+                worker.drainAndStop(properties.getShutdownTimeout().toMillis());
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void notifyObservers(PaymentTransaction transaction) {
+        for (ObserverWorker worker : workers) {
+            worker.enqueue(transaction);
+        }
+    }
+
+    @Override
+    public void destroy() {
+        long deadline = System.currentTimeMillis() + properties.getShutdownTimeout().toMillis();
+        if (publisher != null) {
+            publisher.shutdown();
+            try {
+                publisher.awaitTermination(properties.getShutdownTimeout().toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (ObserverWorker worker : workers) {
+            worker.stopAccepting();
+        }
+        for (ObserverWorker worker : workers) {
+            worker.awaitDrained(Math.max(0, deadline - System.currentTimeMillis()));
+        }
+        // The stopped workers stay registered, so publishers still running deliver inline
+    }
+
+    private static final class ObserverWorker implements Runnable {
+
+        // How long a BLOCK publisher waits for room before checking whether the worker has stopped
+        private static final long OFFER_TIMEOUT_MILLIS = 100;
+
+        private final Observer observer;
+        private final String name;
+        private final OverflowPolicy overflowPolicy;
+        private final BlockingQueue<PaymentTransaction> queue;
+        // Only used by SPILL; everything in it is newer than everything in queue
+        private final Queue<PaymentTransaction> spill = new ConcurrentLinkedQueue<>();
+        private final MeterRegistry meterRegistry;
+        private final List<Meter> meters;
+        private final Counter dropped;
+        private final Counter spilled;
+        private final Thread thread;
+        private volatile boolean accepting = true;
+        // Set by the worker when it takes nothing more from its queues; publishers then deliver themselves
+        private volatile boolean stopped;
+
+        private ObserverWorker(Observer observer, ObserverDispatchProperties properties, MeterRegistry meterRegistry) {
+            this.observer = observer;
+            this.name = observer.getClass().getSimpleName();
+            this.overflowPolicy = properties.getOverflowPolicy();
+            this.queue = new ArrayBlockingQueue<>(properties.getQueueCapacity());
+            this.meterRegistry = meterRegistry;
+
+            String id = Integer.toString(nextObserverId.incrementAndGet());
+            this.dropped = Counter.builder("payment.observer.dropped")
+                    .tag("observer", name).tag("id", id)
+                    .register(meterRegistry);
+            this.spilled = Counter.builder("payment.observer.spilled")
+                    .tag("observer", name).tag("id", id)
+                    .register(meterRegistry);
+            Gauge queued = Gauge.builder("payment.observer.queued", this,
+                            worker -> worker.queue.size() + worker.spill.size())
+                    .tag("observer", name).tag("id", id)
+                    .register(meterRegistry);
+            this.meters = List.of(dropped, spilled, queued);
+
+            this.thread = new Thread(this, "observer-" + name + "-" + id);
+            this.thread.setDaemon(true);
+        }
+
+        private void start() {
+            thread.start();
+        }
+
+        private void enqueue(PaymentTransaction transaction) {
+            if (!accepting || stopped) {
+                // Late publishers during shutdown are served inline rather than lost
+                deliver(transaction);
+                return;
+            }
+            switch (overflowPolicy) {
+                case BLOCK:
+                    try {
+                        // Not put: a worker stopping while the queue is full would leave the publisher waiting forever
+                        while (!queue.offer(transaction, OFFER_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                            if (stopped) {
+                                deliver(transaction);
+                                return;
+                            }
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        deliver(transaction);
+                        return;
+                    }
+                    break;
+                case DROP_OLDEST:
+                    while (!queue.offer(transaction)) {
+                        if (queue.poll() != null) {
+                            dropped.increment();
+                        }
+                    }
+                    break;
+                case SPILL:
+                    // Once anything has spilled, keep spilling until the worker catches up, to preserve order
+                    if (!spill.isEmpty() || !queue.offer(transaction)) {
+                        spill.add(transaction);
+                        spilled.increment();
+                    }
+                    break;
+            }
+            // The worker may have made its last pass over the queues after this publisher checked it was running.
+            // Whichever of the two takes the transaction out delivers it.
+            if (stopped && (queue.remove(transaction) || spill.remove(transaction))) {
+                deliver(transaction);
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (accepting || !queue.isEmpty() || !spill.isEmpty()) {
+                    PaymentTransaction transaction = next();
+                    if (transaction == null) {
+                        try {
+                            transaction = queue.poll(100, TimeUnit.MILLISECONDS);
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (transaction != null) {
+                        deliver(transaction);
+                    }
+                }
+            } finally {
+                stopped = true;
+            }
+            // Last pass for publishers that saw the worker running just before it stopped
+            PaymentTransaction transaction;
+            while ((transaction = next()) != null) {
+                deliver(transaction);
+            }
+        }
+
+        private PaymentTransaction next() {
+            PaymentTransaction transaction = queue.poll();
+            return transaction != null ? transaction : spill.poll();
+        }
+
+        private void deliver(PaymentTransaction transaction) {
+            try {
+                observer.update(transaction);
+            } catch (RuntimeException e) {
+                log.warn("Observer {} failed to handle transaction {}", name, transaction.getId(), e);
+            }
+        }
+
+        private void stopAccepting() {
+            accepting = false;
+        }
+
+        private void awaitDrained(long timeoutMillis) {
+            try {
+                thread.join(Math.max(1, timeoutMillis));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (thread.isAlive()) {
+                log.warn("Observer {} did not drain {} queued transactions before shutdown", name,
+                        queue.size() + spill.size());
+                thread.interrupt();
+            }
+        }
+
+        // Unregisters the observer for good, so its meters go too
+        private void drainAndStop(long timeoutMillis) {
+            stopAccepting();
+            awaitDrained(timeoutMillis);
+            meters.forEach(meterRegistry::remove);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.paymentservice.observer;
+
+/**
+ * What an observer's queue does with a new transaction when it is full.
+ */
+public enum OverflowPolicy {
+    // Wait for the observer to make room, pushing back on the payment thread
+    BLOCK,
+    // Discard the oldest queued transaction to make room for the new one
+    DROP_OLDEST,
+    // Park the transaction in an unbounded overflow buffer that the observer drains after its queue
+    SPILL
+}
@@ -0,0 +1,68 @@
+package com.example.paymentservice.provider;
+
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Posts payment requests as JSON to a provider's endpoints, taking turns when it has more than one, through the
+ * provider's clients from {@link PaymentHttpClients}.
+ */
+public class HttpPaymentProvider implements PaymentProvider, ReactivePaymentProvider {
+
+    private final PaymentProviderType type;
+    private final String name;
+    private final String[] urls;
+    private final RestTemplate restTemplate;
+    private final WebClient webClient;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public HttpPaymentProvider(PaymentProviderType type, String name, List<String> urls, RestTemplate restTemplate,
+                               WebClient webClient) {
+        if (urls.isEmpty()) {
+            throw new IllegalArgumentException("No endpoint for " + type);
+        }
+        this.type = type;
+        this.name = name;
+        this.urls = urls.toArray(String[]::new);
+        this.restTemplate = restTemplate;
+        this.webClient = webClient;
+    }
+
+    @Override
+    public PaymentProviderType getType() {
+        return type;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void processPayment(PaymentRequest request) {
+        restTemplate.postForObject(nextUrl(), request, String.class);
+    }
+
+    @Override
+    public Mono<Void> processPaymentReactive(PaymentRequest request) {
+        return webClient.post()
+                .uri(nextUrl())
+                .bodyValue(request)
+                .retrieve()
+                .bodyToMono(String.class)
+                .then();
+    }
+
+    private String nextUrl() {
+        if (urls.length == 1) {
+            return urls[0];
+        }
+        return urls[Math.floorMod(next.getAndIncrement(), urls.length)];
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.paymentservice.provider;
+
+import com.example.paymentservice.config.PaymentProviderProperties;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.PropertyNamingStrategies;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import io.netty.channel.ChannelOption;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.converter.StringHttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pooled HTTP clients shared by the payment providers, one blocking and one reactive client per provider, each with its
+ * own connection pool, keep-alive, timeouts and JSON settings from {@code external.payment.providers.<provider>}. A
+ * provider's clients serve all of its endpoints, with a pool of {@code max-connections} per endpoint.
+ */
+@Component
+public class PaymentHttpClients implements DisposableBean {
+
+    private final Map<PaymentProviderType, RestTemplate> restTemplates = new EnumMap<>(PaymentProviderType.class);
+    private final Map<PaymentProviderType, WebClient> webClients = new EnumMap<>(PaymentProviderType.class);
+    private final Map<PaymentProviderType, CloseableHttpClient> httpClients = new EnumMap<>(PaymentProviderType.class);
+    private final Map<PaymentProviderType, ConnectionProvider> connectionProviders = new EnumMap<>(PaymentProviderType.class);
+    private final Map<PaymentProviderType, List<String>> urls = new EnumMap<>(PaymentProviderType.class);
+
+    public PaymentHttpClients(PaymentProviderProperties properties, ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry) {
+        for (PaymentProviderType providerType : PaymentProviderType.values()) {
+            PaymentProviderProperties.Provider provider = properties.getProvider(providerType);
+            urls.put(providerType, List.copyOf(provider.getEndpointUrls()));
+            ObjectMapper providerObjectMapper = objectMapper(objectMapper, provider.getSerialization());
+            restTemplates.put(providerType, createRestTemplate(providerType, provider, providerObjectMapper,
+                    meterRegistry));
+            webClients.put(providerType, createWebClient(providerType, provider, providerObjectMapper));
+        }
+    }
+
+    public RestTemplate restTemplate(PaymentProviderType providerType) {
+        return restTemplates.get(providerType);
+    }
+
+    public WebClient webClient(PaymentProviderType providerType) {
+        return webClients.get(providerType);
+    }
+
+    public List<String> urls(PaymentProviderType providerType) {
+        return urls.get(providerType);
+    }
+
+    /**
+     * Opens a pooled connection to every provider on both clients with a {@code HEAD} request, so the first payments
+     * do not pay for loading the clients, resolving and connecting. Any answer will do, and providers that cannot be
+     * reached are skipped.
+     */
+    public Mono<Void> warmUp() {
+        return Flux.fromIterable(urls.entrySet())
+                .flatMap(entry -> Flux.fromIterable(entry.getValue()).flatMap(url -> Mono.when(
+                        Mono.fromRunnable(() -> head(restTemplates.get(entry.getKey()), url))
+                                .subscribeOn(Schedulers.boundedElastic()),
+                        webClients.get(entry.getKey()).head().uri(url)
+                                .exchangeToMono(response -> response.releaseBody())
+                                .onErrorResume(e -> Mono.empty()))))
+                .then();
+    }
+
+    private static void head(RestTemplate restTemplate, String url) {
+        try {
+            restTemplate.execute(url, HttpMethod.HEAD, null, response -> null);
+        } catch (RestClientException e) {
+            // Error statuses still leave the connection in the pool
+        }
+    }
+
+    private RestTemplate createRestTemplate(PaymentProviderType providerType, PaymentProviderProperties.Provider provider,
+                                            ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        int endpoints = Math.max(1, urls.get(providerType).size());
+        PoolingHttpClientConnectionManager connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(provider.getMaxConnections() * endpoints)
+                .setMaxConnPerRoute(provider.getMaxConnections())
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(timeout(provider.getConnectTimeout()))
+                        .setSocketTimeout(timeout(provider.getReadTimeout()))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(1))
+                        .build())
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, providerName(providerType),
+                "provider", providerName(providerType)).bindTo(meterRegistry);
+
+        TimeValue keepAlive = TimeValue.of(provider.getKeepAlive());
+        CloseableHttpClient httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(timeout(provider.getPoolAcquireTimeout()))
+                        .setResponseTimeout(timeout(provider.getReadTimeout()))
+                        .build())
+                .setKeepAliveStrategy((response, context) -> keepAlive)
+                .evictIdleConnections(keepAlive)
+                // The default strategy re-sends a payment on 503; whether to try again is decided by failover instead
+                .disableAutomaticRetries()
+                .build();
+        httpClients.put(providerType, httpClient);
+
+        // Requests are written as JSON and answers read as strings, which is all a payment needs
+        RestTemplate restTemplate = new RestTemplate(List.of(new StringHttpMessageConverter(),
+                new MappingJackson2HttpMessageConverter(objectMapper)));
+        restTemplate.setRequestFactory(new HttpComponentsClientHttpRequestFactory(httpClient));
+        return restTemplate;
+    }
+
+    private WebClient createWebClient(PaymentProviderType providerType, PaymentProviderProperties.Provider provider,
+                                      ObjectMapper objectMapper) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder(providerName(providerType))
+                .maxConnections(provider.getMaxConnections())
+                .pendingAcquireTimeout(provider.getPoolAcquireTimeout())
+                .maxIdleTime(provider.getKeepAlive())
+                .metrics(true)
+                .build();
+        connectionProviders.put(providerType, connectionProvider);
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) provider.getConnectTimeout().toMillis())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(provider.getReadTimeout());
+        if (provider.isHttp2()) {
+            // All endpoints of a provider are expected to share a scheme
+            List<String> providerUrls = urls.get(providerType);
+            boolean secure = !providerUrls.isEmpty() && providerUrls.get(0).startsWith("https");
+            httpClient = secure
+                    ? httpClient.protocol(HttpProtocol.H2, HttpProtocol.HTTP11).secure()
+                    : httpClient.protocol(HttpProtocol.H2C, HttpProtocol.HTTP11);
+        }
+
+        return WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> {
+                    codecs.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder(objectMapper));
+                    codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper));
+                })
+                .build();
+    }
+
+    private static ObjectMapper objectMapper(ObjectMapper objectMapper,
+                                             PaymentProviderProperties.SerializationSettings settings) {
+        ObjectMapper providerObjectMapper = objectMapper.copy();
+        providerObjectMapper.setPropertyNamingStrategy(switch (settings.getPropertyNaming()) {
+            case LOWER_CAMEL_CASE -> PropertyNamingStrategies.LOWER_CAMEL_CASE;
+            case SNAKE_CASE -> PropertyNamingStrategies.SNAKE_CASE;
+            case KEBAB_CASE -> PropertyNamingStrategies.KEBAB_CASE;
+        });
+        if (!settings.isIncludeNulls()) {
+            providerObjectMapper.setSerializationInclusion(JsonInclude.Include.NON_NULL);
+        }
+        return providerObjectMapper;
+    }
+
+    private static String providerName(PaymentProviderType providerType) {
+        return providerType.name().toLowerCase();
+    }
+
+    private static Timeout timeout(Duration duration) {
+        return Timeout.ofMilliseconds(duration.toMillis());
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        for (CloseableHttpClient httpClient : httpClients.values()) {
+            httpClient.close();
+        }
+        for (ConnectionProvider connectionProvider : connectionProviders.values()) {
+            connectionProvider.dispose();
+        }
+    }
+}
@@ -1,9 +1,22 @@
 package com.example.paymentservice.provider;
 
+import com.example.paymentservice.model.PaymentProviderType;
 import com.example.paymentservice.model.PaymentRequest;
-import org.springframework.stereotype.Component;
-
 
+/**
+ * A payment provider. Every provider type is served by an {@link HttpPaymentProvider} configured from
+ * {@code external.payment.providers.<provider>}, unless a bean implementing this interface is registered for it.
+ */
 public interface PaymentProvider {
+
+    PaymentProviderType getType();
+
+    /**
+     * The name stored with this provider's transactions.
+     */
+    default String getName() {
+        return getClass().getSimpleName();
+    }
+
     void processPayment(PaymentRequest request);
 }
@@ -1,31 +1,98 @@
 package com.example.paymentservice.provider;
 
+import com.example.paymentservice.config.PaymentProviderProperties;
+import com.example.paymentservice.exception.PaymentRejectedException;
 import com.example.paymentservice.model.PaymentProviderType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
-import java.util.EnumMap;
-import java.util.Map;
+import java.util.List;
 
+/**
+ * Looks up the provider of each type. Providers are set up once at startup: {@link PaymentProvider} beans for the types
+ * they serve, and an {@link HttpPaymentProvider} configured from {@code external.payment.providers.<provider>} for every
+ * other type. Startup fails if a type has neither.
+ */
 @Component
 public class PaymentProviderFactory {
 
-    private final Map<PaymentProviderType, PaymentProvider> paymentProviders = new EnumMap<>(PaymentProviderType.class);
+    private static final PaymentProviderType[] PROVIDERS = PaymentProviderType.values();
+
+    // Indexed by PaymentProviderType ordinal
+    private final PaymentProvider[] paymentProviders = new PaymentProvider[PROVIDERS.length];
+    private final ReactivePaymentProvider[] reactivePaymentProviders = new ReactivePaymentProvider[PROVIDERS.length];
 
     @Autowired
-    public PaymentProviderFactory(PayPalProvider payPalPaymentProvider,
-                                  StripeProvider stripePaymentProvider,
-                                  SquareProvider squarePaymentProvider) {
-        paymentProviders.put(PaymentProviderType.PAYPAL, payPalPaymentProvider);
-        paymentProviders.put(PaymentProviderType.STRIPE, stripePaymentProvider);
-        paymentProviders.put(PaymentProviderType.SQUARE, squarePaymentProvider);
+    public PaymentProviderFactory(PaymentProviderProperties properties, PaymentHttpClients httpClients,
+                                  List<PaymentProvider> customProviders) {
+        customProviders.forEach(this::register);
+        for (PaymentProviderType providerType : PROVIDERS) {
+            if (paymentProviders[providerType.ordinal()] != null) {
+                continue;
+            }
+            String key = providerType.name().toLowerCase();
+            List<String> urls = httpClients.urls(providerType);
+            if (urls.isEmpty()) {
+                throw new IllegalStateException("No endpoint for payment provider " + providerType + ": set external"
+                        + ".payment.providers." + key + ".url or .endpoints");
+            }
+            String name = properties.getProvider(providerType).getName();
+            register(new HttpPaymentProvider(providerType, name != null ? name : defaultName(providerType), urls,
+                    httpClients.restTemplate(providerType), httpClients.webClient(providerType)));
+        }
+    }
+
+    private PaymentProviderFactory() {
+    }
+
+    /**
+     * A factory of just these providers, which must cover every type.
+     */
+    public static PaymentProviderFactory of(PaymentProvider... providers) {
+        PaymentProviderFactory factory = new PaymentProviderFactory();
+        for (PaymentProvider provider : providers) {
+            factory.register(provider);
+        }
+        for (PaymentProviderType providerType : PROVIDERS) {
+            if (factory.paymentProviders[providerType.ordinal()] == null) {
+                throw new IllegalArgumentException("No payment provider for " + providerType);
+            }
+        }
+        return factory;
     }
 
     public PaymentProvider getPaymentProvider(PaymentProviderType providerType) {
-        PaymentProvider provider = paymentProviders.get(providerType);
-        if (provider == null) {
-            throw new IllegalArgumentException("No payment provider found for type: " + providerType);
+        if (providerType == null) {
+            throw PaymentRejectedException.UNKNOWN_PROVIDER;
         }
-        return provider;
+        return paymentProviders[providerType.ordinal()];
+    }
+
+    public ReactivePaymentProvider getReactivePaymentProvider(PaymentProviderType providerType) {
+        if (providerType == null) {
+            throw PaymentRejectedException.UNKNOWN_PROVIDER;
+        }
+        return reactivePaymentProviders[providerType.ordinal()];
+    }
+
+    private void register(PaymentProvider provider) {
+        int index = provider.getType().ordinal();
+        if (paymentProviders[index] != null) {
+            throw new IllegalStateException("More than one payment provider for " + provider.getType());
+        }
+        paymentProviders[index] = provider;
+        // Blocking providers are run off the event loop when called reactively
+        reactivePaymentProviders[index] = provider instanceof ReactivePaymentProvider reactive
+                ? reactive
+                : request -> Mono.<Void>fromRunnable(() -> provider.processPayment(request))
+                        .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    // PAYPAL becomes PaypalProvider
+    private static String defaultName(PaymentProviderType providerType) {
+        String name = providerType.name();
+        return name.charAt(0) + name.substring(1).toLowerCase() + "Provider";
     }
 }
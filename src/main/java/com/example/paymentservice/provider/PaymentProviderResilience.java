@@ -0,0 +1,91 @@
+package com.example.paymentservice.provider;
+
+import com.example.paymentservice.config.PaymentProviderProperties;
+import com.example.paymentservice.model.PaymentProviderType;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Per-provider circuit breaker and bulkhead around {@link PaymentProvider} calls. The bulkhead is the outer guard, so
+ * calls it rejects never reach, or count against, the circuit breaker. Calls the provider answers with a 4xx are
+ * ignored by the circuit breaker, so a burst of bad requests cannot open it for a healthy provider.
+ */
+@Component
+public class PaymentProviderResilience {
+
+    private final Map<PaymentProviderType, CircuitBreaker> circuitBreakers = new EnumMap<>(PaymentProviderType.class);
+    private final Map<PaymentProviderType, Bulkhead> bulkheads = new EnumMap<>(PaymentProviderType.class);
+
+    public PaymentProviderResilience(PaymentProviderProperties properties, MeterRegistry meterRegistry) {
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
+
+        for (PaymentProviderType providerType : PaymentProviderType.values()) {
+            PaymentProviderProperties.Provider provider = properties.getProvider(providerType);
+            String name = providerType.name().toLowerCase();
+            circuitBreakers.put(providerType,
+                    circuitBreakerRegistry.circuitBreaker(name, circuitBreakerConfig(provider.getCircuitBreaker())));
+            bulkheads.put(providerType, bulkheadRegistry.bulkhead(name, bulkheadConfig(provider.getBulkhead())));
+        }
+
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(meterRegistry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(meterRegistry);
+    }
+
+    public void execute(PaymentProviderType providerType, Runnable call) {
+        Bulkhead.decorateRunnable(bulkheads.get(providerType),
+                CircuitBreaker.decorateRunnable(circuitBreakers.get(providerType), call)).run();
+    }
+
+    public <T> Mono<T> executeReactive(PaymentProviderType providerType, Mono<T> call) {
+        return call.transformDeferred(CircuitBreakerOperator.of(circuitBreakers.get(providerType)))
+                .transformDeferred(BulkheadOperator.of(bulkheads.get(providerType)));
+    }
+
+    public CircuitBreaker circuitBreaker(PaymentProviderType providerType) {
+        return circuitBreakers.get(providerType);
+    }
+
+    private static CircuitBreakerConfig circuitBreakerConfig(PaymentProviderProperties.CircuitBreakerSettings settings) {
+        return CircuitBreakerConfig.custom()
+                .slidingWindowType(CircuitBreakerConfig.SlidingWindowType.COUNT_BASED)
+                .slidingWindowSize(settings.getSlidingWindowSize())
+                .minimumNumberOfCalls(settings.getMinimumNumberOfCalls())
+                .failureRateThreshold(settings.getFailureRateThreshold())
+                .slowCallRateThreshold(settings.getSlowCallRateThreshold())
+                .slowCallDurationThreshold(settings.getSlowCallDurationThreshold())
+                .waitDurationInOpenState(settings.getWaitDurationInOpenState())
+                .permittedNumberOfCallsInHalfOpenState(settings.getPermittedNumberOfCallsInHalfOpenState())
+                .ignoreException(PaymentProviderResilience::isClientError)
+                .build();
+    }
+
+    // A 4xx is about the request, not the provider's health
+    static boolean isClientError(Throwable error) {
+        return error instanceof HttpClientErrorException
+                || error instanceof WebClientResponseException response && response.getStatusCode().is4xxClientError();
+    }
+
+    private static BulkheadConfig bulkheadConfig(PaymentProviderProperties.BulkheadSettings settings) {
+        return BulkheadConfig.custom()
+                .maxConcurrentCalls(settings.getMaxConcurrentCalls())
+                .maxWaitDuration(settings.getMaxWaitDuration())
+                .build();
+    }
+}
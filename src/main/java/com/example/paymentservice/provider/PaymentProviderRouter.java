@@ -0,0 +1,197 @@
+package com.example.paymentservice.provider;
+
+import com.example.paymentservice.config.ProviderRoutingProperties;
+import com.example.paymentservice.model.PaymentProviderType;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpStatusCodeException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.net.UnknownHostException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Picks a provider for {@code AUTO} routed payments from live per-provider statistics: an exponentially weighted
+ * average of call latency and error rate, and the number of calls in flight. Providers whose circuit breaker is open
+ * are skipped. Statistics are plain volatile fields updated without locks; concurrent updates may drop a sample, which
+ * only makes the averages slightly less smooth.
+ */
+@Component
+public class PaymentProviderRouter {
+
+    private static final PaymentProviderType[] PROVIDERS = PaymentProviderType.values();
+
+    // Keeps a provider with no recent calls from scoring zero regardless of its load
+    private static final double LATENCY_FLOOR_NANOS = 1_000_000;
+
+    private static final double MAX_ERROR_RATE = 0.99;
+
+    private final ProviderStats[] stats = new ProviderStats[PROVIDERS.length];
+    private final CircuitBreaker[] circuitBreakers = new CircuitBreaker[PROVIDERS.length];
+    private final double alpha;
+    private final double decayNanos;
+
+    public PaymentProviderRouter(PaymentProviderResilience providerResilience,
+                                 ProviderRoutingProperties properties,
+                                 MeterRegistry meterRegistry) {
+        this.alpha = properties.getAlpha();
+        this.decayNanos = properties.getDecay().toNanos();
+        for (PaymentProviderType providerType : PROVIDERS) {
+            ProviderStats providerStats = new ProviderStats();
+            stats[providerType.ordinal()] = providerStats;
+            circuitBreakers[providerType.ordinal()] = providerResilience.circuitBreaker(providerType);
+
+            String provider = providerType.name().toLowerCase();
+            Gauge.builder("payment.routing.latency", providerStats, s -> s.latencyNanos / 1_000_000)
+                    .tag("provider", provider).baseUnit("milliseconds").register(meterRegistry);
+            Gauge.builder("payment.routing.error.rate", providerStats, s -> s.errorRate)
+                    .tag("provider", provider).register(meterRegistry);
+            Gauge.builder("payment.routing.in.flight", providerStats, s -> s.inFlight.get())
+                    .tag("provider", provider).register(meterRegistry);
+        }
+    }
+
+    /**
+     * Returns the provider with the lowest expected cost, {@code latency * (inFlight + 1) / (1 - errorRate)}, among those
+     * not in {@code excluded} and not behind an open circuit breaker, or null if there is none.
+     */
+    public PaymentProviderType choose(int excluded) {
+        long now = System.nanoTime();
+        PaymentProviderType best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (PaymentProviderType providerType : PROVIDERS) {
+            int index = providerType.ordinal();
+            if ((excluded & mask(providerType)) != 0 || !isAvailable(circuitBreakers[index])) {
+                continue;
+            }
+            ProviderStats providerStats = stats[index];
+            double fade = fade(providerStats, now);
+            double latency = providerStats.latencyNanos * fade + LATENCY_FLOOR_NANOS;
+            double errorRate = Math.min(providerStats.errorRate * fade, MAX_ERROR_RATE);
+            double score = latency * (providerStats.inFlight.get() + 1) / (1 - errorRate);
+            if (score < bestScore) {
+                bestScore = score;
+                best = providerType;
+            }
+        }
+        return best;
+    }
+
+    public static int mask(PaymentProviderType providerType) {
+        return 1 << providerType.ordinal();
+    }
+
+    /**
+     * Whether a failed call is known not to have been processed by the provider, so the payment can safely be sent
+     * elsewhere: it was rejected before being sent, could not connect or resolve the provider's host, or a gateway in
+     * front of the provider answered {@code 502} or {@code 503}. Other 5xx responses and timeouts are not, since the
+     * provider may have taken the payment before failing.
+     */
+    public static boolean isFailoverSafe(Throwable error) {
+        if (error instanceof CallNotPermittedException || error instanceof BulkheadFullException) {
+            return true;
+        }
+        if (error instanceof HttpStatusCodeException response) {
+            return isUnprocessedStatus(response.getStatusCode());
+        }
+        if (error instanceof WebClientResponseException response) {
+            return isUnprocessedStatus(response.getStatusCode());
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConnectException || cause instanceof UnknownHostException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isUnprocessedStatus(HttpStatusCode status) {
+        return status.value() == 502 || status.value() == 503;
+    }
+
+    /**
+     * Runs a blocking provider call and records its outcome.
+     */
+    public void track(PaymentProviderType providerType, Runnable call) {
+        ProviderStats providerStats = stats[providerType.ordinal()];
+        providerStats.inFlight.incrementAndGet();
+        long start = System.nanoTime();
+        Throwable error = null;
+        try {
+            call.run();
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            providerStats.inFlight.decrementAndGet();
+            record(providerStats, start, error);
+        }
+    }
+
+    /**
+     * Records the outcome of a reactive provider call once it is subscribed to.
+     */
+    public <T> Mono<T> track(PaymentProviderType providerType, Mono<T> call) {
+        ProviderStats providerStats = stats[providerType.ordinal()];
+        return Mono.defer(() -> {
+            providerStats.inFlight.incrementAndGet();
+            long start = System.nanoTime();
+            AtomicInteger done = new AtomicInteger();
+            return call
+                    .doOnSuccess(value -> {
+                        if (done.getAndIncrement() == 0) {
+                            providerStats.inFlight.decrementAndGet();
+                            record(providerStats, start, null);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (done.getAndIncrement() == 0) {
+                            providerStats.inFlight.decrementAndGet();
+                            record(providerStats, start, e);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (done.getAndIncrement() == 0) {
+                            providerStats.inFlight.decrementAndGet();
+                        }
+                    });
+        });
+    }
+
+    private void record(ProviderStats providerStats, long start, Throwable error) {
+        // Rejected calls never reached the provider and say nothing about it; its circuit breaker covers them
+        if (error instanceof CallNotPermittedException || error instanceof BulkheadFullException) {
+            return;
+        }
+        // A 4xx is about the request, not the provider's health; the circuit breaker ignores it too
+        boolean failed = error != null && !PaymentProviderResilience.isClientError(error);
+        long now = System.nanoTime();
+        double keep = (1 - alpha) * fade(providerStats, now);
+        providerStats.latencyNanos = alpha * (now - start) + keep * providerStats.latencyNanos;
+        providerStats.errorRate = alpha * (failed ? 1 : 0) + keep * providerStats.errorRate;
+        providerStats.lastCallNanos = now;
+    }
+
+    private double fade(ProviderStats providerStats, long now) {
+        return Math.exp(-(now - providerStats.lastCallNanos) / decayNanos);
+    }
+
+    private static boolean isAvailable(CircuitBreaker circuitBreaker) {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        return state != CircuitBreaker.State.OPEN && state != CircuitBreaker.State.FORCED_OPEN;
+    }
+
+    private static final class ProviderStats {
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double latencyNanos;
+        private volatile double errorRate;
+        private volatile long lastCallNanos = System.nanoTime();
+    }
+}
@@ -0,0 +1,8 @@
+package com.example.paymentservice.provider;
+
+import com.example.paymentservice.model.PaymentRequest;
+import reactor.core.publisher.Mono;
+
+public interface ReactivePaymentProvider {
+    Mono<Void> processPaymentReactive(PaymentRequest request);
+}
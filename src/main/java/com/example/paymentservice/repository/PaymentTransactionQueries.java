@@ -0,0 +1,19 @@
+package com.example.paymentservice.repository;
+
+import com.example.paymentservice.model.PaymentTransactionSummary;
+import com.example.paymentservice.model.TransactionFilter;
+
+import java.time.Instant;
+import java.util.List;
+
+public interface PaymentTransactionQueries {
+
+    /**
+     * Up to {@code limit} transactions matching {@code filter}, newest first, starting after the transaction with
+     * {@code afterCreatedAt} and {@code afterId}, or from the newest if those are null. Seeking past the previous
+     * page on the {@code (created_at, id)} index keeps every page as fast as the first, where an offset would scan
+     * all the rows before it.
+     */
+    List<PaymentTransactionSummary> findPage(TransactionFilter filter, Instant afterCreatedAt, Long afterId,
+                                             int limit);
+}
@@ -0,0 +1,94 @@
+package com.example.paymentservice.repository;
+
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentTransaction;
+import com.example.paymentservice.model.PaymentTransactionSummary;
+import com.example.paymentservice.model.TransactionFilter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Order;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+
+class PaymentTransactionQueriesImpl implements PaymentTransactionQueries {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<PaymentTransactionSummary> findPage(TransactionFilter filter, Instant afterCreatedAt, Long afterId,
+                                                    int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<PaymentTransactionSummary> query = cb.createQuery(PaymentTransactionSummary.class);
+        Root<PaymentTransaction> t = query.from(PaymentTransaction.class);
+        Path<Instant> createdAt = t.get("createdAt");
+        Path<Long> id = t.get("id");
+
+        // Only the criteria that are set, so the database can pick the index that matches them
+        List<Predicate> where = new ArrayList<>();
+        if (filter.provider() != null) {
+            where.add(cb.equal(t.get("provider"), filter.provider()));
+        }
+        if (filter.successful() != null) {
+            where.add(cb.equal(t.get("successful"), filter.successful()));
+        }
+        if (filter.currency() != null || filter.minAmount() != null || filter.maxAmount() != null) {
+            Currency currency = filter.currency() == null ? Money.DEFAULT_CURRENCY : filter.currency();
+            where.add(cb.equal(t.get("amount").get("currency"), currency));
+            Path<Long> minorUnits = t.get("amount").get("minorUnits");
+            if (filter.minAmount() != null) {
+                where.add(cb.ge(minorUnits, toMinorUnits(filter.minAmount(), currency, RoundingMode.CEILING)));
+            }
+            if (filter.maxAmount() != null) {
+                where.add(cb.le(minorUnits, toMinorUnits(filter.maxAmount(), currency, RoundingMode.FLOOR)));
+            }
+        }
+        if (filter.from() != null) {
+            where.add(cb.greaterThanOrEqualTo(createdAt, filter.from()));
+        }
+        if (filter.to() != null) {
+            where.add(cb.lessThan(createdAt, filter.to()));
+        }
+        if (afterCreatedAt != null) {
+            // The redundant createdAt <= bound lets the database seek on the index instead of filtering the OR
+            where.add(cb.lessThanOrEqualTo(createdAt, afterCreatedAt));
+            where.add(cb.or(cb.lessThan(createdAt, afterCreatedAt),
+                    cb.and(cb.equal(createdAt, afterCreatedAt), cb.lessThan(id, afterId))));
+        }
+
+        // Ordering by the columns fixed by the filter changes nothing, but it lets the database see that the composite
+        // index is already in order and stop after the page instead of sorting every match
+        List<Order> order = new ArrayList<>();
+        if (filter.provider() != null) {
+            order.add(cb.asc(t.get("provider")));
+            if (filter.successful() != null) {
+                order.add(cb.asc(t.get("successful")));
+            }
+        }
+        order.add(cb.desc(createdAt));
+        order.add(cb.desc(id));
+
+        query.select(cb.construct(PaymentTransactionSummary.class,
+                        id, t.get("provider"), t.get("amount"), t.get("successful"), createdAt))
+                .where(where.toArray(Predicate[]::new))
+                .orderBy(order);
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // Bounds between two minor units are rounded inwards, so they still only match amounts within the range
+    private static long toMinorUnits(BigDecimal amount, Currency currency, RoundingMode rounding) {
+        return amount.setScale(currency.getDefaultFractionDigits(), rounding).unscaledValue().longValueExact();
+    }
+}
@@ -2,6 +2,16 @@ package com.example.paymentservice.repository;
 
 import com.example.paymentservice.model.PaymentTransaction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface PaymentTransactionRepository extends JpaRepository<PaymentTransaction, Long> {
+import java.util.List;
+
+public interface PaymentTransactionRepository extends JpaRepository<PaymentTransaction, Long>, PaymentTransactionQueries {
+
+    @Query("select t.journalSequence from PaymentTransaction t where t.journalSequence >= :from")
+    List<Long> findJournalSequencesFrom(@Param("from") long from);
+
+    @Query("select coalesce(max(t.journalSequence), 0) from PaymentTransaction t")
+    long findMaxJournalSequence();
 }
@@ -0,0 +1,293 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.config.ConcurrencyLimitProperties;
+import com.example.paymentservice.exception.NoProviderAvailableException;
+import com.example.paymentservice.exception.PaymentRejectedException;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.example.paymentservice.model.PaymentRouting;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Adaptive limit on the payments processed at once, applied where requests enter the controller so that a slow
+ * downstream sheds load instead of filling the request thread pool. The limit follows a gradient algorithm fed by
+ * payment latency: once per {@code payment.concurrency-limit.window}, the average latency of the payments completed in
+ * the window is compared with its long-term average, and
+ * <pre>
+ * gradient = clamp(tolerance * longTermLatency / windowLatency, 0.5, 1)
+ * limit    = limit * gradient + sqrt(limit)
+ * </pre>
+ * smoothed and kept between the minimum and maximum limit. Stable latency lets the limit grow by its square root, and
+ * latency rising past the tolerance cuts it down to as little as half. It is left alone while less than half of it is
+ * in use, since latency then says nothing about capacity.
+ * <p>
+ * Each provider, and {@code AUTO} routing, has a reserved share of the limit that it can always use, so a slow
+ * provider holding the shared capacity cannot shut the others out. Reserves are carved out of the limit: a partition
+ * past its reserve takes from what the reserves leave unclaimed, so payments in flight never exceed the limit. Payments
+ * that find both their partition's reserve and the shared capacity used up fail straight away with
+ * {@code 503 Service Unavailable} and {@code Retry-After}. Shed payments are counted in
+ * {@code payment.concurrency.shed}, tagged by provider, and the limit and payments in flight are published as
+ * {@code payment.concurrency.limit} and {@code payment.concurrency.in.flight}.
+ */
+@Component
+public class ConcurrencyLimiter {
+
+    private static final PaymentProviderType[] PROVIDERS = PaymentProviderType.values();
+
+    // Partition of AUTO routed payments, which have no provider when they arrive
+    private static final int AUTO = PROVIDERS.length;
+
+    // A window with fewer completed payments is extended, one or two latencies are too noisy to act on
+    private static final int MIN_WINDOW_SAMPLES = 10;
+
+    private static final Permit UNLIMITED = new Permit(null, 0, false, 0);
+
+    private final ConcurrencyLimitProperties properties;
+    private final LongSupplier nanoClock;
+    private final double[] reservedShares = new double[PROVIDERS.length + 1];
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Payments holding a slot of their partition's reserve, and payments holding a shared slot
+    private final AtomicIntegerArray reservedInFlight = new AtomicIntegerArray(PROVIDERS.length + 1);
+    private final AtomicInteger sharedInFlight = new AtomicInteger();
+    private final Counter[] shed = new Counter[PROVIDERS.length + 1];
+    private final PaymentRejectedException overloaded;
+    private final long windowNanos;
+
+    private final LongAdder windowLatencyNanos = new LongAdder();
+    private final LongAdder windowSamples = new LongAdder();
+    private final AtomicInteger windowMaxInFlight = new AtomicInteger();
+    private final AtomicLong windowStart;
+
+    private volatile Limit limit;
+
+    // Guarded by this, updated once per window
+    private double estimatedLimit;
+    private double longTermLatencyNanos;
+
+    @Autowired
+    public ConcurrencyLimiter(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    ConcurrencyLimiter(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.properties = properties;
+        this.nanoClock = nanoClock;
+        this.windowNanos = properties.getWindow().toNanos();
+        this.windowStart = new AtomicLong(nanoClock.getAsLong());
+
+        double totalShare = 0;
+        for (Map.Entry<String, Double> share : properties.getReserved().entrySet()) {
+            reservedShares[indexOf(share.getKey())] = share.getValue();
+            totalShare += share.getValue();
+        }
+        if (totalShare > 1) {
+            throw new IllegalArgumentException("payment.concurrency-limit.reserved shares add up to more than 1");
+        }
+        this.estimatedLimit = Math.max(properties.getMinLimit(),
+                Math.min(properties.getMaxLimit(), properties.getInitialLimit()));
+        this.limit = limit((int) estimatedLimit);
+
+        for (int partition = 0; partition < shed.length; partition++) {
+            shed[partition] = Counter.builder("payment.concurrency.shed")
+                    .description("Payments turned away because too many were in progress")
+                    .tag("provider", partitionName(partition))
+                    .register(meterRegistry);
+        }
+        Gauge.builder("payment.concurrency.limit", this, limiter -> limiter.limit.value())
+                .description("Payments that may be processed at once")
+                .register(meterRegistry);
+        Gauge.builder("payment.concurrency.in.flight", inFlight, AtomicInteger::get)
+                .register(meterRegistry);
+
+        HttpHeaders headers = new HttpHeaders();
+        long retryAfterSeconds = Math.max(1, (properties.getRetryAfter().toMillis() + 999) / 1000);
+        headers.set(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("error", "Service overloaded");
+        body.put("message", "Too many payments in progress, retry later");
+        this.overloaded = new PaymentRejectedException(HttpStatus.SERVICE_UNAVAILABLE, headers,
+                "Too many payments in progress", body);
+    }
+
+    /**
+     * Admits a payment, or throws a shared {@link PaymentRejectedException} answered with {@code 503} when the reserve
+     * of the payment's provider and the shared part of the limit are both used up. The returned permit must be released once the
+     * payment is done.
+     */
+    public Permit acquire(PaymentRequest request) {
+        if (!properties.isEnabled()) {
+            return UNLIMITED;
+        }
+        int partition = request.getRouting() == PaymentRouting.AUTO || request.getProvider() == null
+                ? AUTO
+                : request.getProvider().ordinal();
+        Limit current = limit;
+        // The partition's own reserve first, so the shared part stays free for the others
+        boolean shared = false;
+        if (reservedInFlight.incrementAndGet(partition) > current.reserved()[partition]) {
+            reservedInFlight.decrementAndGet(partition);
+            shared = true;
+            if (sharedInFlight.incrementAndGet() > current.shared()) {
+                sharedInFlight.decrementAndGet();
+                shed[partition].increment();
+                throw overloaded;
+            }
+        }
+        int total = inFlight.incrementAndGet();
+        if (total > windowMaxInFlight.get()) {
+            windowMaxInFlight.accumulateAndGet(total, Math::max);
+        }
+        return new Permit(this, partition, shared, nanoClock.getAsLong());
+    }
+
+    public int getLimit() {
+        return limit.value();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    private void release(int partition, boolean shared, long latencyNanos) {
+        if (shared) {
+            sharedInFlight.decrementAndGet();
+        } else {
+            reservedInFlight.decrementAndGet(partition);
+        }
+        inFlight.decrementAndGet();
+        if (latencyNanos < 0) {
+            return;
+        }
+        windowLatencyNanos.add(latencyNanos);
+        windowSamples.increment();
+
+        long now = nanoClock.getAsLong();
+        long start = windowStart.get();
+        // One thread closes the window; the others carry on without waiting for it
+        if (now - start >= windowNanos && windowSamples.sum() >= MIN_WINDOW_SAMPLES
+                && windowStart.compareAndSet(start, now)) {
+            long samples = windowSamples.sumThenReset();
+            long latencySum = windowLatencyNanos.sumThenReset();
+            int maxInFlight = windowMaxInFlight.getAndSet(inFlight.get());
+            if (samples > 0) {
+                update((double) latencySum / samples, maxInFlight);
+            }
+        }
+    }
+
+    private synchronized void update(double latencyNanos, int maxInFlight) {
+        if (longTermLatencyNanos == 0) {
+            longTermLatencyNanos = latencyNanos;
+        } else {
+            longTermLatencyNanos += (latencyNanos - longTermLatencyNanos) / properties.getLongWindow();
+            if (longTermLatencyNanos > 2 * latencyNanos) {
+                // Latency is back to normal after a slow spell; let the long-term average follow it down faster
+                longTermLatencyNanos *= 0.95;
+            }
+        }
+        if (maxInFlight < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0,
+                properties.getTolerance() * longTermLatencyNanos / latencyNanos));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        newLimit = estimatedLimit * (1 - properties.getSmoothing()) + newLimit * properties.getSmoothing();
+        estimatedLimit = Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), newLimit));
+        if ((int) estimatedLimit != limit.value()) {
+            limit = limit((int) estimatedLimit);
+        }
+    }
+
+    private Limit limit(int value) {
+        int[] reserved = new int[reservedShares.length];
+        int unreserved = value;
+        for (int partition = 0; partition < reserved.length; partition++) {
+            reserved[partition] = (int) (value * reservedShares[partition]);
+            unreserved -= reserved[partition];
+        }
+        return new Limit(value, reserved, unreserved);
+    }
+
+    private static int indexOf(String provider) {
+        if ("auto".equalsIgnoreCase(provider)) {
+            return AUTO;
+        }
+        PaymentProviderType type = PaymentProviderType.fromName(provider.toUpperCase());
+        if (type == null) {
+            throw new IllegalArgumentException("Unknown provider in payment.concurrency-limit.reserved: " + provider);
+        }
+        return type.ordinal();
+    }
+
+    private static String partitionName(int partition) {
+        return partition == AUTO ? "auto" : PROVIDERS[partition].name().toLowerCase();
+    }
+
+    // The limit split into each partition's reserve and the shared rest, which add up to it
+    private record Limit(int value, int[] reserved, int shared) {
+    }
+
+    /**
+     * A payment admitted by the limiter. Released once, by the first call to {@link #release} or {@link #cancel}.
+     */
+    public static final class Permit {
+
+        private final ConcurrencyLimiter limiter;
+        private final int partition;
+        // Holds a slot of the shared part of the limit rather than of its partition's reserve
+        private final boolean shared;
+        private final long startNanos;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ConcurrencyLimiter limiter, int partition, boolean shared, long startNanos) {
+            this.limiter = limiter;
+            this.partition = partition;
+            this.shared = shared;
+            this.startNanos = startNanos;
+        }
+
+        /**
+         * Releases the permit once the payment completed, successfully if {@code error} is null. Its latency feeds
+         * the limit unless it failed fast, without waiting on a downstream service.
+         */
+        public void release(Throwable error) {
+            if (limiter != null && released.compareAndSet(false, true)) {
+                limiter.release(partition, shared,
+                        failedFast(error) ? -1 : limiter.nanoClock.getAsLong() - startNanos);
+            }
+        }
+
+        /**
+         * Releases the permit of a payment that was abandoned, without counting its latency.
+         */
+        public void cancel() {
+            if (limiter != null && released.compareAndSet(false, true)) {
+                limiter.release(partition, shared, -1);
+            }
+        }
+
+        private static boolean failedFast(Throwable error) {
+            return error instanceof PaymentRejectedException
+                    || error instanceof CallNotPermittedException
+                    || error instanceof BulkheadFullException
+                    || error instanceof NoProviderAvailableException;
+        }
+    }
+}
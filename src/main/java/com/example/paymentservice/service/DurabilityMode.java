@@ -0,0 +1,16 @@
+package com.example.paymentservice.service;
+
+/**
+ * When a payment is answered relative to its transaction record being committed.
+ */
+public enum DurabilityMode {
+    // Each payment saves and commits its own record before answering
+    SYNC,
+    // Records are committed in batches; each payment waits for the batch holding its record
+    GROUP_COMMIT,
+    // Payments answer as soon as their record is buffered; records still in the buffer are lost if the process dies
+    WRITE_BEHIND,
+    // Payments answer once their record is appended to the local journal and forced to disk; records are moved to the
+    // database like WRITE_BEHIND and replayed from the journal on startup after a crash
+    JOURNAL
+}
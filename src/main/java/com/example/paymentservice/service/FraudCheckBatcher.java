@@ -0,0 +1,126 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.config.FraudBatchProperties;
+import com.example.paymentservice.model.FraudCheckRequest;
+import com.example.paymentservice.model.Money;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Groups fraud checks that arrive within {@code fraud.batch.window} into one {@code /check/batch} call of up to
+ * {@code fraud.batch.max-batch-size} amounts. The service answers with one verdict per amount, in request order.
+ * Checks still waiting for a verdict when the batcher is disposed fail.
+ */
+class FraudCheckBatcher {
+
+    private static final ParameterizedTypeReference<List<Boolean>> VERDICTS = new ParameterizedTypeReference<>() {
+    };
+
+    private final WebClient webClient;
+    // Serialized by Flux.create: callers on many threads offer to a lock-free queue, and whichever finds it idle drains
+    // it, so no caller spins or waits for another
+    private final FluxSink<PendingCheck> pending;
+    private final Disposable subscription;
+    // Checks not answered yet, so they can be failed on dispose
+    private final Set<PendingCheck> outstanding = ConcurrentHashMap.newKeySet();
+    private volatile boolean disposed;
+
+    FraudCheckBatcher(WebClient webClient, FraudBatchProperties properties) {
+        this.webClient = webClient;
+        AtomicReference<FluxSink<PendingCheck>> sink = new AtomicReference<>();
+        this.subscription = Flux.create(sink::set, FluxSink.OverflowStrategy.BUFFER)
+                .bufferTimeout(properties.getMaxBatchSize(), properties.getWindow(), true)
+                .flatMap(this::send, properties.getMaxConcurrentBatches())
+                .subscribe();
+        // Subscribing created it
+        this.pending = sink.get();
+    }
+
+    Mono<Boolean> check(Money amount) {
+        return Mono.defer(() -> {
+            PendingCheck check = new PendingCheck(amount, Sinks.one());
+            outstanding.add(check);
+            if (disposed) {
+                outstanding.remove(check);
+                return Mono.error(shutDown());
+            }
+            pending.next(check);
+            return check.verdict().asMono().doFinally(signal -> outstanding.remove(check));
+        });
+    }
+
+    void dispose() {
+        disposed = true;
+        subscription.dispose();
+        // Buffered checks and those in cancelled batch calls would otherwise never be answered
+        for (PendingCheck check : outstanding) {
+            check.verdict().tryEmitError(shutDown());
+        }
+    }
+
+    private static IllegalStateException shutDown() {
+        return new IllegalStateException("Fraud check batcher is shut down");
+    }
+
+    /**
+     * Sends the amounts as one {@code /check/batch} call and returns their verdicts in the same order.
+     */
+    static Mono<List<Boolean>> checkBatch(WebClient webClient, List<Money> amounts) {
+        List<FraudCheckRequest> requests = new ArrayList<>(amounts.size());
+        for (Money amount : amounts) {
+            requests.add(new FraudCheckRequest(amount));
+        }
+        return webClient.post()
+                .uri("/check/batch")
+                .bodyValue(requests)
+                .retrieve()
+                .bodyToMono(VERDICTS)
+                .map(verdicts -> {
+                    if (verdicts.size() != amounts.size()) {
+                        throw new IllegalStateException("Fraud service returned " + verdicts.size()
+                                + " verdicts for " + amounts.size() + " checks");
+                    }
+                    List<Boolean> fraudulent = new ArrayList<>(verdicts.size());
+                    for (Boolean verdict : verdicts) {
+                        fraudulent.add(Boolean.TRUE.equals(verdict));
+                    }
+                    return fraudulent;
+                })
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("Fraud service returned no verdicts")));
+    }
+
+    private Mono<Void> send(List<PendingCheck> batch) {
+        List<Money> amounts = new ArrayList<>(batch.size());
+        for (PendingCheck check : batch) {
+            amounts.add(check.amount());
+        }
+        return checkBatch(webClient, amounts)
+                .doOnNext(verdicts -> {
+                    for (int i = 0; i < batch.size(); i++) {
+                        batch.get(i).verdict().tryEmitValue(verdicts.get(i));
+                    }
+                })
+                .onErrorResume(e -> {
+                    // Fail every caller of the batch; callers already answered ignore this
+                    for (PendingCheck check : batch) {
+                        check.verdict().tryEmitError(e);
+                    }
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private record PendingCheck(Money amount, Sinks.One<Boolean> verdict) {
+    }
+}
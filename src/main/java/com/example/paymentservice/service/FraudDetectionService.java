@@ -1,27 +1,207 @@
 package com.example.paymentservice.service;
 
+import com.example.paymentservice.config.FraudBatchProperties;
+import com.example.paymentservice.config.FraudCacheProperties;
 import com.example.paymentservice.model.FraudCheckRequest;
+import com.example.paymentservice.model.Money;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.netty.channel.ChannelOption;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 
 @Service
-public class FraudDetectionService {
+public class FraudDetectionService implements DisposableBean {
     private final WebClient webClient;
+    private final FraudBatchProperties batchProperties;
+    // Bounds each check, including time spent waiting for a batch, so a stalled fraud service cannot hold a payment
+    private final Duration timeout;
+
+    // Null when every check is sent on its own
+    private final FraudCheckBatcher batcher;
+
+    // Null when caching is disabled
+    private final AsyncCache<Bucket, Boolean> verdicts;
+    private final Currency[] bucketCurrencies;
+    private final long[] bucketUpTo;
+    private final long[] bucketWidths;
 
-    public FraudDetectionService(@Value("${external.fraud-service-url}") String fraudServiceUrl) {
+    public FraudDetectionService(@Value("${external.fraud-service-url}") String fraudServiceUrl,
+                                 @Value("${external.fraud-service-connect-timeout:2s}") Duration connectTimeout,
+                                 @Value("${external.fraud-service-timeout:3s}") Duration timeout,
+                                 FraudCacheProperties cacheProperties,
+                                 FraudBatchProperties batchProperties,
+                                 MeterRegistry meterRegistry) {
+        HttpClient httpClient = HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                .responseTimeout(timeout);
         this.webClient = WebClient.builder()
                 .baseUrl(fraudServiceUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
                 .build();
+        this.batchProperties = batchProperties;
+        this.timeout = timeout;
+        this.batcher = batchProperties.isEnabled() ? new FraudCheckBatcher(webClient, batchProperties) : null;
+
+        List<FraudCacheProperties.Bucket> buckets = cacheProperties.getBuckets();
+        this.bucketCurrencies = new Currency[buckets.size()];
+        this.bucketUpTo = new long[buckets.size()];
+        this.bucketWidths = new long[buckets.size()];
+        for (int i = 0; i < buckets.size(); i++) {
+            Money upTo = buckets.get(i).getUpTo();
+            Money width = buckets.get(i).getWidth();
+            if (!upTo.currency().equals(width.currency())) {
+                throw new IllegalArgumentException("fraud.cache.buckets[" + i + "] mixes " + upTo.currency()
+                        + " and " + width.currency());
+            }
+            bucketCurrencies[i] = upTo.currency();
+            bucketUpTo[i] = upTo.minorUnits();
+            bucketWidths[i] = Math.max(1, width.minorUnits());
+        }
+
+        if (cacheProperties.isEnabled()) {
+            this.verdicts = Caffeine.newBuilder()
+                    .expireAfterWrite(cacheProperties.getTtl())
+                    .maximumSize(cacheProperties.getMaximumSize())
+                    .recordStats()
+                    .buildAsync();
+            CaffeineCacheMetrics.monitor(meterRegistry, verdicts, "fraudVerdicts");
+        } else {
+            this.verdicts = null;
+        }
+    }
+
+    public boolean isFraudulent(Money amount) {
+        return Boolean.TRUE.equals(isFraudulentReactive(amount).block(timeout));
+    }
+
+    public Mono<Boolean> isFraudulentReactive(Money amount) {
+        if (verdicts == null) {
+            return checkRemotely(amount);
+        }
+        // Concurrent misses on one bucket share the first caller's remote check. A failed check is evicted before
+        // its callers see the error, so the next caller retries. Cancellation is suppressed so one subscriber going
+        // away does not cancel the check for the others.
+        return Mono.fromFuture(() -> verdicts.get(bucketOf(amount), (bucket, executor) -> checkRemotely(amount)
+                .doOnError(e -> verdicts.synchronous().invalidate(bucket))
+                .toFuture()), true);
+    }
+
+    /**
+     * Checks many amounts at once, for bulk submissions. Cached verdicts are reused and the rest are sent as
+     * {@code /check/batch} calls of up to {@code fraud.batch.max-batch-size} amounts, whether or not
+     * {@code fraud.batch.enabled} is set. Verdicts are returned in the order of the amounts.
+     */
+    public Mono<List<Boolean>> areFraudulentReactive(List<Money> amounts) {
+        if (verdicts == null) {
+            return checkRemotely(amounts);
+        }
+        // One remote check per bucket, made with the first amount that falls in it
+        Map<Bucket, Money> amountByBucket = new LinkedHashMap<>();
+        for (Money amount : amounts) {
+            amountByBucket.putIfAbsent(bucketOf(amount), amount);
+        }
+        return Mono.fromFuture(() -> verdicts.getAll(amountByBucket.keySet(), (missing, executor) -> {
+                    List<Bucket> buckets = new ArrayList<>(missing);
+                    List<Money> missingAmounts = new ArrayList<>(buckets.size());
+                    for (Bucket bucket : buckets) {
+                        missingAmounts.add(amountByBucket.get(bucket));
+                    }
+                    return checkRemotely(missingAmounts)
+                            .map(fraudulent -> {
+                                Map<Bucket, Boolean> found = new HashMap<>();
+                                for (int i = 0; i < buckets.size(); i++) {
+                                    found.put(buckets.get(i), fraudulent.get(i));
+                                }
+                                return found;
+                            })
+                            .doOnError(e -> verdicts.synchronous().invalidateAll(buckets))
+                            .toFuture();
+                }), true)
+                .map(found -> {
+                    List<Boolean> fraudulent = new ArrayList<>(amounts.size());
+                    for (Money amount : amounts) {
+                        fraudulent.add(found.get(bucketOf(amount)));
+                    }
+                    return fraudulent;
+                });
     }
 
-    public boolean isFraudulent(double amount) {
-        return Boolean.TRUE.equals(webClient.post()
+    /**
+     * Opens a connection to the fraud service, for startup warm-up. Any answer will do.
+     */
+    public Mono<Void> warmUp() {
+        return webClient.head()
+                .uri("/check")
+                .exchangeToMono(response -> response.releaseBody())
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    private Bucket bucketOf(Money amount) {
+        long minorUnits = amount.minorUnits();
+        for (int i = 0; i < bucketUpTo.length; i++) {
+            if (bucketCurrencies[i].equals(amount.currency()) && minorUnits <= bucketUpTo[i]) {
+                return new Bucket(Math.floorDiv(minorUnits, bucketWidths[i]) * bucketWidths[i], amount.currency());
+            }
+        }
+        return new Bucket(minorUnits, amount.currency());
+    }
+
+    @Override
+    public void destroy() {
+        if (batcher != null) {
+            batcher.dispose();
+        }
+    }
+
+    private Mono<Boolean> checkRemotely(Money amount) {
+        if (batcher != null) {
+            return batcher.check(amount).timeout(timeout);
+        }
+        return webClient.post()
                 .uri("/check")
                 .bodyValue(new FraudCheckRequest(amount))
                 .retrieve()
                 .bodyToMono(Boolean.class)
-                .block());
+                .map(Boolean.TRUE::equals)
+                .defaultIfEmpty(false)
+                .timeout(timeout);
+    }
+
+    private Mono<List<Boolean>> checkRemotely(List<Money> amounts) {
+        if (amounts.isEmpty()) {
+            return Mono.just(List.of());
+        }
+        int batchSize = batchProperties.getMaxBatchSize();
+        List<List<Money>> batches = new ArrayList<>();
+        for (int from = 0; from < amounts.size(); from += batchSize) {
+            batches.add(amounts.subList(from, Math.min(amounts.size(), from + batchSize)));
+        }
+        return Flux.fromIterable(batches)
+                .flatMapSequential(batch -> FraudCheckBatcher.checkBatch(webClient, batch).timeout(timeout),
+                        batchProperties.getMaxConcurrentBatches())
+                .collect(ArrayList<Boolean>::new, List::addAll)
+                .map(List::copyOf);
+    }
+
+    // Cache key: amounts in the same currency from start up to the bucket width, in minor units, share a verdict
+    private record Bucket(long start, Currency currency) {
     }
 }
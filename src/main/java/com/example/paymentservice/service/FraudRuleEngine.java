@@ -0,0 +1,292 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.config.FraudRuleProperties;
+import com.example.paymentservice.config.MoneyPropertyConverter;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySource;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Screens payments in-process before the remote fraud check. Clear cases are decided locally and only the rest are
+ * sent to the fraud service. Rules are checked in order:
+ * <ol>
+ * <li>an amount on the deny list, or above the hard limit, is rejected</li>
+ * <li>a payment over its provider's velocity limit is sent to the remote check, whatever its amount</li>
+ * <li>an amount on the allow list, or below the approval threshold, is approved</li>
+ * <li>anything else is sent to the remote check</li>
+ * </ol>
+ * Amount rules are kept per currency and only apply to amounts in their own currency, so a payment in a currency no
+ * rule names is only subject to the velocity limits. Rules come from {@code fraud.rules} and are compiled into an
+ * immutable snapshot, swapped whole when
+ * {@code fraud.rules.file} changes, so screening takes no locks and allocates nothing. Decisions are counted in
+ * {@code fraud.rules.decisions}, tagged with {@code decision} and {@code rule}.
+ */
+@Component
+public class FraudRuleEngine {
+
+    public enum Decision {
+        APPROVE,
+        DENY,
+        REMOTE
+    }
+
+    public enum Rule {
+        DENY_LIST(Decision.DENY),
+        HARD_LIMIT(Decision.DENY),
+        VELOCITY(Decision.REMOTE),
+        ALLOW_LIST(Decision.APPROVE),
+        APPROVAL_THRESHOLD(Decision.APPROVE),
+        // No rule matched
+        NONE(Decision.REMOTE);
+
+        private final Decision decision;
+
+        Rule(Decision decision) {
+            this.decision = decision;
+        }
+
+        public Decision decision() {
+            return decision;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(FraudRuleEngine.class);
+
+    private static final PaymentProviderType[] PROVIDERS = PaymentProviderType.values();
+
+    // Index of the velocity window for AUTO routed payments, which have no provider when they are screened
+    private static final int AUTO = PROVIDERS.length;
+
+    private static final Rule[] RULES = Rule.values();
+
+    // Binds amounts in a reloaded rules file the way the application binds them
+    private static final ConversionService CONVERSION_SERVICE = conversionService();
+
+    private final FraudRuleProperties properties;
+    private final ConfigurableEnvironment environment;
+    private final LongSupplier nanoClock;
+    private final Counter[] decisions = new Counter[RULES.length];
+    private volatile Rules rules;
+    private FileTime loadedFileTime;
+
+    @Autowired
+    public FraudRuleEngine(FraudRuleProperties properties, ConfigurableEnvironment environment,
+                           MeterRegistry meterRegistry) {
+        this(properties, environment, meterRegistry, System::nanoTime);
+    }
+
+    FraudRuleEngine(FraudRuleProperties properties, ConfigurableEnvironment environment, MeterRegistry meterRegistry,
+                    LongSupplier nanoClock) {
+        this.properties = properties;
+        this.environment = environment;
+        this.nanoClock = nanoClock;
+        for (Rule rule : RULES) {
+            decisions[rule.ordinal()] = Counter.builder("fraud.rules.decisions")
+                    .description("Payments screened by the local fraud rules, by the rule that decided them")
+                    .tag("decision", rule.decision().name().toLowerCase())
+                    .tag("rule", rule.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        this.rules = new Rules(properties, null);
+        reload();
+    }
+
+    /**
+     * Screens a payment and counts it against its provider's velocity limit. A null provider stands for an
+     * {@code AUTO} routed payment.
+     */
+    public Decision screen(PaymentProviderType provider, Money amount) {
+        Rule rule = rules.match(provider == null ? AUTO : provider.ordinal(), amount, nanoClock);
+        decisions[rule.ordinal()].increment();
+        return rule.decision();
+    }
+
+    /**
+     * Re-reads {@code fraud.rules.file} if it changed since it was last read. A file that cannot be read or holds
+     * invalid rules leaves the current rules in place.
+     */
+    @Scheduled(fixedDelayString = "#{@fraudRuleProperties.reloadInterval.toMillis()}")
+    public void reload() {
+        if (properties.getFile() == null) {
+            return;
+        }
+        Path file = Path.of(properties.getFile());
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (modified.equals(loadedFileTime)) {
+                return;
+            }
+            List<ConfigurationPropertySource> sources = new ArrayList<>();
+            // The file's properties come first, so they win over the application's
+            ConfigurationPropertySources.from(new YamlPropertySourceLoader()
+                    .load("fraud rules " + file, new FileSystemResource(file))).forEach(sources::add);
+            ConfigurationPropertySources.get(environment).forEach(sources::add);
+            FraudRuleProperties reloaded = new Binder(sources, null, CONVERSION_SERVICE)
+                    .bind("fraud.rules", Bindable.of(FraudRuleProperties.class))
+                    .orElseGet(FraudRuleProperties::new);
+            rules = new Rules(reloaded, rules);
+            loadedFileTime = modified;
+            log.info("Loaded fraud rules from {}", file);
+        } catch (NoSuchFileException e) {
+            log.warn("Fraud rules file {} not found, keeping the current rules", file);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not load fraud rules from {}, keeping the current rules", file, e);
+        }
+    }
+
+    private static ConversionService conversionService() {
+        ApplicationConversionService conversionService = new ApplicationConversionService();
+        conversionService.addConverter(new MoneyPropertyConverter());
+        return conversionService;
+    }
+
+    private static final class Rules {
+
+        private final boolean enabled;
+        // A currency without rules maps to none
+        private final Map<Currency, AmountRules> amountRules;
+        private final Duration window;
+        private final int slots;
+        // Indexed by provider ordinal, then AUTO; a null window means no limit
+        private final SlidingWindowCounter[] windows;
+        private final long[] limits;
+
+        Rules(FraudRuleProperties properties, Rules previous) {
+            this.enabled = properties.isEnabled();
+            Map<Currency, AmountRules> amountRules = new HashMap<>();
+            for (Money approveBelow : properties.getApproveBelow()) {
+                AmountRules currencyRules = forCurrency(amountRules, approveBelow.currency());
+                if (currencyRules.approveBelow != Long.MIN_VALUE) {
+                    throw new IllegalArgumentException("More than one fraud.rules.approve-below in "
+                            + approveBelow.currency());
+                }
+                currencyRules.approveBelow = approveBelow.minorUnits();
+            }
+            for (Money denyAbove : properties.getDenyAbove()) {
+                AmountRules currencyRules = forCurrency(amountRules, denyAbove.currency());
+                if (currencyRules.denyAbove != Long.MAX_VALUE) {
+                    throw new IllegalArgumentException("More than one fraud.rules.deny-above in "
+                            + denyAbove.currency());
+                }
+                currencyRules.denyAbove = denyAbove.minorUnits();
+            }
+            for (Map.Entry<Currency, long[]> allow : sortedByCurrency(properties.getAllow()).entrySet()) {
+                forCurrency(amountRules, allow.getKey()).allow = allow.getValue();
+            }
+            for (Map.Entry<Currency, long[]> deny : sortedByCurrency(properties.getDeny()).entrySet()) {
+                forCurrency(amountRules, deny.getKey()).deny = deny.getValue();
+            }
+            this.amountRules = Map.copyOf(amountRules);
+
+            FraudRuleProperties.Velocity velocity = properties.getVelocity();
+            this.window = velocity.getWindow();
+            this.slots = velocity.getSlots();
+            // Payments already counted still count after a reload, unless the window itself changed
+            boolean keepCounts = previous != null && previous.window.equals(window) && previous.slots == slots;
+            this.windows = new SlidingWindowCounter[PROVIDERS.length + 1];
+            this.limits = new long[PROVIDERS.length + 1];
+            for (Map.Entry<String, Long> limit : velocity.getLimits().entrySet()) {
+                int index = indexOf(limit.getKey());
+                limits[index] = limit.getValue();
+                windows[index] = keepCounts && previous.windows[index] != null
+                        ? previous.windows[index]
+                        : new SlidingWindowCounter(window, slots);
+            }
+        }
+
+        Rule match(int provider, Money amount, LongSupplier nanoClock) {
+            if (!enabled) {
+                return Rule.NONE;
+            }
+            SlidingWindowCounter window = windows[provider];
+            boolean overVelocity = window != null && window.incrementAndSum(nanoClock.getAsLong()) > limits[provider];
+            AmountRules currencyRules = amountRules.get(amount.currency());
+            if (currencyRules == null) {
+                return overVelocity ? Rule.VELOCITY : Rule.NONE;
+            }
+            long minorUnits = amount.minorUnits();
+            if (minorUnits > currencyRules.denyAbove) {
+                return Rule.HARD_LIMIT;
+            }
+            if (currencyRules.deny.length > 0 && Arrays.binarySearch(currencyRules.deny, minorUnits) >= 0) {
+                return Rule.DENY_LIST;
+            }
+            if (overVelocity) {
+                return Rule.VELOCITY;
+            }
+            if (currencyRules.allow.length > 0 && Arrays.binarySearch(currencyRules.allow, minorUnits) >= 0) {
+                return Rule.ALLOW_LIST;
+            }
+            if (minorUnits < currencyRules.approveBelow) {
+                return Rule.APPROVAL_THRESHOLD;
+            }
+            return Rule.NONE;
+        }
+
+        private static AmountRules forCurrency(Map<Currency, AmountRules> amountRules, Currency currency) {
+            return amountRules.computeIfAbsent(currency, key -> new AmountRules());
+        }
+
+        // Minor units per currency, sorted for binary search
+        private static Map<Currency, long[]> sortedByCurrency(List<Money> amounts) {
+            Map<Currency, long[]> sorted = new HashMap<>();
+            for (Money amount : amounts) {
+                long[] minorUnits = sorted.get(amount.currency());
+                minorUnits = minorUnits == null ? new long[1] : Arrays.copyOf(minorUnits, minorUnits.length + 1);
+                minorUnits[minorUnits.length - 1] = amount.minorUnits();
+                sorted.put(amount.currency(), minorUnits);
+            }
+            sorted.values().forEach(Arrays::sort);
+            return sorted;
+        }
+
+        private static int indexOf(String provider) {
+            if ("auto".equalsIgnoreCase(provider)) {
+                return AUTO;
+            }
+            PaymentProviderType type = PaymentProviderType.fromName(provider.toUpperCase());
+            if (type == null) {
+                throw new IllegalArgumentException("Unknown provider in fraud.rules.velocity.limits: " + provider);
+            }
+            return type.ordinal();
+        }
+    }
+
+    // The amount rules of one currency, in its minor units
+    private static final class AmountRules {
+
+        private long approveBelow = Long.MIN_VALUE;
+        private long denyAbove = Long.MAX_VALUE;
+        private long[] allow = new long[0];
+        private long[] deny = new long[0];
+    }
+}
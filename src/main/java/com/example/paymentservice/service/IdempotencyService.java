@@ -0,0 +1,256 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.config.IdempotencyProperties;
+import com.example.paymentservice.exception.FraudCheckFailedException;
+import com.example.paymentservice.exception.GlobalExceptionHandler;
+import com.example.paymentservice.exception.IdempotencyKeyReusedException;
+import com.example.paymentservice.exception.NoProviderAvailableException;
+import com.example.paymentservice.exception.PaymentNotRecordedException;
+import com.example.paymentservice.exception.PaymentRejectedException;
+import com.example.paymentservice.model.IdempotencyRecord;
+import com.example.paymentservice.provider.PaymentProviderRouter;
+import com.example.paymentservice.repository.IdempotencyRecordRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs each payment at most once per {@code Idempotency-Key}. Keys of running payments are held in memory without a
+ * bound, so no burst of new keys can evict one and let a retry charge again; duplicates wait for the payment's
+ * outcome. Completed outcomes stay in memory for {@code payment.idempotency.ttl}, up to
+ * {@code payment.idempotency.maximum-size} of them, and are also stored in the database, so they are replayed after a
+ * restart or once evicted from memory. A failure releases its key, so the client can retry, only when it is known not
+ * to have reached a provider; any other failure is replayed to retries instead, stored as the error response
+ * {@link GlobalExceptionHandler} answers it with. A key is bound to a SHA-256 hash of its request body with object
+ * fields sorted, so reusing it for any other payload is turned down.
+ */
+@Service
+public class IdempotencyService {
+
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyService.class);
+
+    // Keeps a stored error response within IdempotencyRecord's body column
+    private static final int MAX_STORED_MESSAGE_LENGTH = 1000;
+
+    private final IdempotencyRecordRepository recordRepository;
+    private final IdempotencyProperties properties;
+    private final GlobalExceptionHandler exceptionHandler;
+    private final ObjectMapper objectMapper;
+    private final ConcurrentMap<String, Entry> inFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Entry> completed;
+    private final Counter replayed;
+
+    public IdempotencyService(IdempotencyRecordRepository recordRepository,
+                              IdempotencyProperties properties,
+                              GlobalExceptionHandler exceptionHandler,
+                              ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry) {
+        this.recordRepository = recordRepository;
+        this.properties = properties;
+        this.exceptionHandler = exceptionHandler;
+        this.objectMapper = objectMapper;
+        Cache<String, Entry> cache = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTtl())
+                .maximumSize(properties.getMaximumSize())
+                .build();
+        this.completed = cache.asMap();
+        this.replayed = Counter.builder("payment.idempotency.replayed").register(meterRegistry);
+    }
+
+    public ResponseEntity<String> execute(String idempotencyKey, byte[] requestBody,
+                                          Supplier<ResponseEntity<String>> payment) {
+        String fingerprint = fingerprint(requestBody);
+        Entry done = completed.get(idempotencyKey);
+        if (done != null) {
+            return replay(idempotencyKey, fingerprint, done);
+        }
+        Entry mine = new Entry(fingerprint, new CompletableFuture<>());
+        Entry existing = inFlight.putIfAbsent(idempotencyKey, mine);
+        if (existing != null) {
+            return replay(idempotencyKey, fingerprint, existing);
+        }
+        // The payment may have completed between the two lookups
+        done = completed.get(idempotencyKey);
+        if (done != null) {
+            copyOutcome(done, mine);
+            inFlight.remove(idempotencyKey, mine);
+            return replay(idempotencyKey, fingerprint, done);
+        }
+
+        ResponseEntity<String> response;
+        try {
+            Optional<IdempotencyRecord> stored = recordRepository.findById(idempotencyKey)
+                    .filter(record -> record.getCreatedAt().isAfter(Instant.now().minus(properties.getTtl())));
+            if (stored.isPresent()) {
+                IdempotencyRecord record = stored.get();
+                ResponseEntity.BodyBuilder builder = ResponseEntity.status(record.getStatus());
+                if (record.getContentType() != null) {
+                    builder.contentType(MediaType.parseMediaType(record.getContentType()));
+                }
+                Entry restored = new Entry(record.getRequestFingerprint(),
+                        CompletableFuture.completedFuture(builder.body(record.getBody())));
+                copyOutcome(restored, mine);
+                complete(idempotencyKey, mine, restored);
+                return replay(idempotencyKey, fingerprint, restored);
+            }
+            response = payment.get();
+        } catch (RuntimeException e) {
+            // Duplicates already waiting see the same error
+            mine.response.completeExceptionally(e);
+            if (isRetrySafe(e)) {
+                // Nothing was charged, so the next attempt runs the payment again
+                inFlight.remove(idempotencyKey, mine);
+            } else {
+                // The provider may have taken the payment, so retries get this error rather than paying again
+                store(idempotencyKey, fingerprint, errorResponse(e));
+                complete(idempotencyKey, mine, mine);
+            }
+            throw e;
+        }
+
+        store(idempotencyKey, fingerprint, response);
+        mine.response.complete(response);
+        complete(idempotencyKey, mine, mine);
+        return response;
+    }
+
+    @Scheduled(fixedDelayString = "#{@idempotencyProperties.purgeInterval.toMillis()}")
+    public void purgeExpired() {
+        recordRepository.deleteCreatedBefore(Instant.now().minus(properties.getTtl()));
+    }
+
+    /**
+     * Whether a failed payment is known to have charged no one: it was turned down or its fraud check failed before it
+     * reached a provider, or every provider it was sent to failed without processing it.
+     */
+    static boolean isRetrySafe(Throwable error) {
+        if (error instanceof PaymentNotRecordedException) {
+            return false;
+        }
+        return error instanceof PaymentRejectedException || error instanceof FraudCheckFailedException
+                || error instanceof NoProviderAvailableException || PaymentProviderRouter.isFailoverSafe(error);
+    }
+
+    // Moves a finished payment's key from the running to the completed ones; in that order, so a lookup that misses
+    // the running entry finds the completed one
+    private void complete(String idempotencyKey, Entry running, Entry outcome) {
+        completed.put(idempotencyKey, outcome);
+        inFlight.remove(idempotencyKey, running);
+    }
+
+    private static void copyOutcome(Entry from, Entry to) {
+        from.response.whenComplete((response, error) -> {
+            if (error != null) {
+                to.response.completeExceptionally(error);
+            } else {
+                to.response.complete(response);
+            }
+        });
+    }
+
+    private ResponseEntity<String> replay(String idempotencyKey, String fingerprint, Entry entry) {
+        if (!entry.fingerprint.equals(fingerprint)) {
+            throw new IdempotencyKeyReusedException(idempotencyKey);
+        }
+        ResponseEntity<String> response;
+        try {
+            response = entry.response.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        replayed.increment();
+        return ResponseEntity.status(response.getStatusCode())
+                .headers(headers -> headers.setContentType(response.getHeaders().getContentType()))
+                .header("Idempotent-Replayed", "true")
+                .body(response.getBody());
+    }
+
+    private void store(String idempotencyKey, String fingerprint, ResponseEntity<String> response) {
+        try {
+            recordRepository.save(toRecord(idempotencyKey, fingerprint, response));
+        } catch (RuntimeException e) {
+            // The outcome is still deduplicated from memory
+            log.warn("Could not store the response for Idempotency-Key {}", idempotencyKey, e);
+        }
+    }
+
+    // Hashes the body with its object fields sorted and its numbers as written, so only the same payload matches
+    private String fingerprint(byte[] requestBody) {
+        try {
+            Object body = objectMapper.reader(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+                    .readValue(requestBody, Object.class);
+            byte[] canonical = objectMapper.writer(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+                    .writeValueAsBytes(body);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Request body is not JSON", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // The response GlobalExceptionHandler gives a failure that is replayed rather than retried
+    private ResponseEntity<String> errorResponse(RuntimeException error) {
+        HttpStatus status;
+        Map<String, String> body;
+        if (error instanceof PaymentNotRecordedException notRecorded) {
+            status = HttpStatus.ACCEPTED;
+            body = exceptionHandler.handlePaymentNotRecordedException(notRecorded);
+        } else if (error instanceof IllegalArgumentException invalid) {
+            status = HttpStatus.BAD_REQUEST;
+            body = exceptionHandler.handleIllegalArgumentException(invalid);
+        } else {
+            status = HttpStatus.INTERNAL_SERVER_ERROR;
+            body = exceptionHandler.handleException(error);
+        }
+        body.computeIfPresent("message", (field, message) -> message.length() > MAX_STORED_MESSAGE_LENGTH
+                ? message.substring(0, MAX_STORED_MESSAGE_LENGTH) : message);
+        try {
+            return ResponseEntity.status(status).contentType(MediaType.APPLICATION_JSON)
+                    .body(objectMapper.writeValueAsString(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static IdempotencyRecord toRecord(String idempotencyKey, String fingerprint,
+                                              ResponseEntity<String> response) {
+        IdempotencyRecord record = new IdempotencyRecord();
+        record.setIdempotencyKey(idempotencyKey);
+        record.setRequestFingerprint(fingerprint);
+        record.setStatus(response.getStatusCode().value());
+        record.setBody(response.getBody());
+        MediaType contentType = response.getHeaders().getContentType();
+        record.setContentType(contentType == null ? null : contentType.toString());
+        record.setCreatedAt(Instant.now());
+        return record;
+    }
+
+    private record Entry(String fingerprint, CompletableFuture<ResponseEntity<String>> response) {
+    }
+}
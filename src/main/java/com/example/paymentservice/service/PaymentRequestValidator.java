@@ -0,0 +1,52 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.exception.PaymentRejectedException;
+import com.example.paymentservice.model.PaymentRequest;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Validates single payment requests. Where {@code @Valid} has Spring throw a {@code MethodArgumentNotValidException}
+ * with a full stack trace, an invalid request here is turned down with a {@link PaymentRejectedException}, one per
+ * distinct set of errors, with the same field-to-message body.
+ */
+@Component
+public class PaymentRequestValidator {
+
+    // Errors come from the constraint messages rather than from request content, so few combinations exist
+    private static final int MAX_CACHED_REJECTIONS = 256;
+
+    private final Validator validator;
+    private final Map<String, PaymentRejectedException> rejections = new ConcurrentHashMap<>();
+
+    public PaymentRequestValidator(Validator validator) {
+        this.validator = validator;
+    }
+
+    public void validate(PaymentRequest paymentRequest) {
+        Set<ConstraintViolation<PaymentRequest>> violations = validator.validate(paymentRequest);
+        if (violations.isEmpty()) {
+            return;
+        }
+        // Sorted, so the same errors always make the same key
+        Map<String, String> errors = new TreeMap<>();
+        for (ConstraintViolation<PaymentRequest> violation : violations) {
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        String key = errors.toString();
+        PaymentRejectedException rejection = rejections.get(key);
+        if (rejection == null) {
+            rejection = new PaymentRejectedException("Invalid payment request: " + key, errors);
+            if (rejections.size() < MAX_CACHED_REJECTIONS) {
+                rejections.putIfAbsent(key, rejection);
+            }
+        }
+        throw rejection;
+    }
+}
@@ -1,76 +1,447 @@
 package com.example.paymentservice.service;
 
+import com.example.paymentservice.config.BatchPaymentProperties;
+import com.example.paymentservice.config.PaymentProviderProperties;
+import com.example.paymentservice.model.BatchPaymentResult;
+import com.example.paymentservice.model.Money;
 import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.exception.FraudCheckFailedException;
+import com.example.paymentservice.exception.NoProviderAvailableException;
+import com.example.paymentservice.exception.PaymentNotRecordedException;
+import com.example.paymentservice.exception.PaymentRejectedException;
 import com.example.paymentservice.model.PaymentRequest;
+import com.example.paymentservice.model.PaymentRouting;
 import com.example.paymentservice.model.PaymentTransaction;
+import com.example.paymentservice.observer.AsyncObserverDispatcher;
 import com.example.paymentservice.observer.Observer;
 import com.example.paymentservice.observer.Subject;
 import com.example.paymentservice.provider.PaymentProvider;
 import com.example.paymentservice.provider.PaymentProviderFactory;
-import com.example.paymentservice.repository.PaymentTransactionRepository;
+import com.example.paymentservice.provider.PaymentProviderResilience;
+import com.example.paymentservice.provider.PaymentProviderRouter;
+import com.example.paymentservice.provider.ReactivePaymentProvider;
+import com.example.paymentservice.service.PaymentStageMetrics.Outcome;
+import com.example.paymentservice.service.PaymentStageMetrics.Stage;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
 
 @Service
 public class PaymentService implements Subject {
-    private PaymentProvider paymentProvider;
-    private final List<Observer> observers = new ArrayList<>();
+
+    // How long processed items of a bulk submission wait for others before their records are written
+    private static final Duration BATCH_WRITE_WINDOW = Duration.ofMillis(10);
+
+    @Autowired
+    private AsyncObserverDispatcher observerDispatcher;
 
     @Autowired
     private PaymentProviderFactory paymentProviderFactory;
 
     @Autowired
-    private PaymentTransactionRepository transactionRepository;
+    private PaymentProviderResilience providerResilience;
+
+    @Autowired
+    private PaymentProviderRouter providerRouter;
+
+    @Autowired
+    private PaymentTransactionWriter transactionWriter;
+
+    @Autowired
+    private PaymentStageMetrics stageMetrics;
+
+    @Autowired
+    private FraudRuleEngine fraudRules;
 
     @Autowired
     private FraudDetectionService fraudDetectionService;
 
-    public void setPaymentProvider(PaymentProviderType providerType) {
-        this.paymentProvider = paymentProviderFactory.getPaymentProvider(providerType);
+    @Autowired
+    private PaymentProviderProperties providerProperties;
+
+    @Autowired
+    private BatchPaymentProperties batchProperties;
+
+    @Autowired
+    private PaymentRequestValidator paymentRequestValidator;
+
+    /**
+     * Processes the payment and returns the provider that took it, which differs from the requested one for
+     * {@code AUTO} routing or after a failover.
+     */
+    public PaymentProviderType processPayment(PaymentRequest request) {
+        // Check for fraud, with the fraud service only when the local rules cannot tell
+        PaymentProviderType requested = requestedProvider(request);
+        long start = System.nanoTime();
+        boolean isFraudulent;
+        try {
+            isFraudulent = switch (fraudRules.screen(requested, request.getAmount())) {
+                case APPROVE -> false;
+                case DENY -> true;
+                case REMOTE -> fraudDetectionService.isFraudulent(request.getAmount());
+            };
+        } catch (RuntimeException e) {
+            stageMetrics.record(Stage.FRAUD_CHECK, requested, Outcome.FAILURE, start);
+            throw new FraudCheckFailedException(e);
+        }
+        if (isFraudulent) {
+            stageMetrics.record(Stage.FRAUD_CHECK, requested, Outcome.REJECTED, start);
+            throw PaymentRejectedException.FRAUDULENT;
+        }
+        stageMetrics.record(Stage.FRAUD_CHECK, requested, Outcome.SUCCESS, start);
+
+        // Process payment using the provider, behind its circuit breaker and bulkhead
+        PaymentProviderType providerType = firstProvider(request);
+        int tried = 0;
+        while (true) {
+            start = System.nanoTime();
+            try {
+                callProvider(providerType, request);
+                stageMetrics.record(Stage.PROVIDER_CALL, providerType, Outcome.SUCCESS, start);
+                break;
+            } catch (RuntimeException e) {
+                stageMetrics.record(Stage.PROVIDER_CALL, providerType, Outcome.FAILURE, start);
+                tried |= PaymentProviderRouter.mask(providerType);
+                PaymentProviderType next = failoverTarget(request, e, tried);
+                if (next == null) {
+                    throw e;
+                }
+                providerType = next;
+            }
+        }
+
+        // Save transaction, then notify observers once it is committed
+        save(providerType, request.getAmount());
+        return providerType;
+    }
+
+    public Mono<PaymentProviderType> processPaymentReactive(PaymentRequest request) {
+        PaymentProviderType requested = requestedProvider(request);
+        return Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return isFraudulentReactive(request)
+                            .doOnNext(isFraudulent -> stageMetrics.record(Stage.FRAUD_CHECK, requested,
+                                    isFraudulent ? Outcome.REJECTED : Outcome.SUCCESS, start))
+                            .doOnError(e -> stageMetrics.record(Stage.FRAUD_CHECK, requested, Outcome.FAILURE,
+                                    start))
+                            .onErrorMap(FraudCheckFailedException::new);
+                })
+                .flatMap(isFraudulent -> {
+                    if (isFraudulent) {
+                        return Mono.error(PaymentRejectedException.FRAUDULENT);
+                    }
+                    return callProviderReactive(request);
+                })
+                // JPA is blocking, keep it off the event loop
+                .flatMap(providerType -> Mono.fromRunnable(() -> save(providerType, request.getAmount()))
+                        .subscribeOn(Schedulers.boundedElastic())
+                        .thenReturn(providerType));
+    }
+
+    private Mono<Boolean> isFraudulentReactive(PaymentRequest request) {
+        return switch (fraudRules.screen(requestedProvider(request), request.getAmount())) {
+            case APPROVE -> Mono.just(false);
+            case DENY -> Mono.just(true);
+            case REMOTE -> fraudDetectionService.isFraudulentReactive(request.getAmount());
+        };
+    }
+
+    // The provider asked for, or null for AUTO routing
+    private static PaymentProviderType requestedProvider(PaymentRequest request) {
+        return request.getRouting() == PaymentRouting.AUTO ? null : request.getProvider();
+    }
+
+    private void callProvider(PaymentProviderType providerType, PaymentRequest request) {
+        // Resolve the provider for this call only, so concurrent requests never share routing state
+        PaymentProvider paymentProvider = paymentProviderFactory.getPaymentProvider(providerType);
+        providerRouter.track(providerType,
+                () -> providerResilience.execute(providerType, () -> paymentProvider.processPayment(request)));
+    }
+
+    private Mono<PaymentProviderType> callProviderReactive(PaymentRequest request) {
+        return Mono.defer(() -> callProviderReactive(request, firstProvider(request), 0));
+    }
+
+    private Mono<PaymentProviderType> callProviderReactive(PaymentRequest request, PaymentProviderType providerType,
+                                                           int tried) {
+        ReactivePaymentProvider paymentProvider = paymentProviderFactory.getReactivePaymentProvider(providerType);
+        Mono<Void> call = providerRouter.track(providerType,
+                providerResilience.executeReactive(providerType, paymentProvider.processPaymentReactive(request)));
+        return Mono.defer(() -> {
+                    long start = System.nanoTime();
+                    return call
+                            .doOnSuccess(ignored -> stageMetrics.record(Stage.PROVIDER_CALL, providerType,
+                                    Outcome.SUCCESS, start))
+                            .doOnError(e -> stageMetrics.record(Stage.PROVIDER_CALL, providerType, Outcome.FAILURE,
+                                    start));
+                })
+                .thenReturn(providerType)
+                .onErrorResume(e -> {
+                    int triedNow = tried | PaymentProviderRouter.mask(providerType);
+                    PaymentProviderType next = failoverTarget(request, e, triedNow);
+                    return next == null ? Mono.error(e) : callProviderReactive(request, next, triedNow);
+                });
     }
 
-    public void processPayment(PaymentRequest request) {
-        if (paymentProvider == null) {
-            throw new IllegalStateException("Payment provider not set");
+    private PaymentProviderType firstProvider(PaymentRequest request) {
+        if (request.getRouting() != PaymentRouting.AUTO) {
+            return request.getProvider();
         }
+        PaymentProviderType chosen = providerRouter.choose(0);
+        if (chosen == null) {
+            throw new NoProviderAvailableException();
+        }
+        return chosen;
+    }
 
-        // Check for fraud
-        boolean isFraudulent = fraudDetectionService.isFraudulent(request.getAmount());
-        if (isFraudulent) {
-            throw new IllegalArgumentException("Fraudulent transaction detected");
+    // The next provider to try, or null if the payment must fail with this error
+    private PaymentProviderType failoverTarget(PaymentRequest request, Throwable error, int tried) {
+        if (!request.isAllowFailover() || !PaymentProviderRouter.isFailoverSafe(error)) {
+            return null;
+        }
+        return providerRouter.choose(tried);
+    }
+
+    private String providerName(PaymentProviderType providerType) {
+        return paymentProviderFactory.getPaymentProvider(providerType).getName();
+    }
+
+    /**
+     * Processes a bulk submission. Items are grouped by provider and each group runs with up to its provider's
+     * {@code batch-concurrency} calls in flight, so a slow provider does not hold up the others. {@code AUTO} routed
+     * items form one more group, with the providers' combined concurrency. Fraud checks are made
+     * for {@code payment.batch.chunk-size} items at a time, and records of processed items are written together.
+     * Results are emitted as items complete, not in submission order, and a failed item never fails the others.
+     * Invalid items are rejected up front, without a fraud check or a provider call.
+     */
+    public Flux<BatchPaymentResult> processBatch(List<PaymentRequest> requests) {
+        if (requests.size() > batchProperties.getMaxItems()) {
+            throw new IllegalArgumentException("A batch may hold at most " + batchProperties.getMaxItems() + " payments");
+        }
+        Map<PaymentProviderType, List<BatchItem>> itemsByProvider = new EnumMap<>(PaymentProviderType.class);
+        List<BatchItem> autoRouted = new ArrayList<>();
+        List<BatchPaymentResult> invalid = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            PaymentRequest request = requests.get(i);
+            String rejection = validate(request);
+            if (rejection != null) {
+                invalid.add(new BatchPaymentResult(i, null, request == null ? null : request.getAmount(),
+                        BatchPaymentResult.Status.REJECTED, rejection));
+                continue;
+            }
+            BatchItem item = new BatchItem(i, request, request.getProvider(), null, null);
+            if (request.getRouting() == PaymentRouting.AUTO) {
+                autoRouted.add(item);
+            } else {
+                itemsByProvider.computeIfAbsent(request.getProvider(), type -> new ArrayList<>()).add(item);
+            }
         }
+        List<Flux<BatchItem>> groups = new ArrayList<>();
+        int autoConcurrency = 0;
+        for (PaymentProviderType providerType : PaymentProviderType.values()) {
+            int concurrency = providerProperties.getProvider(providerType).getBatchConcurrency();
+            autoConcurrency += concurrency;
+            if (itemsByProvider.containsKey(providerType)) {
+                groups.add(processProviderBatch(itemsByProvider.get(providerType), concurrency));
+            }
+        }
+        if (!autoRouted.isEmpty()) {
+            // Routed one by one as they are sent, so the router sees the load of the items already in flight
+            groups.add(processProviderBatch(autoRouted, autoConcurrency));
+        }
+        return Flux.fromIterable(invalid).concatWith(Flux.merge(groups)
+                .bufferTimeout(batchProperties.getChunkSize(), BATCH_WRITE_WINDOW, true)
+                .concatMap(this::persistBatch));
+    }
 
-        // Process payment using the provider
-        paymentProvider.processPayment(request);
+    // The reason an item of a batch is turned down before any check, or null if it is valid
+    private String validate(PaymentRequest request) {
+        if (request == null) {
+            return "Invalid payment request: missing";
+        }
+        try {
+            paymentRequestValidator.validate(request);
+            return null;
+        } catch (PaymentRejectedException e) {
+            return e.getMessage();
+        }
+    }
+
+    private Flux<BatchItem> processProviderBatch(List<BatchItem> items, int concurrency) {
+        return Flux.fromIterable(items)
+                .buffer(batchProperties.getChunkSize())
+                .flatMapSequential(this::checkFraud, 2)
+                .flatMap(item -> {
+                    if (item.status() != null) {
+                        return Mono.just(item);
+                    }
+                    return callProviderReactive(item.request())
+                            .map(providerType -> item.processedBy(providerType))
+                            .onErrorResume(e -> Mono.just(item.with(BatchPaymentResult.Status.FAILED, e.getMessage())));
+                }, concurrency);
+    }
 
-        // Save transaction
+    private Flux<BatchItem> checkFraud(List<BatchItem> items) {
+        // Items the local rules decide keep their verdict; the others are checked remotely together
+        FraudRuleEngine.Decision[] decisions = new FraudRuleEngine.Decision[items.size()];
+        List<Money> amounts = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            PaymentRequest request = items.get(i).request();
+            decisions[i] = fraudRules.screen(requestedProvider(request), request.getAmount());
+            if (decisions[i] == FraudRuleEngine.Decision.REMOTE) {
+                amounts.add(request.getAmount());
+            }
+        }
+        return fraudDetectionService.areFraudulentReactive(amounts)
+                .flatMapIterable(fraudulent -> {
+                    List<BatchItem> checked = new ArrayList<>(items.size());
+                    int next = 0;
+                    for (int i = 0; i < items.size(); i++) {
+                        boolean rejected = decisions[i] == FraudRuleEngine.Decision.REMOTE
+                                ? fraudulent.get(next++)
+                                : decisions[i] == FraudRuleEngine.Decision.DENY;
+                        checked.add(rejected
+                                ? items.get(i).with(BatchPaymentResult.Status.REJECTED,
+                                        PaymentRejectedException.FRAUDULENT.getMessage())
+                                : items.get(i));
+                    }
+                    return checked;
+                })
+                .onErrorResume(e -> Flux.fromIterable(items)
+                        .map(item -> item.with(BatchPaymentResult.Status.FAILED, e.getMessage())));
+    }
+
+    private Flux<BatchPaymentResult> persistBatch(List<BatchItem> items) {
+        // JPA is blocking, keep it off the event loop
+        return Mono.fromCallable(() -> {
+                    List<PaymentTransaction> transactions = new ArrayList<>();
+                    for (BatchItem item : items) {
+                        if (item.status() == BatchPaymentResult.Status.PROCESSED) {
+                            transactions.add(newTransaction(providerName(item.provider()), item.request().getAmount()));
+                        }
+                    }
+                    List<CompletableFuture<PaymentTransaction>> saved;
+                    try {
+                        saved = transactions.isEmpty() ? List.of() : transactionWriter.writeAll(transactions);
+                    } catch (RuntimeException e) {
+                        saved = new ArrayList<>();
+                        for (int i = 0; i < transactions.size(); i++) {
+                            saved.add(CompletableFuture.failedFuture(e));
+                        }
+                    }
+
+                    List<BatchPaymentResult> results = new ArrayList<>(items.size());
+                    int next = 0;
+                    for (BatchItem item : items) {
+                        BatchPaymentResult.Status status = item.status();
+                        String message = item.message();
+                        if (status == BatchPaymentResult.Status.PROCESSED) {
+                            CompletableFuture<PaymentTransaction> transaction = saved.get(next++);
+                            if (transaction.state() == Future.State.FAILED) {
+                                status = BatchPaymentResult.Status.FAILED;
+                                message = "Payment processed but not recorded: "
+                                        + transaction.exceptionNow().getMessage();
+                            } else {
+                                whenSaved(transaction, this::notifyObservers);
+                            }
+                        }
+                        results.add(new BatchPaymentResult(item.index(), item.provider(), item.request().getAmount(),
+                                status, message));
+                    }
+                    return results;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapIterable(results -> results);
+    }
+
+    // Writes the record of a payment processed by a provider, then has observers notified once it is committed
+    private void save(PaymentProviderType processedBy, Money amount) {
+        long start = System.nanoTime();
+        CompletableFuture<PaymentTransaction> saved;
+        try {
+            saved = transactionWriter.write(newTransaction(providerName(processedBy), amount));
+        } catch (RuntimeException e) {
+            stageMetrics.record(Stage.PERSISTENCE, processedBy, Outcome.FAILURE, start);
+            throw new PaymentNotRecordedException(e);
+        }
+        stageMetrics.record(Stage.PERSISTENCE, processedBy, Outcome.SUCCESS, start);
+        whenSaved(saved, transaction -> {
+            long dispatchStart = System.nanoTime();
+            try {
+                notifyObservers(transaction);
+            } catch (RuntimeException e) {
+                stageMetrics.record(Stage.OBSERVER_DISPATCH, processedBy, Outcome.FAILURE, dispatchStart);
+                throw e;
+            }
+            stageMetrics.record(Stage.OBSERVER_DISPATCH, processedBy, Outcome.SUCCESS, dispatchStart);
+        });
+    }
+
+    // Where records are committed before the payment answers, observers are notified on the payment thread, so a BLOCK
+    // overflow policy holds back payments. Records committed later by the writer's flusher are handed to the
+    // dispatcher's publisher instead, so the flusher only waits for a slow observer once the publisher's bounded
+    // backlog is full as well.
+    private void whenSaved(CompletableFuture<PaymentTransaction> saved, Consumer<PaymentTransaction> action) {
+        DurabilityMode mode = transactionWriter.getMode();
+        if (mode == DurabilityMode.WRITE_BEHIND || mode == DurabilityMode.JOURNAL) {
+            saved.thenAcceptAsync(action, observerDispatcher.publisher());
+        } else {
+            saved.thenAccept(action);
+        }
+    }
+
+    private PaymentTransaction newTransaction(String provider, Money amount) {
         PaymentTransaction transaction = new PaymentTransaction();
-        transaction.setProvider(paymentProvider.getClass().getSimpleName());
-        transaction.setAmount(request.getAmount());
+        transaction.setProvider(provider);
+        transaction.setAmount(amount);
         transaction.setSuccessful(true);
-        transactionRepository.save(transaction);
-
-        // Notify observers
-        notifyObservers(transaction);
+        transaction.setCreatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+        return transaction;
     }
 
     @Override
     public void registerObserver(Observer observer) {
-        observers.add(observer);
+        observerDispatcher.registerObserver(observer);
     }
 
     @Override
     public void unregisterObserver(Observer observer) {
-        observers.remove(observer);
+        observerDispatcher.unregisterObserver(observer);
     }
 
     @Override
     public void notifyObservers(PaymentTransaction transaction) {
-        for (Observer observer : observers) {
-            observer.update(transaction);
+        // Observers run on their own workers, never on the payment thread
+        observerDispatcher.notifyObservers(transaction);
+    }
+
+    /**
+     * An item of a bulk submission on its way through the pipeline. {@code status} stays null until the item is
+     * rejected, fails or is processed, and {@code provider} is only known up front for pinned items.
+     */
+    private record BatchItem(int index, PaymentRequest request, PaymentProviderType provider,
+                             BatchPaymentResult.Status status, String message) {
+
+        BatchItem with(BatchPaymentResult.Status status, String message) {
+            return new BatchItem(index, request, provider, status, message);
+        }
+
+        BatchItem processedBy(PaymentProviderType provider) {
+            return new BatchItem(index, request, provider, BatchPaymentResult.Status.PROCESSED,
+                    String.format("%s payment processed successfully", provider));
         }
     }
 }
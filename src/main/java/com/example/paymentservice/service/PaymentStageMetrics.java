@@ -0,0 +1,72 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.model.PaymentProviderType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histograms for the stages of {@link PaymentService#processPayment} and
+ * {@link PaymentService#processPaymentReactive}, published as the {@code payment.stage} timer tagged with
+ * {@code stage}, {@code provider} and {@code outcome}. Every combination is registered up front, so recording is an
+ * array lookup and a histogram update, with no allocation or registry lookup per payment.
+ */
+@Component
+public class PaymentStageMetrics {
+
+    public enum Stage {
+        FRAUD_CHECK,
+        PROVIDER_CALL,
+        PERSISTENCE,
+        OBSERVER_DISPATCH
+    }
+
+    public enum Outcome {
+        SUCCESS,
+        // The fraud check flagged the payment
+        REJECTED,
+        FAILURE
+    }
+
+    private static final PaymentProviderType[] PROVIDERS = PaymentProviderType.values();
+
+    // Index used for the provider tag before an AUTO routed payment has been given a provider
+    private static final int AUTO = PROVIDERS.length;
+
+    private final Timer[][][] timers = new Timer[Stage.values().length][PROVIDERS.length + 1][Outcome.values().length];
+
+    public PaymentStageMetrics(MeterRegistry meterRegistry) {
+        for (Stage stage : Stage.values()) {
+            // Only the fraud check runs before routing, and only it can reject a payment
+            int providers = stage == Stage.FRAUD_CHECK ? PROVIDERS.length + 1 : PROVIDERS.length;
+            for (int provider = 0; provider < providers; provider++) {
+                for (Outcome outcome : Outcome.values()) {
+                    if (outcome == Outcome.REJECTED && stage != Stage.FRAUD_CHECK) {
+                        continue;
+                    }
+                    timers[stage.ordinal()][provider][outcome.ordinal()] = Timer.builder("payment.stage")
+                            .description("Time spent in each stage of a payment")
+                            .tag("stage", stage.name().toLowerCase())
+                            .tag("provider", provider == AUTO ? "auto" : PROVIDERS[provider].name().toLowerCase())
+                            .tag("outcome", outcome.name().toLowerCase())
+                            .publishPercentileHistogram()
+                            .minimumExpectedValue(Duration.ofNanos(100_000))
+                            .maximumExpectedValue(Duration.ofSeconds(30))
+                            .register(meterRegistry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Records the time since {@code startNanos}, taken from {@link System#nanoTime()}. A null provider stands for an
+     * {@code AUTO} routed payment that has no provider yet.
+     */
+    public void record(Stage stage, PaymentProviderType provider, Outcome outcome, long startNanos) {
+        timers[stage.ordinal()][provider == null ? AUTO : provider.ordinal()][outcome.ordinal()]
+                .record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+}
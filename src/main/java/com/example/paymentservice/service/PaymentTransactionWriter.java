@@ -0,0 +1,292 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.config.TransactionPersistenceProperties;
+import com.example.paymentservice.model.PaymentTransaction;
+import com.example.paymentservice.repository.PaymentTransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persists {@link PaymentTransaction} records according to {@code payment.persistence.mode}. Outside {@code SYNC} mode
+ * records are buffered and a single writer thread inserts them with JDBC batches, flushing when a batch is full or
+ * {@code payment.persistence.flush-interval} after its first record arrived. In {@code JOURNAL} mode records are first
+ * appended to a {@link TransactionJournal}, which is replayed into the database on startup.
+ */
+@Component
+// Replays the journal on startup, before the service takes payments
+@Lazy(false)
+public class PaymentTransactionWriter implements DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentTransactionWriter.class);
+    private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final PaymentTransactionRepository transactionRepository;
+    private final TransactionPersistenceProperties properties;
+    private final BlockingQueue<PendingWrite> buffer;
+    private final Counter written;
+    private final Counter failed;
+    private final Thread flusher;
+    private final TransactionJournal journal;
+    private volatile boolean running = true;
+
+    public PaymentTransactionWriter(PaymentTransactionRepository transactionRepository,
+                                    TransactionPersistenceProperties properties,
+                                    MeterRegistry meterRegistry) {
+        this.transactionRepository = transactionRepository;
+        this.properties = properties;
+        this.buffer = new ArrayBlockingQueue<>(properties.getBufferCapacity());
+        this.written = Counter.builder("payment.persistence.written").register(meterRegistry);
+        this.failed = Counter.builder("payment.persistence.failed").register(meterRegistry);
+        Gauge.builder("payment.persistence.buffered", buffer, BlockingQueue::size).register(meterRegistry);
+
+        this.journal = properties.getMode() == DurabilityMode.JOURNAL ? openJournal() : null;
+        if (properties.getMode() == DurabilityMode.SYNC) {
+            this.flusher = null;
+        } else {
+            this.flusher = new Thread(this::flushLoop, "transaction-writer");
+            this.flusher.setDaemon(true);
+            this.flusher.start();
+        }
+    }
+
+    public DurabilityMode getMode() {
+        return properties.getMode();
+    }
+
+    /**
+     * Returns once the record is as durable as the configured mode promises. The returned future completes with the
+     * saved record, which has its id, once it is committed.
+     */
+    public CompletableFuture<PaymentTransaction> write(PaymentTransaction transaction) {
+        if (flusher == null || !running) {
+            return CompletableFuture.completedFuture(save(transaction));
+        }
+        if (journal != null) {
+            long sequence = journal.append(transaction);
+            transaction.setJournalSequence(sequence);
+            journal.sync(sequence);
+        }
+        PendingWrite pending = new PendingWrite(transaction, new CompletableFuture<>());
+        if (!buffer.offer(pending)) {
+            // Push back on the caller rather than dropping a payment that already went through
+            return CompletableFuture.completedFuture(save(transaction));
+        }
+        if (properties.getMode() == DurabilityMode.GROUP_COMMIT) {
+            try {
+                pending.saved.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : e;
+            }
+        }
+        return pending.saved;
+    }
+
+    /**
+     * Batch counterpart of {@link #write}: journals the records with a single force and hands them to the writer thread
+     * together. Unlike {@code write}, a record that could not be committed does not throw; its future completes
+     * exceptionally instead, so one bad record does not fail the others.
+     */
+    public List<CompletableFuture<PaymentTransaction>> writeAll(List<PaymentTransaction> transactions) {
+        List<PendingWrite> batch = new ArrayList<>(transactions.size());
+        List<CompletableFuture<PaymentTransaction>> saved = new ArrayList<>(transactions.size());
+        for (PaymentTransaction transaction : transactions) {
+            PendingWrite pending = new PendingWrite(transaction, new CompletableFuture<>());
+            batch.add(pending);
+            saved.add(pending.saved);
+        }
+        if (flusher == null) {
+            flush(batch);
+            return saved;
+        }
+        if (!running) {
+            batch.forEach(this::saveAlone);
+            return saved;
+        }
+        if (journal != null && !transactions.isEmpty()) {
+            long sequence = 0;
+            for (PaymentTransaction transaction : transactions) {
+                sequence = journal.append(transaction);
+                transaction.setJournalSequence(sequence);
+            }
+            journal.sync(sequence);
+        }
+        for (PendingWrite pending : batch) {
+            if (!buffer.offer(pending)) {
+                saveAlone(pending);
+            }
+        }
+        if (properties.getMode() == DurabilityMode.GROUP_COMMIT) {
+            CompletableFuture.allOf(saved.toArray(CompletableFuture[]::new)).exceptionally(e -> null).join();
+        }
+        return saved;
+    }
+
+    @Override
+    public void destroy() {
+        running = false;
+        if (flusher == null) {
+            return;
+        }
+        try {
+            flusher.join(properties.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (flusher.isAlive()) {
+            log.warn("{} buffered payment transactions were not written before shutdown", buffer.size());
+            return;
+        }
+        // Writes that raced with shutdown and reached the buffer after the flusher stopped
+        PendingWrite pending;
+        while ((pending = buffer.poll()) != null) {
+            saveAlone(pending);
+        }
+        if (journal != null) {
+            journal.close();
+            if (!journal.hasOutstanding()) {
+                TransactionJournal.deleteAll(journalDirectory());
+            }
+        }
+    }
+
+    private PaymentTransaction save(PaymentTransaction transaction) {
+        PaymentTransaction saved = transactionRepository.save(transaction);
+        written.increment();
+        if (journal != null && transaction.getJournalSequence() != null) {
+            journal.release(transaction.getJournalSequence());
+        }
+        return saved;
+    }
+
+    /**
+     * Writes journaled records that never reached the database, then starts a fresh journal. Records are matched by
+     * journal sequence, so a record committed just before a crash is not written twice.
+     */
+    private TransactionJournal openJournal() {
+        Path directory = journalDirectory();
+        List<TransactionJournal.JournalRecord> records = TransactionJournal.readAll(directory);
+        if (!records.isEmpty()) {
+            Set<Long> committed = new HashSet<>(
+                    transactionRepository.findJournalSequencesFrom(records.get(0).sequence()));
+            List<PaymentTransaction> missing = new ArrayList<>();
+            for (TransactionJournal.JournalRecord record : records) {
+                if (!committed.contains(record.sequence())) {
+                    missing.add(record.toTransaction());
+                }
+            }
+            for (int from = 0; from < missing.size(); from += properties.getBatchSize()) {
+                transactionRepository.saveAll(
+                        missing.subList(from, Math.min(missing.size(), from + properties.getBatchSize())));
+            }
+            written.increment(missing.size());
+            log.info("Replayed {} of {} journaled payment transactions into the database", missing.size(),
+                    records.size());
+        }
+        TransactionJournal.deleteAll(directory);
+
+        long lastSequence = records.isEmpty() ? 0 : records.get(records.size() - 1).sequence();
+        long firstSequence = Math.max(lastSequence, transactionRepository.findMaxJournalSequence()) + 1;
+        TransactionPersistenceProperties.Journal settings = properties.getJournal();
+        return new TransactionJournal(directory, (int) settings.getSegmentSize().toBytes(), settings.isFsync(),
+                firstSequence);
+    }
+
+    private Path journalDirectory() {
+        return Path.of(properties.getJournal().getDirectory());
+    }
+
+    private void flushLoop() {
+        int batchSize = properties.getBatchSize();
+        long flushIntervalNanos = properties.getFlushInterval().toNanos();
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+
+        while (running || !buffer.isEmpty()) {
+            try {
+                PendingWrite first = buffer.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                while (batch.size() < batchSize) {
+                    buffer.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    // Wake up regularly so a long flush interval does not hold up shutdown
+                    PendingWrite next = buffer.poll(Math.min(remaining, MAX_WAIT_NANOS), TimeUnit.NANOSECONDS);
+                    if (next != null) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Write what was already taken from the buffer, then stop
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        List<PaymentTransaction> transactions = new ArrayList<>(batch.size());
+        for (PendingWrite pending : batch) {
+            transactions.add(pending.transaction);
+        }
+        try {
+            // One transaction and, with hibernate.jdbc.batch_size, one JDBC batch per flush
+            transactionRepository.saveAll(transactions);
+            written.increment(batch.size());
+            for (PendingWrite pending : batch) {
+                if (journal != null && pending.transaction.getJournalSequence() != null) {
+                    journal.release(pending.transaction.getJournalSequence());
+                }
+                pending.saved.complete(pending.transaction);
+            }
+            if (journal != null) {
+                journal.deleteReleasedSegments();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Batch insert of {} payment transactions failed, retrying them one by one", batch.size(), e);
+            for (PendingWrite pending : batch) {
+                saveAlone(pending);
+            }
+        }
+    }
+
+    private void saveAlone(PendingWrite pending) {
+        // A rolled back batch may have assigned an id that was never committed
+        pending.transaction.setId(null);
+        try {
+            pending.saved.complete(save(pending.transaction));
+        } catch (RuntimeException e) {
+            failed.increment();
+            log.error("Could not persist payment transaction of {} via {}", pending.transaction.getAmount(),
+                    pending.transaction.getProvider(), e);
+            pending.saved.completeExceptionally(e);
+        }
+    }
+
+    private record PendingWrite(PaymentTransaction transaction, CompletableFuture<PaymentTransaction> saved) {
+    }
+}
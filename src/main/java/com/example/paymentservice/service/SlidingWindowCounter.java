@@ -0,0 +1,66 @@
+package com.example.paymentservice.service;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts events over a sliding time window without locks. The window is a ring of slots, each a single long holding
+ * the slot's epoch in its high bits and its count in the low ones, so starting a new slot and counting in it is one
+ * compare-and-set. The window slides a slot at a time, so a sum covers between {@code slots - 1} and {@code slots}
+ * slots' worth of time.
+ */
+final class SlidingWindowCounter {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+    private static final long EPOCH_MASK = (1L << (Long.SIZE - COUNT_BITS)) - 1;
+
+    private final long slotNanos;
+    private final AtomicLongArray slots;
+
+    SlidingWindowCounter(Duration window, int slots) {
+        if (slots < 1 || window.toNanos() < slots) {
+            throw new IllegalArgumentException("A sliding window needs at least one slot and one nanosecond per slot");
+        }
+        this.slotNanos = window.toNanos() / slots;
+        this.slots = new AtomicLongArray(slots);
+    }
+
+    /**
+     * Counts an event at {@code nanoTime}, from {@link System#nanoTime()}, and returns the number of events in the
+     * window ending then, this one included.
+     */
+    long incrementAndSum(long nanoTime) {
+        long slot = Math.floorDiv(nanoTime, slotNanos);
+        long epoch = slot & EPOCH_MASK;
+        int index = (int) Math.floorMod(slot, (long) slots.length());
+        while (true) {
+            long current = slots.get(index);
+            long next;
+            if (current >>> COUNT_BITS != epoch) {
+                next = epoch << COUNT_BITS | 1;
+            } else if ((current & COUNT_MASK) == COUNT_MASK) {
+                // Saturated rather than carried into the epoch
+                break;
+            } else {
+                next = current + 1;
+            }
+            if (slots.compareAndSet(index, current, next)) {
+                break;
+            }
+        }
+        return sum(epoch);
+    }
+
+    private long sum(long epoch) {
+        long total = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            long value = slots.get(i);
+            // Slots last written more than a window ago still hold their old count
+            if (((epoch - (value >>> COUNT_BITS)) & EPOCH_MASK) < slots.length()) {
+                total += value & COUNT_MASK;
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,523 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentTransaction;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Currency;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only journal of payment transactions in memory-mapped segment files of a fixed size, named after the sequence
+ * number of their first record. A record is {@code [int length][int crc32c][long sequence][long createdAtMicros]
+ * [long amountMinorUnits][byte[3] currency][byte successful][short providerLength][provider]}, where length and
+ * checksum cover everything after the checksum. Segments are zero-filled, so a zero length or a bad checksum marks the
+ * end of the written part, including a record torn by a crash. Segments of older layouts, without the creation time
+ * or with {@code [double amount]} in place of the amount and currency, are still read on recovery.
+ * <p>
+ * Locks are {@link ReentrantLock}s rather than monitors, so virtual threads waiting for a force or an append unmount
+ * instead of pinning their carrier. Nothing is forced while the append lock is held: a full segment is forced by the
+ * next {@link #sync}, and its successor is created ahead of time, so rotating is a rename. A rename only survives a
+ * power loss once the directory is forced, so {@link #sync} does that too before reporting records of a new segment
+ * durable; recovery still reads spares, in case records were written to one whose rename was lost.
+ */
+class TransactionJournal implements AutoCloseable {
+
+    private static final int HEADER_BYTES = 8;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SPARE_PREFIX = "journal-spare-";
+    private static final String SPARE_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+
+    // Guards appends and rotation
+    private final ReentrantLock appendLock = new ReentrantLock();
+    // Serializes forces; appenders waiting here are usually covered by the force ahead of them
+    private final ReentrantLock forceLock = new ReentrantLock();
+
+    private final Deque<Segment> closedSegments = new ArrayDeque<>();
+    // Rotated out but not yet forced, oldest first; forced by the next sync, before the current segment
+    private final Deque<Segment> unforcedSegments = new ArrayDeque<>();
+    private Segment current;
+    // Created ahead of the next rotation under a temporary name
+    private Segment spare;
+    private final AtomicInteger spareCount = new AtomicInteger();
+    // Set when a segment file is created or renamed, until the next sync forces the directory
+    private boolean directoryChanged = true;
+    private long nextSequence;
+    private volatile long appendedSequence;
+    private final AtomicLong durableSequence = new AtomicLong();
+    // Appended but not yet released as committed to the database
+    private final ConcurrentSkipListSet<Long> outstanding = new ConcurrentSkipListSet<>();
+
+    TransactionJournal(Path directory, int segmentSize, boolean fsync, long firstSequence) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        this.nextSequence = firstSequence;
+        this.appendedSequence = firstSequence - 1;
+        this.durableSequence.set(firstSequence - 1);
+        try {
+            Files.createDirectories(directory);
+            // Left behind by a crash; one holding records must be replayed by readAll first
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : files.filter(TransactionJournal::isSpare).toList()) {
+                    if (!read(file, Layout.CREATED_AT).isEmpty()) {
+                        throw new IllegalStateException("Journal spare " + file + " holds records not yet replayed");
+                    }
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.current = Segment.create(segmentPath(directory, firstSequence), segmentSize, firstSequence);
+        this.spare = createSpare();
+    }
+
+    /**
+     * Reads every intact record of the segments in {@code directory}, and of spares whose rename a crash undid,
+     * oldest first.
+     */
+    static List<JournalRecord> readAll(Path directory) {
+        List<JournalRecord> records = new ArrayList<>();
+        for (Path segment : segments(directory)) {
+            records.addAll(read(segment, Layout.of(segment)));
+        }
+        records.sort(Comparator.comparingLong(JournalRecord::sequence));
+        return records;
+    }
+
+    private static List<JournalRecord> read(Path segment, Layout layout) {
+        List<JournalRecord> records = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            JournalRecord record;
+            while ((record = decode(buffer, layout)) != null) {
+                records.add(record);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return records;
+    }
+
+    static void deleteAll(Path directory) {
+        for (Path segment : segments(directory)) {
+            try {
+                Files.deleteIfExists(segment);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Appends the transaction and returns its sequence number. The record is only crash-safe once {@link #sync} for
+     * that sequence number has returned. A transaction without a creation time is stamped with the current one.
+     */
+    long append(PaymentTransaction transaction) {
+        byte[] provider = transaction.getProvider() == null
+                ? new byte[0] : transaction.getProvider().getBytes(StandardCharsets.UTF_8);
+        if (transaction.getCreatedAt() == null) {
+            transaction.setCreatedAt(Instant.now().truncatedTo(ChronoUnit.MICROS));
+        }
+        int payloadBytes = Layout.CREATED_AT.fixedPayloadBytes + provider.length;
+        int recordBytes = HEADER_BYTES + payloadBytes;
+        if (recordBytes > segmentSize) {
+            throw new IllegalArgumentException("Journal record of " + recordBytes + " bytes exceeds the segment size");
+        }
+
+        boolean rotated = false;
+        long sequence;
+        appendLock.lock();
+        try {
+            if (current.buffer.remaining() < recordBytes) {
+                rotate();
+                rotated = true;
+            }
+            sequence = nextSequence++;
+            MappedByteBuffer buffer = current.buffer;
+            int start = buffer.position();
+            buffer.position(start + HEADER_BYTES);
+            buffer.putLong(sequence);
+            buffer.putLong(ChronoUnit.MICROS.between(Instant.EPOCH, transaction.getCreatedAt()));
+            buffer.putLong(transaction.getAmount().minorUnits());
+            String currency = transaction.getAmount().currency().getCurrencyCode();
+            for (int i = 0; i < 3; i++) {
+                buffer.put((byte) currency.charAt(i));
+            }
+            buffer.put(transaction.isSuccessful() ? (byte) 1 : (byte) 0);
+            buffer.putShort((short) provider.length);
+            buffer.put(provider);
+
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.slice(start + HEADER_BYTES, payloadBytes));
+            // The length goes last, so a reader never sees a length without its payload
+            buffer.putInt(start + 4, (int) crc.getValue());
+            buffer.putInt(start, payloadBytes);
+
+            current.lastSequence = sequence;
+            outstanding.add(sequence);
+            appendedSequence = sequence;
+        } finally {
+            appendLock.unlock();
+        }
+        if (rotated) {
+            prepareSpare();
+        }
+        return sequence;
+    }
+
+    /**
+     * Waits until the record with the given sequence number has been forced to disk. Concurrent callers share forces:
+     * whoever forces covers every record appended so far.
+     */
+    void sync(long sequence) {
+        if (!fsync || durableSequence.get() >= sequence) {
+            return;
+        }
+        forceLock.lock();
+        try {
+            if (durableSequence.get() >= sequence) {
+                return;
+            }
+            List<Segment> rotated;
+            Segment segment;
+            long target;
+            int to;
+            boolean forceDirectory;
+            appendLock.lock();
+            try {
+                rotated = new ArrayList<>(unforcedSegments);
+                unforcedSegments.clear();
+                segment = current;
+                target = appendedSequence;
+                to = segment.buffer.position();
+                forceDirectory = directoryChanged;
+                directoryChanged = false;
+            } finally {
+                appendLock.unlock();
+            }
+            // Everything in an older segment is made durable before anything in a newer one
+            for (Segment full : rotated) {
+                full.force(full.buffer.position());
+                full.close();
+            }
+            segment.force(to);
+            if (forceDirectory) {
+                // Otherwise the records just forced could still be under a spare's name after a power loss
+                forceDirectory();
+            }
+            durableSequence.accumulateAndGet(target, Math::max);
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    /**
+     * Marks the record as written to the database, so its segment may be deleted.
+     */
+    void release(long sequence) {
+        outstanding.remove(sequence);
+    }
+
+    /**
+     * Deletes the closed segments, oldest first, whose records have all been released.
+     */
+    void deleteReleasedSegments() {
+        Long oldestOutstanding = outstanding.ceiling(Long.MIN_VALUE);
+        appendLock.lock();
+        try {
+            while (!closedSegments.isEmpty()) {
+                Segment oldest = closedSegments.peekFirst();
+                if (oldestOutstanding != null && oldestOutstanding <= oldest.lastSequence) {
+                    return;
+                }
+                closedSegments.removeFirst();
+                try {
+                    Files.deleteIfExists(oldest.path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    boolean hasOutstanding() {
+        return !outstanding.isEmpty();
+    }
+
+    int segmentCount() {
+        appendLock.lock();
+        try {
+            return closedSegments.size() + 1;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        forceLock.lock();
+        appendLock.lock();
+        try {
+            for (Segment segment : unforcedSegments) {
+                if (fsync) {
+                    segment.force(segment.buffer.position());
+                }
+                segment.close();
+            }
+            unforcedSegments.clear();
+            if (fsync) {
+                current.force(current.buffer.position());
+                if (directoryChanged) {
+                    forceDirectory();
+                    directoryChanged = false;
+                }
+            }
+            current.close();
+            if (spare != null) {
+                spare.close();
+                try {
+                    Files.deleteIfExists(spare.path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                spare = null;
+            }
+        } finally {
+            appendLock.unlock();
+            forceLock.unlock();
+        }
+    }
+
+    // Called with the append lock held
+    private void rotate() {
+        if (fsync) {
+            unforcedSegments.addLast(current);
+        } else {
+            current.close();
+        }
+        closedSegments.addLast(current);
+        directoryChanged = true;
+        Path path = segmentPath(directory, nextSequence);
+        if (spare == null) {
+            // The spare for this rotation is still being created
+            current = Segment.create(path, segmentSize, nextSequence);
+            return;
+        }
+        try {
+            Files.move(spare.path, path, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        current = new Segment(path, spare.channel, spare.buffer, nextSequence);
+        spare = null;
+    }
+
+    private void prepareSpare() {
+        Segment created = createSpare();
+        appendLock.lock();
+        try {
+            if (spare == null) {
+                spare = created;
+                return;
+            }
+        } finally {
+            appendLock.unlock();
+        }
+        created.close();
+        try {
+            Files.deleteIfExists(created.path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Segment createSpare() {
+        return Segment.create(directory.resolve(SPARE_PREFIX + spareCount.incrementAndGet() + SPARE_SUFFIX),
+                segmentSize, 0);
+    }
+
+    private void forceDirectory() {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // The next sync tries again
+            appendLock.lock();
+            try {
+                directoryChanged = true;
+            } finally {
+                appendLock.unlock();
+            }
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean isSpare(Path file) {
+        String name = file.getFileName().toString();
+        return name.startsWith(SPARE_PREFIX) && name.endsWith(SPARE_SUFFIX);
+    }
+
+    private static JournalRecord decode(ByteBuffer buffer, Layout layout) {
+        if (buffer.remaining() < HEADER_BYTES) {
+            return null;
+        }
+        int start = buffer.position();
+        int payloadBytes = buffer.getInt(start);
+        if (payloadBytes < layout.fixedPayloadBytes || payloadBytes > buffer.remaining() - HEADER_BYTES) {
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(start + HEADER_BYTES, payloadBytes));
+        if ((int) crc.getValue() != buffer.getInt(start + 4)) {
+            return null;
+        }
+
+        buffer.position(start + HEADER_BYTES);
+        long sequence = buffer.getLong();
+        Instant createdAt = layout == Layout.CREATED_AT
+                ? Instant.EPOCH.plus(buffer.getLong(), ChronoUnit.MICROS) : null;
+        Money amount;
+        if (layout == Layout.DOUBLE_AMOUNT) {
+            // Amounts were all dollars before they had a currency
+            amount = Money.of(Math.round(buffer.getDouble() * 100), 2);
+        } else {
+            long minorUnits = buffer.getLong();
+            byte[] currency = new byte[3];
+            buffer.get(currency);
+            amount = new Money(minorUnits, Currency.getInstance(new String(currency, StandardCharsets.US_ASCII)));
+        }
+        boolean successful = buffer.get() == 1;
+        byte[] provider = new byte[buffer.getShort()];
+        buffer.get(provider);
+        return new JournalRecord(sequence, new String(provider, StandardCharsets.UTF_8), amount, successful,
+                createdAt);
+    }
+
+    private static List<Path> segments(Path directory) {
+        if (!Files.isDirectory(directory)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            // Zero-padded sequence numbers sort by name
+            return files.filter(file -> {
+                String name = file.getFileName().toString();
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(Layout.DOUBLE_AMOUNT.suffix) || isSpare(file);
+            }).sorted().toList();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path segmentPath(Path directory, long firstSequence) {
+        return directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence,
+                Layout.CREATED_AT.suffix));
+    }
+
+    // Record layouts, oldest first, told apart by the segment's file name suffix
+    private enum Layout {
+        DOUBLE_AMOUNT(".log", 8 + 8 + 1 + 2),
+        MINOR_UNITS(".v2.log", 8 + 8 + 3 + 1 + 2),
+        CREATED_AT(".v3.log", 8 + 8 + 8 + 3 + 1 + 2);
+
+        private final String suffix;
+        private final int fixedPayloadBytes;
+
+        Layout(String suffix, int fixedPayloadBytes) {
+            this.suffix = suffix;
+            this.fixedPayloadBytes = fixedPayloadBytes;
+        }
+
+        // Every suffix ends in the older ones, so the newest match wins; spares always have the current layout
+        private static Layout of(Path segment) {
+            String name = segment.getFileName().toString();
+            if (isSpare(segment) || name.endsWith(CREATED_AT.suffix)) {
+                return CREATED_AT;
+            }
+            return name.endsWith(MINOR_UNITS.suffix) ? MINOR_UNITS : DOUBLE_AMOUNT;
+        }
+    }
+
+    // createdAt is null for records of layouts that did not keep it
+    record JournalRecord(long sequence, String provider, Money amount, boolean successful, Instant createdAt) {
+
+        PaymentTransaction toTransaction() {
+            PaymentTransaction transaction = new PaymentTransaction();
+            transaction.setJournalSequence(sequence);
+            transaction.setProvider(provider);
+            transaction.setAmount(amount);
+            transaction.setSuccessful(successful);
+            transaction.setCreatedAt(createdAt);
+            return transaction;
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private long lastSequence;
+        private int forcedPosition;
+
+        private Segment(Path path, FileChannel channel, MappedByteBuffer buffer, long firstSequence) {
+            this.path = path;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.lastSequence = firstSequence - 1;
+        }
+
+        private static Segment create(Path path, int size, long firstSequence) {
+            try {
+                FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                        StandardOpenOption.WRITE);
+                return new Segment(path, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size), firstSequence);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        // Forces what was written since the last force, up to the given position
+        private void force(int to) {
+            if (to > forcedPosition) {
+                buffer.force(forcedPosition, to - forcedPosition);
+                forcedPosition = to;
+            }
+        }
+
+        private void close() {
+            try {
+                // The mapping stays valid after the channel is closed
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.model.PaymentTransactionSummary;
+import com.example.paymentservice.model.TransactionFilter;
+import com.example.paymentservice.model.TransactionPage;
+import com.example.paymentservice.repository.PaymentTransactionRepository;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Lists transactions for lookups and exports, newest first, with keyset pagination: a page ends with an opaque
+ * cursor holding the last transaction's {@code createdAt} and {@code id}, and the next page seeks past it.
+ */
+@Service
+public class TransactionQueryService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    // Rows read per query during an export; memory use depends on this, not on the export size
+    private static final int EXPORT_CHUNK_SIZE = 1000;
+
+    private final PaymentTransactionRepository transactionRepository;
+    private final ObjectWriter writer;
+
+    public TransactionQueryService(PaymentTransactionRepository transactionRepository, ObjectMapper objectMapper) {
+        this.transactionRepository = transactionRepository;
+        // Many values go to one stream, which must stay open and is flushed once per chunk
+        this.writer = objectMapper.writerFor(PaymentTransactionSummary.class)
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public TransactionPage findPage(TransactionFilter filter, String after, int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        Instant afterCreatedAt = null;
+        Long afterId = null;
+        if (after != null) {
+            String[] cursor = decode(after);
+            afterCreatedAt = Instant.parse(cursor[0]);
+            afterId = Long.parseLong(cursor[1]);
+        }
+        // One extra row tells whether there is a next page
+        List<PaymentTransactionSummary> items = transactionRepository.findPage(filter, afterCreatedAt, afterId,
+                limit + 1);
+        if (items.size() <= limit) {
+            return new TransactionPage(items, null);
+        }
+        items = items.subList(0, limit);
+        return new TransactionPage(items, encode(items.get(limit - 1)));
+    }
+
+    /**
+     * Writes every transaction matching {@code filter} to {@code out} as JSON lines, newest first. Transactions are
+     * read a chunk at a time, each chunk seeking past the previous one, so no query or buffer grows with the export.
+     */
+    public void export(TransactionFilter filter, OutputStream out) throws IOException {
+        Instant afterCreatedAt = null;
+        Long afterId = null;
+        while (true) {
+            List<PaymentTransactionSummary> chunk = transactionRepository.findPage(filter, afterCreatedAt, afterId,
+                    EXPORT_CHUNK_SIZE);
+            for (PaymentTransactionSummary transaction : chunk) {
+                writer.writeValue(out, transaction);
+                out.write('\n');
+            }
+            out.flush();
+            if (chunk.size() < EXPORT_CHUNK_SIZE) {
+                return;
+            }
+            PaymentTransactionSummary last = chunk.get(chunk.size() - 1);
+            afterCreatedAt = last.createdAt();
+            afterId = last.id();
+        }
+    }
+
+    private static String encode(PaymentTransactionSummary last) {
+        String cursor = last.createdAt() + "," + last.id();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decode(String after) {
+        try {
+            String[] cursor = new String(Base64.getUrlDecoder().decode(after), StandardCharsets.UTF_8).split(",");
+            if (cursor.length != 2) {
+                throw new IllegalArgumentException();
+            }
+            Instant.parse(cursor[0]);
+            Long.parseLong(cursor[1]);
+            return cursor;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid page cursor: " + after);
+        }
+    }
+}
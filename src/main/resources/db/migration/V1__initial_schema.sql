@@ -0,0 +1,8 @@
+-- The schema Hibernate generated for the first release, before migrations were introduced
+create table payment_transaction (
+    id bigint generated by default as identity,
+    amount double precision not null,
+    provider varchar(255),
+    successful boolean not null,
+    primary key (id)
+);
@@ -0,0 +1,25 @@
+-- What Hibernate added to the schema after the first release, while it still generated it
+
+-- Ids come from a pooled sequence, so inserts can be batched. Hibernate hands out the 50 ids up to each value it
+-- reads, so the sequence restarts 50 past the highest id already taken
+alter table payment_transaction alter column id drop identity;
+create sequence payment_transaction_seq start with 1 increment by 50;
+alter sequence payment_transaction_seq restart with (select coalesce(max(id), 0) + 50 from payment_transaction);
+
+alter table payment_transaction add column created_at timestamp(6) with time zone;
+alter table payment_transaction add column journal_sequence bigint;
+alter table payment_transaction add constraint uk_payment_transaction_journal_sequence unique (journal_sequence);
+
+create index idx_payment_transaction_created on payment_transaction (created_at desc, id desc);
+create index idx_payment_transaction_provider_created on payment_transaction (provider, created_at desc, id desc);
+create index idx_payment_transaction_provider_successful_created
+    on payment_transaction (provider, successful, created_at desc, id desc);
+
+create table idempotency_record (
+    idempotency_key varchar(255) not null,
+    request_fingerprint varchar(255),
+    status integer not null,
+    body varchar(2000),
+    created_at timestamp(6) with time zone,
+    primary key (idempotency_key)
+);
@@ -0,0 +1,9 @@
+-- Amounts become whole minor units with a currency; every existing amount was in US dollars
+alter table payment_transaction add column amount_minor bigint;
+alter table payment_transaction add column currency varchar(3);
+
+update payment_transaction set amount_minor = round(amount * 100), currency = 'USD';
+
+alter table payment_transaction alter column amount_minor set not null;
+alter table payment_transaction alter column currency set not null;
+alter table payment_transaction drop column amount;
@@ -0,0 +1,7 @@
+-- Transactions saved before created_at was stamped have none; they are older than every stamped one, so they take
+-- the oldest stamp and keep their order among themselves by id
+update payment_transaction
+set created_at = coalesce((select min(created_at) from payment_transaction), current_timestamp)
+where created_at is null;
+
+alter table payment_transaction alter column created_at set not null;
@@ -0,0 +1,3 @@
+-- Failed payments that may have reached a provider are stored as JSON error responses alongside the plain-text
+-- successes, so a replay needs the type the response was first sent with.
+alter table idempotency_record add column content_type varchar(255);
@@ -0,0 +1,113 @@
+package com.example.paymentservice;
+
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the blocking {@code /api/payments/process} path at high concurrency twice, once on Tomcat's platform thread
+ * pool and once with {@code spring.threads.virtual.enabled}, against slow WireMock providers.
+ */
+@Tag("benchmark")
+class ExecutionModeBenchmarkTest {
+
+    private static final int DOWNSTREAM_DELAY_MS = 500;
+    private static final int CONCURRENCY = 1000;
+    private static final int REQUESTS = 4000;
+
+    private static WireMockServer wireMock;
+
+    @BeforeAll
+    static void startWireMock() {
+        wireMock = new WireMockServer(options()
+                .dynamicPort()
+                .usingFilesUnderDirectory("wiremock")
+                .asynchronousResponseEnabled(true)
+                .asynchronousResponseThreads(50));
+        wireMock.start();
+        wireMock.setGlobalFixedDelay(DOWNSTREAM_DELAY_MS);
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @Test
+    void virtualThreadsOutperformPlatformThreadsOnSlowProviders() {
+        double platform = measure(false);
+        double virtual = measure(true);
+
+        System.out.printf("platform threads: %.0f payments/s%n", platform);
+        System.out.printf("virtual threads:  %.0f payments/s%n", virtual);
+
+        assertThat(virtual).isGreaterThan(platform);
+    }
+
+    private double measure(boolean virtualThreads) {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(PaymentServiceApplication.class).run(
+                "--server.port=0",
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--spring.datasource.url=jdbc:h2:mem:execution-mode-" + virtualThreads,
+                "--spring.jpa.show-sql=false",
+                "--external.fraud-service-url=" + wireMock.baseUrl() + "/api/fraud-check",
+                "--external.payment.providers.paypal.url=" + wireMock.baseUrl() + "/v1/payments/payment",
+                "--external.payment.providers.stripe.url=" + wireMock.baseUrl() + "/v1/charges",
+                "--external.payment.providers.square.url=" + wireMock.baseUrl() + "/v2/payments")) {
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+            ConnectionProvider connections = ConnectionProvider.builder("load")
+                    .maxConnections(CONCURRENCY)
+                    .pendingAcquireMaxCount(-1)
+                    .build();
+            WebClient client = WebClient.builder()
+                    .baseUrl("http://localhost:" + port + "/api/payments/process")
+                    .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                    .build();
+            try {
+                send(client, 100);
+                long start = System.nanoTime();
+                long succeeded = send(client, REQUESTS);
+                return succeeded / ((System.nanoTime() - start) / 1_000_000_000.0);
+            } finally {
+                connections.dispose();
+            }
+        }
+    }
+
+    private long send(WebClient client, int requests) {
+        PaymentProviderType[] types = PaymentProviderType.values();
+        return Flux.range(0, requests)
+                .flatMap(i -> {
+                    PaymentRequest request = new PaymentRequest();
+                    request.setProvider(types[i % types.length]);
+                    request.setAmount(Money.of(10 + i, 0));
+                    return client.post()
+                            .bodyValue(request)
+                            .retrieve()
+                            .toBodilessEntity()
+                            .map(response -> 1L)
+                            .onErrorResume(e -> Mono.just(0L));
+                }, CONCURRENCY)
+                .reduce(0L, Long::sum)
+                .block(Duration.ofMinutes(5));
+    }
+}
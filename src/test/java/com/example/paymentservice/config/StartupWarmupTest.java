@@ -0,0 +1,81 @@
+package com.example.paymentservice.config;
+
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.headRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Starts the service with the {@code fast-start} profile: lazy initialization, no H2 console and a warm-up before
+ * readiness.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("fast-start")
+class StartupWarmupTest {
+
+    private static final WireMockServer wireMock = new WireMockServer(options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("wiremock"));
+
+    static {
+        wireMock.start();
+    }
+
+    @DynamicPropertySource
+    static void externalServices(DynamicPropertyRegistry registry) {
+        String baseUrl = wireMock.baseUrl();
+        registry.add("external.fraud-service-url", () -> baseUrl + "/api/fraud-check");
+        registry.add("external.payment.providers.paypal.url", () -> baseUrl + "/v1/payments/payment");
+        registry.add("external.payment.providers.stripe.url", () -> baseUrl + "/v1/charges");
+        registry.add("external.payment.providers.square.url", () -> baseUrl + "/v2/payments");
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void connectsToEveryDownstreamServiceBeforeReportingReady() {
+        // Blocking and reactive client for each provider
+        wireMock.verify(2, headRequestedFor(urlEqualTo("/v1/payments/payment")));
+        wireMock.verify(2, headRequestedFor(urlEqualTo("/v1/charges")));
+        wireMock.verify(2, headRequestedFor(urlEqualTo("/v2/payments")));
+        wireMock.verify(1, headRequestedFor(urlEqualTo("/api/fraud-check/check")));
+
+        ResponseEntity<String> readiness = restTemplate.getForEntity("/actuator/health/readiness", String.class);
+        assertThat(readiness.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(readiness.getBody()).contains("UP");
+    }
+
+    @Test
+    void processesPaymentsWithLazyInitialization() {
+        PaymentRequest request = new PaymentRequest();
+        request.setProvider(PaymentProviderType.STRIPE);
+        request.setAmount(Money.of(25, 0));
+
+        ResponseEntity<String> response = restTemplate.postForEntity("/api/payments/process", request, String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(restTemplate.getForEntity("/h2-console", String.class).getStatusCode())
+                .isNotEqualTo(HttpStatus.OK);
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.paymentservice.controller;
+
+import com.example.paymentservice.repository.PaymentTransactionRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PaymentBatchTest {
+
+    private static final WireMockServer wireMock = new WireMockServer(options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("wiremock")
+            .asynchronousResponseEnabled(true));
+
+    static {
+        wireMock.start();
+    }
+
+    @DynamicPropertySource
+    static void externalServices(DynamicPropertyRegistry registry) {
+        String baseUrl = wireMock.baseUrl();
+        registry.add("external.fraud-service-url", () -> baseUrl + "/api/fraud-check");
+        registry.add("external.payment.providers.paypal.url", () -> baseUrl + "/v1/payments/payment");
+        registry.add("external.payment.providers.stripe.url", () -> baseUrl + "/v1/charges");
+        registry.add("external.payment.providers.square.url", () -> baseUrl + "/v2/payments");
+        registry.add("external.payment.providers.square.batch-concurrency", () -> "2");
+        registry.add("payment.batch.chunk-size", () -> "20");
+        registry.add("payment.batch.max-items", () -> "100");
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private PaymentTransactionRepository transactionRepository;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeEach
+    void resetWireMock() {
+        wireMock.resetToDefaultMappings();
+        wireMock.resetRequests();
+    }
+
+    @Test
+    void streamsOneResultPerItemAndBatchesFraudChecks() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/v1/charges")).willReturn(aResponse().withStatus(500)));
+        long transactionsBefore = transactionRepository.count();
+
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 90; i++) {
+            String provider = List.of("PAYPAL", "STRIPE", "SQUARE").get(i % 3);
+            body.append(i == 0 ? "" : ",")
+                    .append("{\"provider\": \"").append(provider).append("\", \"amount\": ").append(1000 + i).append("}");
+        }
+        List<JsonNode> results = submit(body.append("]").toString()).results();
+
+        assertThat(results).hasSize(90);
+        assertThat(results).extracting(result -> result.get("index").asInt()).doesNotHaveDuplicates();
+        assertThat(results).filteredOn(result -> result.get("provider").asText().equals("STRIPE"))
+                .hasSize(30)
+                .allMatch(result -> result.get("status").asText().equals("FAILED"));
+        assertThat(results).filteredOn(result -> !result.get("provider").asText().equals("STRIPE"))
+                .hasSize(60)
+                .allMatch(result -> result.get("status").asText().equals("PROCESSED"));
+        assertThat(transactionRepository.count()).isEqualTo(transactionsBefore + 60);
+
+        // 30 items per provider in chunks of 20: two /check/batch calls per provider instead of 90 /check calls
+        assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/api/fraud-check/check/batch")))).hasSize(6);
+        assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/api/fraud-check/check")))).isEmpty();
+    }
+
+    @Test
+    void fraudulentItemsAreRejectedWithoutReachingTheProvider() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/api/fraud-check/check/batch"))
+                .withRequestBody(containing("6666"))
+                .willReturn(aResponse().withHeader("Content-Type", "application/json").withBody("[true]")));
+
+        List<JsonNode> results = submit("[{\"provider\": \"PAYPAL\", \"amount\": 6666}]").results();
+
+        assertThat(results).singleElement()
+                .satisfies(result -> assertThat(result.get("status").asText()).isEqualTo("REJECTED"));
+        assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/v1/payments/payment")))).isEmpty();
+    }
+
+    @Test
+    void aSlowProviderDoesNotHoldUpTheOthers() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/v2/payments")).willReturn(aResponse().withStatus(200).withFixedDelay(500)));
+
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 8; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"provider\": \"SQUARE\", \"amount\": ").append(2000 + i).append("},")
+                    .append("{\"provider\": \"PAYPAL\", \"amount\": ").append(3000 + i).append("}");
+        }
+        Submission submission = submit(body.append("]").toString());
+
+        // SQUARE runs 2 at a time, so its 8 items take about 2s; PAYPAL results are streamed well before that
+        assertThat(submission.results()).hasSize(16);
+        assertThat(submission.results().get(0).get("provider").asText()).isEqualTo("PAYPAL");
+        assertThat(submission.firstLineMillis()).isLessThan(submission.totalMillis() - 1000);
+        assertThat(submission.totalMillis()).isGreaterThanOrEqualTo(2000);
+    }
+
+    @Test
+    void invalidItemsAreRejectedOneByOne() throws Exception {
+        List<JsonNode> results = submit("[{\"provider\": \"PAYPAL\", \"amount\": 40},"
+                + " {\"provider\": \"PAYPAL\"}, {\"provider\": \"BITCOIN\", \"amount\": 41}, null]").results();
+
+        assertThat(results).hasSize(4);
+        assertThat(results).filteredOn(result -> result.get("index").asInt() == 0).singleElement()
+                .satisfies(result -> assertThat(result.get("status").asText()).isEqualTo("PROCESSED"));
+        assertThat(results).filteredOn(result -> result.get("index").asInt() > 0)
+                .hasSize(3)
+                .allMatch(result -> result.get("status").asText().equals("REJECTED"))
+                .allMatch(result -> result.get("message").asText().startsWith("Invalid payment request"));
+        assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/v1/payments/payment")))).hasSize(1);
+    }
+
+    @Test
+    void rejectsAnOversizedBatchWithoutProcessingAnyOfIt() throws Exception {
+        StringBuilder body = new StringBuilder("[");
+        for (int i = 0; i < 101; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"provider\": \"PAYPAL\", \"amount\": 50}");
+        }
+
+        HttpResponse<String> response = client.send(request(body.append("]").toString()),
+                HttpResponse.BodyHandlers.ofString());
+
+        assertThat(response.statusCode()).isEqualTo(400);
+        assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/v1/payments/payment")))).isEmpty();
+    }
+
+    @Test
+    void rejectsAnEmptyBatch() throws Exception {
+        HttpResponse<String> response = client.send(request("[]"), HttpResponse.BodyHandlers.ofString());
+        assertThat(response.statusCode()).isEqualTo(400);
+    }
+
+    private Submission submit(String body) throws Exception {
+        long start = System.nanoTime();
+        HttpResponse<Stream<String>> response = client.send(request(body), HttpResponse.BodyHandlers.ofLines());
+        assertThat(response.statusCode()).isEqualTo(200);
+        assertThat(response.headers().firstValue("Content-Type")).hasValueSatisfying(
+                contentType -> assertThat(contentType).startsWith("application/x-ndjson"));
+
+        List<JsonNode> results = new ArrayList<>();
+        long firstLineMillis = -1;
+        try (Stream<String> lines = response.body()) {
+            for (String line : (Iterable<String>) lines::iterator) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                if (firstLineMillis < 0) {
+                    firstLineMillis = (System.nanoTime() - start) / 1_000_000;
+                }
+                results.add(objectMapper.readTree(line));
+            }
+        }
+        return new Submission(results, firstLineMillis, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private HttpRequest request(String body) {
+        return HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/payments/batch"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private record Submission(List<JsonNode> results, long firstLineMillis, long totalMillis) {
+    }
+}
@@ -0,0 +1,249 @@
+package com.example.paymentservice.controller;
+
+import com.example.paymentservice.config.IdempotencyProperties;
+import com.example.paymentservice.exception.GlobalExceptionHandler;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.example.paymentservice.repository.IdempotencyRecordRepository;
+import com.example.paymentservice.repository.PaymentTransactionRepository;
+import com.example.paymentservice.service.IdempotencyService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.http.Fault;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntFunction;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+// One provider alone may use less than the limit, which would shed some of the concurrent duplicates
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "payment.concurrency-limit.enabled=false")
+class PaymentIdempotencyTest {
+
+    private static final int DUPLICATES = 20;
+
+    private static final WireMockServer wireMock = new WireMockServer(options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("wiremock")
+            .asynchronousResponseEnabled(true));
+
+    static {
+        wireMock.start();
+    }
+
+    @DynamicPropertySource
+    static void externalServices(DynamicPropertyRegistry registry) {
+        String baseUrl = wireMock.baseUrl();
+        registry.add("external.fraud-service-url", () -> baseUrl + "/api/fraud-check");
+        registry.add("external.payment.providers.paypal.url", () -> baseUrl + "/v1/payments/payment");
+        registry.add("external.payment.providers.stripe.url", () -> baseUrl + "/v1/charges");
+        registry.add("external.payment.providers.square.url", () -> baseUrl + "/v2/payments");
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private PaymentTransactionRepository transactionRepository;
+
+    @Autowired
+    private IdempotencyRecordRepository recordRepository;
+
+    @Autowired
+    private IdempotencyProperties idempotencyProperties;
+
+    @Autowired
+    private GlobalExceptionHandler exceptionHandler;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @BeforeEach
+    void setUp() {
+        // The default pooled client caps connections per host, which would queue the test's own requests
+        restTemplate.getRestTemplate().setRequestFactory(new JdkClientHttpRequestFactory(
+                HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()));
+        wireMock.resetToDefaultMappings();
+        wireMock.resetRequests();
+        wireMock.stubFor(post(urlEqualTo("/v1/payments/payment"))
+                .willReturn(aResponse().withStatus(200).withFixedDelay(300)));
+    }
+
+    @Test
+    void concurrentDuplicatesRunThePaymentOnce() throws Exception {
+        String key = UUID.randomUUID().toString();
+        long transactionsBefore = transactionRepository.count();
+        List<ResponseEntity<String>> responses = submitConcurrently(DUPLICATES, i -> key, 101);
+
+        assertThat(responses).allMatch(response -> response.getStatusCode() == HttpStatus.OK);
+        assertThat(responses).extracting(ResponseEntity::getBody).containsOnly("PAYPAL payment processed successfully");
+        assertThat(responses).filteredOn(response -> response.getHeaders().containsKey("Idempotent-Replayed"))
+                .hasSize(DUPLICATES - 1);
+        assertThat(downstreamCalls("/v1/payments/payment")).isEqualTo(1);
+        assertThat(downstreamCalls("/api/fraud-check/check")).isLessThanOrEqualTo(1);
+        assertThat(transactionRepository.count()).isEqualTo(transactionsBefore + 1);
+        assertThat(recordRepository.findById(key)).isPresent();
+
+        // A retry long after the first attempt finished is answered from the stored response
+        ResponseEntity<String> retry = pay(key, 101);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(retry.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+        assertThat(downstreamCalls("/v1/payments/payment")).isEqualTo(1);
+    }
+
+    @Test
+    void requestsWithoutAKeyAreNotDeduplicated() throws Exception {
+        List<ResponseEntity<String>> responses = submitConcurrently(DUPLICATES, i -> null, 102);
+
+        assertThat(responses).allMatch(response -> response.getStatusCode() == HttpStatus.OK);
+        assertThat(downstreamCalls("/v1/payments/payment")).isEqualTo(DUPLICATES);
+        System.out.printf("Provider calls for %d identical submissions: %d without a key, 1 with one%n",
+                DUPLICATES, downstreamCalls("/v1/payments/payment"));
+    }
+
+    @Test
+    void reusingAKeyForADifferentPaymentIsRejected() {
+        String key = UUID.randomUUID().toString();
+        assertThat(pay(key, 103).getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        ResponseEntity<String> reused = pay(key, 104);
+        assertThat(reused.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+        assertThat(downstreamCalls("/v1/payments/payment")).isEqualTo(1);
+    }
+
+    @Test
+    void paymentsThatReachedNoProviderReleaseTheirKey() {
+        wireMock.stubFor(post(urlEqualTo("/v1/payments/payment")).willReturn(aResponse().withStatus(503)));
+        String key = UUID.randomUUID().toString();
+        assertThat(pay(key, 105).getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+
+        wireMock.stubFor(post(urlEqualTo("/v1/payments/payment")).willReturn(aResponse().withStatus(200)));
+        ResponseEntity<String> retry = pay(key, 105);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(retry.getHeaders().containsKey("Idempotent-Replayed")).isFalse();
+        assertThat(downstreamCalls("/v1/payments/payment")).isEqualTo(2);
+    }
+
+    @Test
+    void paymentsThatMayHaveBeenTakenKeepTheirKey() {
+        wireMock.stubFor(post(urlEqualTo("/v1/payments/payment"))
+                .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+        String key = UUID.randomUUID().toString();
+        assertThat(pay(key, 106).getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+
+        wireMock.stubFor(post(urlEqualTo("/v1/payments/payment")).willReturn(aResponse().withStatus(200)));
+        ResponseEntity<String> retry = pay(key, 106);
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(downstreamCalls("/v1/payments/payment")).isEqualTo(1);
+    }
+
+    @Test
+    void reusingAKeyForAnotherPayloadWithTheSameAmountIsRejected() {
+        String key = UUID.randomUUID().toString();
+        assertThat(pay(key, "{\"provider\": \"PAYPAL\", \"amount\": 107, \"customer\": \"alice\"}")
+                .getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        ResponseEntity<String> reused = pay(key, "{\"provider\": \"PAYPAL\", \"amount\": 107, \"customer\": \"bob\"}");
+        assertThat(reused.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY);
+
+        // The same payload with its fields in another order is a retry
+        ResponseEntity<String> retry = pay(key, "{\"customer\":\"alice\",\"amount\":107,\"provider\":\"PAYPAL\"}");
+        assertThat(retry.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(retry.getHeaders().getFirst("Idempotent-Replayed")).isEqualTo("true");
+        assertThat(downstreamCalls("/v1/payments/payment")).isEqualTo(1);
+    }
+
+    @Test
+    void failuresThatMayHaveBeenTakenAreReplayedAfterARestart() {
+        wireMock.stubFor(post(urlEqualTo("/v1/payments/payment"))
+                .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+        String key = UUID.randomUUID().toString();
+        String body = "{\"provider\": \"PAYPAL\", \"amount\": 108}";
+        ResponseEntity<String> failed = pay(key, body);
+        assertThat(failed.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+
+        // A new instance knows the key only from the database
+        IdempotencyService restarted = new IdempotencyService(recordRepository, idempotencyProperties,
+                exceptionHandler, objectMapper, new SimpleMeterRegistry());
+        ResponseEntity<String> replayed = restarted.execute(key, body.getBytes(StandardCharsets.UTF_8), () -> {
+            throw new AssertionError("The payment ran again");
+        });
+
+        assertThat(replayed.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(replayed.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        assertThat(replayed.getBody()).isEqualTo(failed.getBody());
+        assertThat(downstreamCalls("/v1/payments/payment")).isEqualTo(1);
+    }
+
+    private List<ResponseEntity<String>> submitConcurrently(int count, IntFunction<String> keys,
+                                                            long amount) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(count);
+        List<Future<ResponseEntity<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String key = keys.apply(i);
+            futures.add(clients.submit(() -> pay(key, amount)));
+        }
+        List<ResponseEntity<String>> responses = new ArrayList<>();
+        for (Future<ResponseEntity<String>> future : futures) {
+            responses.add(future.get());
+        }
+        clients.shutdown();
+        return responses;
+    }
+
+    private ResponseEntity<String> pay(String idempotencyKey, long amount) {
+        PaymentRequest request = new PaymentRequest();
+        request.setProvider(PaymentProviderType.PAYPAL);
+        request.setAmount(Money.of(amount, 0));
+        HttpHeaders headers = new HttpHeaders();
+        if (idempotencyKey != null) {
+            headers.set("Idempotency-Key", idempotencyKey);
+        }
+        return restTemplate.postForEntity("/api/payments/process", new HttpEntity<>(request, headers), String.class);
+    }
+
+    private ResponseEntity<String> pay(String idempotencyKey, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.set("Idempotency-Key", idempotencyKey);
+        return restTemplate.postForEntity("/api/payments/process", new HttpEntity<>(body, headers), String.class);
+    }
+
+    private static int downstreamCalls(String url) {
+        return wireMock.findAll(postRequestedFor(urlEqualTo(url))).size();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.paymentservice.controller;
+
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+// Tests only get an in-memory registry unless observability is switched back on
+@AutoConfigureObservability
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PaymentMetricsEndpointTest {
+
+    private static final WireMockServer wireMock = new WireMockServer(options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("wiremock"));
+
+    static {
+        wireMock.start();
+    }
+
+    @DynamicPropertySource
+    static void externalServices(DynamicPropertyRegistry registry) {
+        String baseUrl = wireMock.baseUrl();
+        registry.add("external.fraud-service-url", () -> baseUrl + "/api/fraud-check");
+        registry.add("external.payment.providers.paypal.url", () -> baseUrl + "/v1/payments/payment");
+        registry.add("external.payment.providers.stripe.url", () -> baseUrl + "/v1/charges");
+        registry.add("external.payment.providers.square.url", () -> baseUrl + "/v2/payments");
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Test
+    void exposesStageHistogramsInPrometheusFormat() {
+        PaymentRequest request = new PaymentRequest();
+        request.setProvider(PaymentProviderType.PAYPAL);
+        request.setAmount(Money.of(42, 0));
+        assertThat(restTemplate.postForEntity("/api/payments/process", request, String.class).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+
+        ResponseEntity<String> scrape = restTemplate.getForEntity("/actuator/prometheus", String.class);
+
+        assertThat(scrape.getStatusCode()).isEqualTo(HttpStatus.OK);
+        for (String stage : new String[]{"fraud_check", "provider_call", "persistence", "observer_dispatch"}) {
+            assertThat(scrape.getBody()).containsPattern("payment_stage_seconds_count\\{outcome=\"success\","
+                    + "provider=\"paypal\",stage=\"" + stage + "\",?} [1-9]");
+        }
+        assertThat(scrape.getBody()).contains("payment_stage_seconds_bucket{outcome=\"success\",provider=\"paypal\","
+                + "stage=\"provider_call\",le=");
+    }
+
+    @Test
+    void timesTheStagesOfReactivePayments() {
+        PaymentRequest request = new PaymentRequest();
+        request.setProvider(PaymentProviderType.STRIPE);
+        request.setAmount(Money.of(43, 0));
+        assertThat(restTemplate.postForEntity("/api/payments/process-reactive", request, String.class)
+                .getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        String scrape = restTemplate.getForObject("/actuator/prometheus", String.class);
+
+        for (String stage : new String[]{"fraud_check", "provider_call", "persistence", "observer_dispatch"}) {
+            assertThat(scrape).containsPattern("payment_stage_seconds_count\\{outcome=\"success\","
+                    + "provider=\"stripe\",stage=\"" + stage + "\",?} [1-9]");
+        }
+    }
+
+    @Test
+    void servesAnalyticsFromMemory() throws Exception {
+        PaymentRequest request = new PaymentRequest();
+        request.setProvider(PaymentProviderType.SQUARE);
+        request.setAmount(Money.of(250, 0));
+        assertThat(restTemplate.postForEntity("/api/payments/process", request, String.class).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+
+        // Observers run asynchronously, after the payment is answered
+        JsonNode square = null;
+        for (int attempt = 0; attempt < 50 && (square == null || square.isMissingNode()); attempt++) {
+            Thread.sleep(100);
+            square = restTemplate.getForObject("/api/payments/analytics?window=5m", JsonNode.class)
+                    .path("providers").path("SquareProvider");
+        }
+
+        assertThat(square.path("count").asLong()).isEqualTo(1);
+        assertThat(square.path("successRate").asDouble()).isEqualTo(1.0);
+        assertThat(square.path("amounts").path("USD").path("total").asDouble()).isEqualTo(250.0);
+        assertThat(square.path("amounts").path("USD").path("quantiles").path("p50").asDouble())
+                .isCloseTo(250.0, within(2.5));
+        assertThat(restTemplate.getForEntity("/api/payments/analytics?window=soon", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+}
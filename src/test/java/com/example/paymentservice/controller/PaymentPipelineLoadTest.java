@@ -0,0 +1,142 @@
+package com.example.paymentservice.controller;
+
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+import java.util.Arrays;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the blocking {@code /process} endpoint with the reactive {@code /process-reactive} endpoint under the same
+ * concurrent load, with WireMock serving the stubs from {@code wiremock/mappings} at a fixed downstream latency.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PaymentPipelineLoadTest {
+
+    private static final int DOWNSTREAM_DELAY_MS = 100;
+    private static final int CONCURRENCY = 100;
+    private static final int REQUESTS = 1000;
+
+    private static final WireMockServer wireMock = new WireMockServer(options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("wiremock")
+            .asynchronousResponseEnabled(true)
+            .containerThreads(CONCURRENCY));
+
+    static {
+        wireMock.start();
+        wireMock.setGlobalFixedDelay(DOWNSTREAM_DELAY_MS);
+    }
+
+    @DynamicPropertySource
+    static void externalServices(DynamicPropertyRegistry registry) {
+        String baseUrl = wireMock.baseUrl();
+        registry.add("external.fraud-service-url", () -> baseUrl + "/api/fraud-check");
+        registry.add("external.payment.providers.paypal.url", () -> baseUrl + "/v1/payments/payment");
+        registry.add("external.payment.providers.stripe.url", () -> baseUrl + "/v1/charges");
+        registry.add("external.payment.providers.square.url", () -> baseUrl + "/v2/payments");
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Test
+    void reactivePipelineServesTheSameLoadWithFewerThreads() {
+        WebClient client = WebClient.create("http://localhost:" + port + "/api/payments");
+        run(client, "/process-reactive", 50);
+        run(client, "/process", 50);
+
+        // The reactive run goes first so it is not credited with servlet threads started by the blocking run
+        LoadResult reactive = run(client, "/process-reactive", REQUESTS);
+        LoadResult blocking = run(client, "/process", REQUESTS);
+
+        System.out.println("blocking: " + blocking);
+        System.out.println("reactive: " + reactive);
+
+        assertThat(reactive.failures).isZero();
+        assertThat(blocking.failures).isZero();
+        assertThat(reactive.peakThreads).isLessThan(blocking.peakThreads);
+    }
+
+    private LoadResult run(WebClient client, String path, int requests) {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        PaymentProviderType[] types = PaymentProviderType.values();
+        long start = System.nanoTime();
+
+        long[] latencies = Flux.range(0, requests)
+                .flatMap(i -> {
+                    PaymentRequest request = new PaymentRequest();
+                    request.setProvider(types[i % types.length]);
+                    request.setAmount(Money.of(10 + i, 0));
+                    long sent = System.nanoTime();
+                    return client.post().uri(path)
+                            .bodyValue(request)
+                            .retrieve()
+                            .toBodilessEntity()
+                            .map(response -> System.nanoTime() - sent)
+                            .onErrorResume(e -> Mono.just(-1L));
+                }, CONCURRENCY)
+                .collectList()
+                .block(Duration.ofMinutes(5))
+                .stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+
+        long elapsedNanos = System.nanoTime() - start;
+        return new LoadResult(latencies, elapsedNanos, threads.getPeakThreadCount());
+    }
+
+    private static final class LoadResult {
+        private final long failures;
+        private final double throughput;
+        private final long p50Millis;
+        private final long p99Millis;
+        private final int peakThreads;
+
+        private LoadResult(long[] latencies, long elapsedNanos, int peakThreads) {
+            long[] successful = Arrays.stream(latencies).filter(latency -> latency >= 0).sorted().toArray();
+            this.failures = latencies.length - successful.length;
+            this.throughput = successful.length / (elapsedNanos / 1_000_000_000.0);
+            this.p50Millis = percentileMillis(successful, 0.50);
+            this.p99Millis = percentileMillis(successful, 0.99);
+            this.peakThreads = peakThreads;
+        }
+
+        private static long percentileMillis(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%.0f payments/s, p50=%dms, p99=%dms, peak threads=%d, failures=%d",
+                    throughput, p50Millis, p99Millis, peakThreads, failures);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.paymentservice.controller;
+
+import com.example.paymentservice.exception.GlobalExceptionHandler;
+import com.example.paymentservice.exception.PaymentNotRecordedException;
+import com.example.paymentservice.exception.PaymentRejectedException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.util.Map;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PaymentRejectionTest {
+
+    private static final String[] ENDPOINTS = {"/api/payments/process", "/api/payments/process-reactive"};
+
+    private static final WireMockServer wireMock = new WireMockServer(options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("wiremock"));
+
+    static {
+        wireMock.start();
+    }
+
+    @DynamicPropertySource
+    static void externalServices(DynamicPropertyRegistry registry) {
+        String baseUrl = wireMock.baseUrl();
+        registry.add("external.fraud-service-url", () -> baseUrl + "/api/fraud-check");
+        registry.add("external.payment.providers.paypal.url", () -> baseUrl + "/v1/payments/payment");
+        registry.add("external.payment.providers.stripe.url", () -> baseUrl + "/v1/charges");
+        registry.add("external.payment.providers.square.url", () -> baseUrl + "/v2/payments");
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @BeforeEach
+    void resetWireMock() {
+        wireMock.resetToDefaultMappings();
+    }
+
+    @Test
+    void rejectsFraudulentPayments() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/api/fraud-check/check"))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json").withBody("true")));
+
+        for (String endpoint : ENDPOINTS) {
+            JsonNode body = rejected(endpoint, "{\"provider\": \"PAYPAL\", \"amount\": 913.27}");
+
+            assertThat(body.path("error").asText()).isEqualTo("Invalid argument");
+            assertThat(body.path("message").asText()).isEqualTo("Fraudulent transaction detected");
+        }
+    }
+
+    @Test
+    void rejectsInvalidRequestsWithTheFieldErrors() throws Exception {
+        for (String endpoint : ENDPOINTS) {
+            JsonNode body = rejected(endpoint, "{\"provider\": \"PAYPAL\", \"amount\": -5}");
+            assertThat(body.path("amount").asText()).isEqualTo("Amount must be greater than or equal to 0");
+
+            body = rejected(endpoint, "{}");
+            assertThat(body.path("amount").asText()).isEqualTo("Amount is mandatory");
+            assertThat(body.path("providerSet").asText()).isEqualTo("Provider is mandatory");
+        }
+    }
+
+    @Test
+    void rejectsUnknownProviders() throws Exception {
+        for (String endpoint : ENDPOINTS) {
+            JsonNode body = rejected(endpoint, "{\"provider\": \"VENMO\", \"amount\": 10}");
+
+            assertThat(body.path("providerKnown").asText()).isEqualTo("Provider must be one of PAYPAL, STRIPE or SQUARE");
+            assertThat(body.has("providerSet")).isFalse();
+        }
+    }
+
+    @Test
+    void rejectsAmountsTheirCurrencyCannotHold() throws Exception {
+        for (String endpoint : ENDPOINTS) {
+            JsonNode body = rejected(endpoint, "{\"provider\": \"PAYPAL\", \"amount\": 10.005}");
+            assertThat(body.path("error").asText()).isEqualTo("Invalid format");
+
+            body = rejected(endpoint, "{\"provider\": \"PAYPAL\", \"amount\": 500.5, \"currency\": \"JPY\"}");
+            assertThat(body.path("message").asText()).isEqualTo("500.5 is not a valid value for Money");
+
+            body = rejected(endpoint, "{\"provider\": \"PAYPAL\", \"amount\": 10, \"currency\": \"XYZ\"}");
+            assertThat(body.path("error").asText()).isEqualTo("Invalid format");
+        }
+    }
+
+    @Test
+    void failedFraudChecksAreAnsweredWithRetryAfter() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/api/fraud-check/check")).willReturn(aResponse().withStatus(500)));
+
+        for (String endpoint : ENDPOINTS) {
+            HttpHeaders headers = new HttpHeaders();
+            headers.setContentType(MediaType.APPLICATION_JSON);
+            ResponseEntity<String> response = restTemplate.postForEntity(endpoint,
+                    new HttpEntity<>("{\"provider\": \"PAYPAL\", \"amount\": 913.31}", headers), String.class);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+            assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+            assertThat(objectMapper.readTree(response.getBody()).path("error").asText())
+                    .isEqualTo("Fraud check unavailable");
+        }
+        assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/v1/payments/payment")))).isEmpty();
+    }
+
+    @Test
+    void paymentsNotRecordedSayTheProviderTookThem() {
+        GlobalExceptionHandler handler = new GlobalExceptionHandler();
+
+        Map<String, String> body = handler.handlePaymentNotRecordedException(
+                new PaymentNotRecordedException(new IllegalStateException("database unavailable")));
+
+        assertThat(body).containsEntry("error", "Payment not recorded")
+                .containsEntry("message", "Payment processed but not recorded: database unavailable");
+    }
+
+    @Test
+    void sharedRejectionsCarryNoStackTrace() {
+        assertThat(PaymentRejectedException.FRAUDULENT.getStackTrace()).isEmpty();
+        assertThat(PaymentRejectedException.UNKNOWN_PROVIDER.getStackTrace()).isEmpty();
+    }
+
+    private JsonNode rejected(String endpoint, String json) throws Exception {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        ResponseEntity<String> response = restTemplate.postForEntity(endpoint, new HttpEntity<>(json, headers),
+                String.class);
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+        return objectMapper.readTree(response.getBody());
+    }
+}
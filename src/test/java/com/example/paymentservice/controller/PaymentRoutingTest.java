@@ -0,0 +1,99 @@
+package com.example.paymentservice.controller;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        // Keep STRIPE's failures in this test from opening its circuit breaker
+        "external.payment.providers.stripe.circuit-breaker.minimum-number-of-calls=1000"
+})
+class PaymentRoutingTest {
+
+    private static final WireMockServer wireMock = new WireMockServer(options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("wiremock"));
+
+    static {
+        wireMock.start();
+    }
+
+    @DynamicPropertySource
+    static void externalServices(DynamicPropertyRegistry registry) {
+        String baseUrl = wireMock.baseUrl();
+        registry.add("external.fraud-service-url", () -> baseUrl + "/api/fraud-check");
+        registry.add("external.payment.providers.paypal.url", () -> baseUrl + "/v1/payments/payment");
+        registry.add("external.payment.providers.stripe.url", () -> baseUrl + "/v1/charges");
+        registry.add("external.payment.providers.square.url", () -> baseUrl + "/v2/payments");
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @BeforeEach
+    void resetWireMock() {
+        wireMock.resetToDefaultMappings();
+        wireMock.resetRequests();
+        wireMock.stubFor(post(urlEqualTo("/v1/charges")).willReturn(aResponse().withStatus(503)));
+    }
+
+    @Test
+    void failsOverToAnotherProviderWhenAllowed() {
+        for (String endpoint : new String[]{"/api/payments/process", "/api/payments/process-reactive"}) {
+            ResponseEntity<String> response = pay(endpoint,
+                    "{\"provider\": \"STRIPE\", \"amount\": 100, \"allowFailover\": true}");
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getBody()).endsWith("payment processed successfully").doesNotStartWith("STRIPE");
+        }
+        assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/v1/charges")))).hasSize(2);
+    }
+
+    @Test
+    void staysOnThePinnedProviderByDefault() {
+        ResponseEntity<String> response = pay("/api/payments/process", "{\"provider\": \"STRIPE\", \"amount\": 100}");
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/v1/payments/payment")))).isEmpty();
+        assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/v2/payments")))).isEmpty();
+    }
+
+    @Test
+    void autoRoutingNeedsNoProvider() {
+        ResponseEntity<String> response = pay("/api/payments/process",
+                "{\"routing\": \"AUTO\", \"amount\": 100, \"allowFailover\": true}");
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+
+        ResponseEntity<String> missingProvider = pay("/api/payments/process", "{\"amount\": 100}");
+        assertThat(missingProvider.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private ResponseEntity<String> pay(String endpoint, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        return restTemplate.postForEntity(endpoint, new HttpEntity<>(body, headers), String.class);
+    }
+}
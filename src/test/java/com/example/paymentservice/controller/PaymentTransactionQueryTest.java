@@ -0,0 +1,123 @@
+package com.example.paymentservice.controller;
+
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentTransaction;
+import com.example.paymentservice.model.TransactionFilter;
+import com.example.paymentservice.repository.PaymentTransactionRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = "spring.jpa.show-sql=false")
+class PaymentTransactionQueryTest {
+
+    // Other tests share the in-memory database, so these transactions get a provider of their own
+    private static final String PROVIDER = "QueryTestProvider";
+    private static final Instant START = Instant.parse("2024-05-01T10:00:00Z");
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private PaymentTransactionRepository transactionRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void insertTransactions() {
+        TransactionFilter filter = new TransactionFilter(PROVIDER, null, null, null, null, null, null);
+        if (transactionRepository.findPage(filter, null, null, 1).isEmpty()) {
+            List<PaymentTransaction> transactions = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                PaymentTransaction transaction = new PaymentTransaction();
+                transaction.setProvider(PROVIDER);
+                transaction.setAmount(Money.of(i * 10, 0));
+                transaction.setSuccessful(i % 5 != 0);
+                // Pairs share a timestamp, so paging must break ties on id
+                transaction.setCreatedAt(START.plusSeconds(i / 2));
+                transactions.add(transaction);
+            }
+            transactionRepository.saveAll(transactions);
+        }
+    }
+
+    @Test
+    void pagesThroughMatchingTransactionsNewestFirst() {
+        List<JsonNode> seen = new ArrayList<>();
+        String next = null;
+        int pages = 0;
+        do {
+            JsonNode page = restTemplate.getForObject("/api/payments/transactions?provider=" + PROVIDER
+                    + "&successful=true&limit=7" + (next == null ? "" : "&after=" + next), JsonNode.class);
+            page.path("items").forEach(seen::add);
+            next = page.path("next").isNull() ? null : page.path("next").asText();
+            pages++;
+        } while (next != null);
+
+        assertThat(pages).isEqualTo(3);
+        assertThat(seen).hasSize(20);
+        for (int i = 1; i < seen.size(); i++) {
+            JsonNode newer = seen.get(i - 1);
+            JsonNode older = seen.get(i);
+            assertThat(newer.path("successful").asBoolean()).isTrue();
+            assertThat(Instant.parse(newer.path("createdAt").asText()))
+                    .isAfterOrEqualTo(Instant.parse(older.path("createdAt").asText()));
+            assertThat(newer.path("id").asLong()).isNotEqualTo(older.path("id").asLong());
+        }
+        assertThat(seen.get(0).has("journalSequence")).isFalse();
+    }
+
+    @Test
+    void filtersOnAmountAndTimeRanges() {
+        JsonNode page = restTemplate.getForObject("/api/payments/transactions?provider=" + PROVIDER
+                + "&currency=USD&minAmount=50&maxAmount=150&from=2024-05-01T10:00:03Z&to=2024-05-01T10:00:06Z",
+                JsonNode.class);
+
+        // Created at 10:00:03 to 10:00:05 are transactions 6 to 11, of which amounts 60 to 110
+        List<Double> amounts = new ArrayList<>();
+        page.path("items").forEach(item -> amounts.add(item.path("amount").asDouble()));
+        assertThat(amounts).containsExactly(110.0, 100.0, 90.0, 80.0, 70.0, 60.0);
+        assertThat(page.path("next").isNull()).isTrue();
+    }
+
+    @Test
+    void exportsEveryMatchingTransactionAsJsonLines() {
+        ResponseEntity<String> export = restTemplate.getForEntity("/api/payments/transactions/export?provider="
+                + PROVIDER, String.class);
+
+        assertThat(export.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(export.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_NDJSON);
+        assertThat(export.getBody().lines()).hasSize(25).allMatch(line -> line.contains(PROVIDER));
+    }
+
+    @Test
+    void rejectsInvalidPageRequests() {
+        assertThat(restTemplate.getForEntity("/api/payments/transactions?limit=5000", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(restTemplate.getForEntity("/api/payments/transactions?after=bogus", String.class).getStatusCode())
+                .isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void seeksOnTheProviderIndex() {
+        String plan = jdbcTemplate.queryForObject("explain select id from payment_transaction where provider = ? "
+                + "order by provider, created_at desc, id desc limit 10", String.class, PROVIDER);
+
+        assertThat(plan).containsIgnoringCase("idx_payment_transaction_provider_created")
+                .containsIgnoringCase("index sorted");
+    }
+}
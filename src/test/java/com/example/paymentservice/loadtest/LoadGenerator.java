@@ -0,0 +1,142 @@
+package com.example.paymentservice.loadtest;
+
+import com.example.paymentservice.model.PaymentProviderType;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends payments on an open model: request {@code i} is due at a time fixed by the arrival rate alone, and is sent then
+ * whether or not earlier requests have been answered. Latency is measured from that due time rather than from when the
+ * request actually left, so a server that falls behind is charged for the queueing it causes instead of slowing the
+ * generator down and hiding it (coordinated omission).
+ */
+final class LoadGenerator {
+
+    enum Arrivals {
+        // Evenly spaced
+        CONSTANT,
+        // Exponentially distributed gaps, like independent clients
+        POISSON
+    }
+
+    private static final PaymentProviderType[] PROVIDERS = PaymentProviderType.values();
+
+    private final WebClient client;
+    private final Traffic traffic;
+    private final double ratePerSecond;
+    private final Arrivals arrivals;
+    private final long seed;
+    private final int maxOutstanding;
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private long nextIndex;
+
+    LoadGenerator(WebClient client, Traffic traffic, double ratePerSecond, Arrivals arrivals, long seed,
+                  int maxOutstanding) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("The arrival rate must be positive");
+        }
+        this.client = client;
+        this.traffic = traffic;
+        this.ratePerSecond = ratePerSecond;
+        this.arrivals = arrivals;
+        this.seed = seed;
+        this.maxOutstanding = maxOutstanding;
+    }
+
+    /**
+     * Sends payments for {@code duration}, then waits up to {@code drainTimeout} for the outstanding ones. Payments
+     * still unanswered after that count as failed. Progress is printed to {@code progress} every
+     * {@code reportInterval}, if one is given.
+     */
+    LoadReport run(Duration duration, Duration drainTimeout, Duration reportInterval, PrintStream progress) {
+        LoadReport report = new LoadReport();
+        Recorder interval = new Recorder(3);
+        SplittableRandom random = new SplittableRandom(seed + nextIndex);
+        double meanGapNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long intervalNanos = reportInterval == null ? 0 : reportInterval.toNanos();
+
+        long start = System.nanoTime();
+        long end = start + duration.toNanos();
+        long nextProgress = reportInterval == null ? Long.MAX_VALUE : start + intervalNanos;
+        double offsetNanos = 0;
+        while (true) {
+            long due = start + (long) offsetNanos;
+            if (due >= end) {
+                break;
+            }
+            long now;
+            while ((now = System.nanoTime()) < due) {
+                LockSupport.parkNanos(due - now);
+            }
+            send(traffic.get(nextIndex++), due, report, interval);
+            offsetNanos += arrivals == Arrivals.POISSON
+                    ? -Math.log(1 - random.nextDouble()) * meanGapNanos
+                    : meanGapNanos;
+            if (now >= nextProgress) {
+                printProgress(progress, interval.getIntervalHistogram(), now - start, intervalNanos);
+                nextProgress += intervalNanos;
+            }
+        }
+
+        long drainDeadline = System.nanoTime() + drainTimeout.toNanos();
+        while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        report.finish(System.nanoTime() - start, outstanding.get());
+        return report;
+    }
+
+    private void send(Traffic.Payment payment, long due, LoadReport report, Recorder interval) {
+        if (outstanding.incrementAndGet() > maxOutstanding) {
+            // The client is the bottleneck now; failing keeps memory bounded and makes that visible
+            outstanding.decrementAndGet();
+            report.recordFailure(payment.label());
+            return;
+        }
+        client.post()
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(payment.json())
+                .exchangeToMono(response -> response.bodyToMono(String.class)
+                        .defaultIfEmpty("")
+                        .map(body -> response.statusCode().is2xxSuccessful() ? processedBy(body, payment.label()) : ""))
+                .onErrorResume(e -> Mono.just(""))
+                .doFinally(signal -> outstanding.decrementAndGet())
+                .subscribe(provider -> {
+                    long latency = System.nanoTime() - due;
+                    if (provider.isEmpty()) {
+                        report.recordFailure(payment.label());
+                    } else {
+                        report.recordSuccess(provider, latency);
+                        interval.recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latency)));
+                    }
+                });
+    }
+
+    // Answers start with the provider that took the payment, which for AUTO routing is only known afterwards
+    private static String processedBy(String body, String requested) {
+        for (PaymentProviderType provider : PROVIDERS) {
+            if (body.startsWith(provider.name())) {
+                return provider.name();
+            }
+        }
+        return requested;
+    }
+
+    private static void printProgress(PrintStream progress, Histogram latencies, long elapsedNanos,
+                                      long intervalNanos) {
+        progress.printf("%5.0fs %8.1f payments/s  p50=%.1fms  p99=%.1fms  p99.9=%.1fms%n",
+                elapsedNanos / 1e9, latencies.getTotalCount() / (intervalNanos / 1e9),
+                latencies.getValueAtPercentile(50) / 1000.0, latencies.getValueAtPercentile(99) / 1000.0,
+                latencies.getValueAtPercentile(99.9) / 1000.0);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.paymentservice.loadtest;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class LoadGeneratorTest {
+
+    private final WireMockServer wireMock = new WireMockServer(options().dynamicPort());
+
+    @AfterEach
+    void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @Test
+    void scaledTrafficKeepsTheProviderMixAndIsReproducible() {
+        Traffic recorded = Traffic.load(Path.of("loadtest/payments.jsonl"));
+        Traffic scaled = recorded.scaled(20_000, 7);
+
+        assertThat(scaled.size()).isEqualTo(20_000);
+        assertThat(scaled.get(123).body()).isEqualTo(recorded.scaled(20_000, 7).get(123).body());
+        Map<String, Double> recordedMix = mix(recorded);
+        mix(scaled).forEach((label, share) -> assertThat(share).isCloseTo(recordedMix.get(label), within(0.02)));
+    }
+
+    @Test
+    void chargesQueueingToTheServerRatherThanWaitingForIt(@TempDir Path directory) throws Exception {
+        wireMock.start();
+        wireMock.stubFor(post(urlEqualTo("/pay"))
+                .willReturn(aResponse().withStatus(200).withBody("PAYPAL payment processed successfully")
+                        .withFixedDelay(200)));
+        Path file = directory.resolve("payments.jsonl");
+        Files.writeString(file, "{\"provider\": \"PAYPAL\", \"amount\": 10}\n");
+        // One connection, so the "server" handles 5 payments a second while they arrive at 20 a second
+        ConnectionProvider connections = ConnectionProvider.builder("test").maxConnections(1)
+                .pendingAcquireMaxCount(-1).build();
+        WebClient client = WebClient.builder()
+                .baseUrl(wireMock.baseUrl() + "/pay")
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                .build();
+
+        try {
+            LoadReport report = new LoadGenerator(client, Traffic.load(file), 20, LoadGenerator.Arrivals.CONSTANT,
+                    1, 1000).run(Duration.ofSeconds(1), Duration.ofSeconds(10), null, null);
+
+            assertThat(report.totalFailures()).isZero();
+            assertThat(report.totalLatencies().getTotalCount()).isEqualTo(20);
+            assertThat(report.latenciesByProvider()).containsOnlyKeys("PAYPAL");
+            // Each payment takes 200ms to serve, but the last one was due at 0.95s and answered after about 4s
+            assertThat(report.totalLatencies().getMaxValue()).isGreaterThan(2_500_000);
+            assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/pay")))).hasSize(20);
+        } finally {
+            connections.dispose();
+        }
+    }
+
+    private static Map<String, Double> mix(Traffic traffic) {
+        Map<String, Double> mix = new HashMap<>();
+        for (int i = 0; i < traffic.size(); i++) {
+            mix.merge(traffic.get(i).label(), 1.0 / traffic.size(), Double::sum);
+        }
+        return mix;
+    }
+}
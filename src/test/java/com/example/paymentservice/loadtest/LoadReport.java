@@ -0,0 +1,126 @@
+package com.example.paymentservice.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Outcome of a load run, per provider and in total. Latencies are in microseconds and only cover successful payments;
+ * failed ones are counted.
+ */
+final class LoadReport {
+
+    // Sorted, so providers are always printed in the same order
+    private final Map<String, Stats> byProvider = new ConcurrentSkipListMap<>();
+    private final Stats total = new Stats();
+    private volatile long elapsedNanos;
+    private volatile boolean finished;
+
+    void recordSuccess(String provider, long latencyNanos) {
+        if (finished) {
+            return;
+        }
+        long micros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+        stats(provider).latencies.recordValue(micros);
+        total.latencies.recordValue(micros);
+    }
+
+    void recordFailure(String provider) {
+        if (finished) {
+            return;
+        }
+        stats(provider).failures.increment();
+        total.failures.increment();
+    }
+
+    /**
+     * Closes the report; payments answered from now on are ignored and the {@code unanswered} ones count as failed.
+     */
+    void finish(long elapsedNanos, int unanswered) {
+        finished = true;
+        this.elapsedNanos = elapsedNanos;
+        if (unanswered > 0) {
+            stats("UNANSWERED").failures.add(unanswered);
+            total.failures.add(unanswered);
+        }
+    }
+
+    Histogram totalLatencies() {
+        return total.latencies;
+    }
+
+    long totalFailures() {
+        return total.failures.sum();
+    }
+
+    Map<String, Histogram> latenciesByProvider() {
+        Map<String, Histogram> latencies = new LinkedHashMap<>();
+        byProvider.forEach((provider, stats) -> latencies.put(provider, stats.latencies));
+        return latencies;
+    }
+
+    void print(PrintStream out) {
+        out.printf("%-10s %10s %10s %10s %10s %10s %10s %10s%n", "provider", "payments", "failed", "per sec",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        byProvider.forEach((provider, stats) -> print(out, provider, stats));
+        print(out, "total", total);
+    }
+
+    /**
+     * The report as nested maps, to be written as JSON and compared across runs.
+     */
+    Map<String, Object> toMap() {
+        Map<String, Object> providers = new LinkedHashMap<>();
+        byProvider.forEach((provider, stats) -> providers.put(provider, toMap(stats)));
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("elapsedSeconds", seconds());
+        map.put("total", toMap(total));
+        map.put("providers", providers);
+        return map;
+    }
+
+    private Stats stats(String provider) {
+        return byProvider.computeIfAbsent(provider, key -> new Stats());
+    }
+
+    private void print(PrintStream out, String provider, Stats stats) {
+        Histogram latencies = stats.latencies;
+        out.printf("%-10s %10d %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", provider,
+                latencies.getTotalCount() + stats.failures.sum(), stats.failures.sum(),
+                latencies.getTotalCount() / seconds(), millis(latencies, 50), millis(latencies, 99),
+                millis(latencies, 99.9), latencies.getMaxValue() / 1000.0);
+    }
+
+    private Map<String, Object> toMap(Stats stats) {
+        Histogram latencies = stats.latencies;
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("payments", latencies.getTotalCount() + stats.failures.sum());
+        map.put("failed", stats.failures.sum());
+        map.put("throughput", latencies.getTotalCount() / seconds());
+        map.put("p50Millis", millis(latencies, 50));
+        map.put("p99Millis", millis(latencies, 99));
+        map.put("p999Millis", millis(latencies, 99.9));
+        map.put("maxMillis", latencies.getMaxValue() / 1000.0);
+        return map;
+    }
+
+    private double seconds() {
+        return Math.max(1, elapsedNanos) / 1_000_000_000.0;
+    }
+
+    private static double millis(Histogram latencies, double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    private static final class Stats {
+        // Auto-resizing, so a stalled run cannot overflow it
+        private final Histogram latencies = new ConcurrentHistogram(3);
+        private final LongAdder failures = new LongAdder();
+    }
+}
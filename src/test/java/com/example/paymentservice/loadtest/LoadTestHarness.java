@@ -0,0 +1,179 @@
+package com.example.paymentservice.loadtest;
+
+import com.example.paymentservice.PaymentServiceApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.global.GlobalSettings;
+import com.github.tomakehurst.wiremock.http.UniformDistribution;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Replays payment traffic against the service at a fixed arrival rate and reports throughput and latency percentiles
+ * per provider. WireMock runs in-process with the stubs from {@code wiremock/mappings}, in place of the fraud service
+ * and the providers. Unless {@code --target} points at a service that is already running, the service is started
+ * in-process too, wired to WireMock. Run through the {@code load-test} Maven profile:
+ * <pre>
+ * ./mvnw verify -Pload-test -DskipTests -Dload.args="--rate=500 --duration=60s --scale=100000"
+ * </pre>
+ * Options, all {@code --name=value}:
+ * <ul>
+ * <li>{@code traffic}: JSON lines file of payment requests, {@code loadtest/payments.jsonl} by default</li>
+ * <li>{@code scale}: send a synthetic version of the traffic with this many requests instead of replaying it</li>
+ * <li>{@code seed}: makes synthetic traffic and Poisson arrivals reproducible, 42 by default</li>
+ * <li>{@code rate}: payments per second, 100 by default</li>
+ * <li>{@code arrivals}: {@code poisson} (default) or {@code constant}</li>
+ * <li>{@code duration} and {@code warmup}: how long to measure, after a warm-up at the same rate that is not
+ * reported; 30s and 10s by default</li>
+ * <li>{@code endpoint}: {@code /api/payments/process} by default</li>
+ * <li>{@code target}: base URL of a running service, which must use WireMock on {@code wiremock-port} (9561, the
+ * port in {@code application.yml})</li>
+ * <li>{@code wiremock}: {@code false} to use stubs that are already running, such as the docker compose ones</li>
+ * <li>{@code downstream-delay}: WireMock delay in ms, either fixed ({@code 50}) or uniform ({@code 20-80})</li>
+ * <li>{@code max-outstanding}: payments in flight before new ones fail, 10000 by default</li>
+ * <li>{@code output}: JSON report file, {@code target/load-test.json} by default</li>
+ * </ul>
+ */
+public final class LoadTestHarness {
+
+    private LoadTestHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        Traffic traffic = Traffic.load(Path.of(options.getOrDefault("traffic", "loadtest/payments.jsonl")));
+        if (options.containsKey("scale")) {
+            traffic = traffic.scaled(Integer.parseInt(options.get("scale")), seed);
+        }
+        double rate = Double.parseDouble(options.getOrDefault("rate", "100"));
+        LoadGenerator.Arrivals arrivals =
+                LoadGenerator.Arrivals.valueOf(options.getOrDefault("arrivals", "poisson").toUpperCase());
+        Duration duration = DurationStyle.detectAndParse(options.getOrDefault("duration", "30s"));
+        Duration warmup = DurationStyle.detectAndParse(options.getOrDefault("warmup", "10s"));
+        int maxOutstanding = Integer.parseInt(options.getOrDefault("max-outstanding", "10000"));
+        String target = options.get("target");
+
+        WireMockServer wireMock = null;
+        if (Boolean.parseBoolean(options.getOrDefault("wiremock", "true"))) {
+            int port = target == null ? 0 : Integer.parseInt(options.getOrDefault("wiremock-port", "9561"));
+            wireMock = startWireMock(port, options.get("downstream-delay"));
+        }
+        ConfigurableApplicationContext application = null;
+        ConnectionProvider connections = ConnectionProvider.builder("load-test")
+                .maxConnections(maxOutstanding)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        try {
+            if (target == null) {
+                if (wireMock == null) {
+                    throw new IllegalArgumentException("The in-process service needs WireMock, or pass --target");
+                }
+                application = startService(wireMock.baseUrl());
+                target = "http://localhost:" + ((WebServerApplicationContext) application).getWebServer().getPort();
+            }
+            WebClient client = WebClient.builder()
+                    .baseUrl(target + options.getOrDefault("endpoint", "/api/payments/process"))
+                    .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                    .build();
+            LoadGenerator generator = new LoadGenerator(client, traffic, rate, arrivals, seed, maxOutstanding);
+
+            System.out.printf("Sending %s payments at %.0f/s (%s arrivals) to %s%n",
+                    options.containsKey("scale") ? traffic.size() + " synthetic" : "replayed", rate,
+                    arrivals.name().toLowerCase(), target);
+            if (!warmup.isZero()) {
+                generator.run(warmup, Duration.ofSeconds(30), null, System.out);
+            }
+            LoadReport report = generator.run(duration, Duration.ofSeconds(30), Duration.ofSeconds(5), System.out);
+
+            System.out.println();
+            report.print(System.out);
+            Path output = Path.of(options.getOrDefault("output", "target/load-test.json"));
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("options", options);
+            summary.putAll(report.toMap());
+            Files.createDirectories(output.toAbsolutePath().getParent());
+            new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output.toFile(), summary);
+            System.out.println("Report written to " + output);
+        } finally {
+            connections.dispose();
+            if (application != null) {
+                application.close();
+            }
+            if (wireMock != null) {
+                wireMock.stop();
+            }
+        }
+    }
+
+    static WireMockServer startWireMock(int port, String delay) {
+        WireMockServer wireMock = new WireMockServer(options()
+                .port(port)
+                .usingFilesUnderDirectory("wiremock")
+                .asynchronousResponseEnabled(true)
+                .asynchronousResponseThreads(50)
+                .containerThreads(200));
+        wireMock.start();
+        if (delay != null) {
+            int dash = delay.indexOf('-');
+            if (dash < 0) {
+                wireMock.setGlobalFixedDelay(Integer.parseInt(delay));
+            } else {
+                wireMock.updateGlobalSettings(GlobalSettings.builder()
+                        .delayDistribution(new UniformDistribution(Integer.parseInt(delay.substring(0, dash)),
+                                Integer.parseInt(delay.substring(dash + 1))))
+                        .build());
+            }
+        }
+        return wireMock;
+    }
+
+    private static ConfigurableApplicationContext startService(String wireMockUrl) {
+        // Devtools would otherwise restart this main method with the service's arguments
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        List<String> arguments = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN"));
+        arguments.addAll(downstreamArguments(wireMockUrl));
+        return new SpringApplicationBuilder(PaymentServiceApplication.class).run(arguments.toArray(String[]::new));
+    }
+
+    // Points the fraud check and the providers at the WireMock stubs
+    static List<String> downstreamArguments(String wireMockUrl) {
+        return List.of(
+                "--external.fraud-service-url=" + wireMockUrl + "/api/fraud-check",
+                "--external.payment.providers.paypal.url=" + wireMockUrl + "/v1/payments/payment",
+                "--external.payment.providers.stripe.url=" + wireMockUrl + "/v1/charges",
+                "--external.payment.providers.square.url=" + wireMockUrl + "/v2/payments");
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new TreeMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.paymentservice.loadtest;
+
+import com.example.paymentservice.PaymentServiceApplication;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Offers twice the payments the service can process, with every downstream call slowed down by WireMock, once without
+ * and once with the adaptive concurrency limit. Goodput is the rate of payments answered successfully within the SLO,
+ * measured from when they were due. Without the limit, payments queue for request threads and soon all of them are
+ * late; with it, the excess is turned away at once and the rest are still served on time.
+ */
+@Tag("benchmark")
+class OverloadBenchmarkTest {
+
+    // Fraud check and provider call each, so a payment takes about 500ms
+    private static final int DOWNSTREAM_DELAY_MS = 250;
+    private static final int REQUEST_THREADS = 20;
+    // Leaves request threads free to turn the excess away quickly
+    private static final int MAX_LIMIT = 15;
+    private static final double RATE = 80;
+    private static final long SLO_MICROS = 1_000_000;
+    private static final Duration WARMUP = Duration.ofSeconds(5);
+    private static final Duration DURATION = Duration.ofSeconds(20);
+
+    @Test
+    void goodputHoldsUnderOverloadWithTheLimit() {
+        WireMockServer wireMock = LoadTestHarness.startWireMock(0, Integer.toString(DOWNSTREAM_DELAY_MS));
+        try {
+            double unlimited = goodput(wireMock.baseUrl(), false);
+            double limited = goodput(wireMock.baseUrl(), true);
+
+            // The thread pool alone could serve 40 payments/s, the limit 30/s
+            assertThat(limited).isGreaterThan(2 * unlimited);
+            assertThat(limited).isGreaterThan(15);
+        } finally {
+            wireMock.stop();
+        }
+    }
+
+    private double goodput(String wireMockUrl, boolean limited) {
+        // Devtools would otherwise restart the service's main method
+        System.setProperty("spring.devtools.restart.enabled", "false");
+        List<String> arguments = new ArrayList<>(List.of(
+                "--server.port=0",
+                "--spring.jpa.show-sql=false",
+                "--logging.level.root=WARN",
+                "--server.tomcat.threads.max=" + REQUEST_THREADS,
+                "--payment.concurrency-limit.enabled=" + limited,
+                "--payment.concurrency-limit.max-limit=" + MAX_LIMIT));
+        arguments.addAll(LoadTestHarness.downstreamArguments(wireMockUrl));
+        ConfigurableApplicationContext application = new SpringApplicationBuilder(PaymentServiceApplication.class)
+                .run(arguments.toArray(String[]::new));
+        ConnectionProvider connections = ConnectionProvider.builder("overload").maxConnections(10_000)
+                .pendingAcquireMaxCount(-1).build();
+        try {
+            int port = ((WebServerApplicationContext) application).getWebServer().getPort();
+            WebClient client = WebClient.builder()
+                    .baseUrl("http://localhost:" + port + "/api/payments/process")
+                    .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)))
+                    .build();
+            LoadGenerator generator = new LoadGenerator(client, Traffic.load(Path.of("loadtest/payments.jsonl")),
+                    RATE, LoadGenerator.Arrivals.POISSON, 42, 10_000);
+            generator.run(WARMUP, Duration.ofSeconds(30), null, null);
+            LoadReport report = generator.run(DURATION, Duration.ofSeconds(60), null, null);
+
+            double goodput = report.totalLatencies().getCountBetweenValues(0, SLO_MICROS)
+                    / (double) DURATION.toSeconds();
+            System.out.printf("%s: %.1f payments/s within %dms, %d failed or shed%n",
+                    limited ? "adaptive limit" : "no limit", goodput, SLO_MICROS / 1000, report.totalFailures());
+            report.print(System.out);
+            return goodput;
+        } finally {
+            connections.dispose();
+            application.close();
+        }
+    }
+}
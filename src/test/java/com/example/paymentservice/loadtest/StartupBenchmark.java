@@ -0,0 +1,172 @@
+package com.example.paymentservice.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures time to first successful payment: a fresh JVM is started, polled until it reports ready, and sent one
+ * payment, timed from launching the process to that payment's answer. Each variant is started {@code runs} times and
+ * the medians are reported, for the executable jar with the default configuration and for the
+ * {@code mvn package -Pfast-start} build with the {@code fast-start} profile, then with AOT and then with AOT and
+ * class data sharing. The fraud service and providers are WireMock stubs from {@code wiremock/mappings}. Run with:
+ * <pre>
+ * ./mvnw verify -Pfast-start,startup-benchmark -DskipTests -Dstartup.args="--runs=5"
+ * </pre>
+ * Options, all {@code --name=value}: {@code runs} (3 by default), {@code jar} (the executable jar),
+ * {@code fast-start} (the fast-start build directory), {@code timeout} for one start (2m by default) and
+ * {@code output} (JSON report, {@code target/startup-benchmark.json} by default). Service logs are written next to
+ * the report.
+ */
+public final class StartupBenchmark {
+
+    private static final String PAYMENT = "{\"provider\": \"PAYPAL\", \"amount\": 10.0}";
+
+    private StartupBenchmark() {
+    }
+
+    private record Variant(String name, List<String> jvmArguments, Path jar, List<String> arguments, String readiness) {
+    }
+
+    private record Start(long readyNanos, long firstPaymentNanos) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = LoadTestHarness.parse(args);
+        int runs = Integer.parseInt(options.getOrDefault("runs", "3"));
+        Duration timeout = DurationStyle.detectAndParse(options.getOrDefault("timeout", "2m"));
+        Path jar = Path.of(options.getOrDefault("jar", "target/payment-service-1.0.0.jar"));
+        Path fastStart = Path.of(options.getOrDefault("fast-start", "target/fast-start"));
+        Path output = Path.of(options.getOrDefault("output", "target/startup-benchmark.json"));
+        Path logs = output.toAbsolutePath().getParent().resolve("startup-benchmark");
+        Files.createDirectories(logs);
+
+        List<Variant> variants = new ArrayList<>();
+        variants.add(new Variant("default", List.of(), jar, List.of(), "/actuator/health"));
+        Path fastStartJar = fastStart.resolve(jar.getFileName().toString().replace(".jar", "-fast-start.jar"));
+        Path archive = fastStart.resolve("application.jsa");
+        if (Files.exists(fastStartJar)) {
+            List<String> profile = List.of("--spring.profiles.active=fast-start");
+            String readiness = "/actuator/health/readiness";
+            variants.add(new Variant("fast-start", List.of(), fastStartJar, profile, readiness));
+            variants.add(new Variant("fast-start + AOT", List.of("-Dspring.aot.enabled=true"), fastStartJar,
+                    profile, readiness));
+            if (Files.exists(archive)) {
+                variants.add(new Variant("fast-start + AOT + CDS", List.of("-Dspring.aot.enabled=true",
+                        "-XX:SharedArchiveFile=" + archive, "-Xshare:on"), fastStartJar, profile, readiness));
+            }
+        } else {
+            System.out.println("No fast-start build in " + fastStart + ", build it with -Pfast-start to compare");
+        }
+
+        WireMockServer wireMock = LoadTestHarness.startWireMock(0, null);
+        Map<String, Object> results = new LinkedHashMap<>();
+        try (HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(1)).build()) {
+            System.out.printf("%-24s %12s %16s %18s%n", "variant", "ready ms", "1st payment ms", "ready+payment ms");
+            for (Variant variant : variants) {
+                long[] ready = new long[runs];
+                long[] firstPayment = new long[runs];
+                for (int run = 0; run < runs; run++) {
+                    Path log = logs.resolve(variant.name().replaceAll("\\W+", "-") + "-" + run + ".log");
+                    Start start = start(client, variant, wireMock.baseUrl(), timeout, log);
+                    ready[run] = start.readyNanos();
+                    firstPayment[run] = start.firstPaymentNanos();
+                }
+                double readyMillis = medianMillis(ready);
+                double firstPaymentMillis = medianMillis(firstPayment);
+                System.out.printf("%-24s %12.0f %16.1f %18.0f%n", variant.name(), readyMillis,
+                        firstPaymentMillis - readyMillis, firstPaymentMillis);
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("runs", runs);
+                result.put("readyMillis", readyMillis);
+                result.put("firstPaymentMillis", firstPaymentMillis);
+                results.put(variant.name(), result);
+            }
+        } finally {
+            wireMock.stop();
+        }
+        new ObjectMapper().writerWithDefaultPrettyPrinter().writeValue(output.toFile(), results);
+        System.out.println("Report written to " + output + ", service logs to " + logs);
+    }
+
+    private static Start start(HttpClient client, Variant variant, String wireMockUrl, Duration timeout, Path log)
+            throws IOException, InterruptedException {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(variant.jvmArguments());
+        command.add("-jar");
+        command.add(variant.jar().toString());
+        command.add("--server.port=" + port);
+        command.addAll(variant.arguments());
+        command.addAll(LoadTestHarness.downstreamArguments(wireMockUrl));
+        String base = "http://localhost:" + port;
+
+        long launched = System.nanoTime();
+        long deadline = launched + timeout.toNanos();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        try {
+            // Polled like a load balancer's readiness probe, so no payment is sent before the service asks for them
+            while (status(client, HttpRequest.newBuilder(URI.create(base + variant.readiness())).GET()) != 200) {
+                if (!process.isAlive() || System.nanoTime() > deadline) {
+                    throw new IllegalStateException(variant.name() + " did not become ready, see " + log);
+                }
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            long ready = System.nanoTime() - launched;
+            int status = status(client, HttpRequest.newBuilder(URI.create(base + "/api/payments/process"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(PAYMENT)));
+            if (status != 200) {
+                throw new IllegalStateException(variant.name() + " answered the first payment with " + status
+                        + ", see " + log);
+            }
+            return new Start(ready, System.nanoTime() - launched);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    // The status of the answer, or -1 while nothing listens
+    private static int status(HttpClient client, HttpRequest.Builder request) throws InterruptedException {
+        try {
+            return client.send(request.timeout(Duration.ofSeconds(30)).build(),
+                    HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static double medianMillis(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        long median = sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+        return median / 1_000_000.0;
+    }
+}
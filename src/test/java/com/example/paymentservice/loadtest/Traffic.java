@@ -0,0 +1,88 @@
+package com.example.paymentservice.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Payment requests to send, read from a JSON lines file with one {@code /api/payments/process} body per line. Each
+ * request is labelled with its provider, or {@code AUTO} for routed payments.
+ */
+final class Traffic {
+
+    static final String AUTO = "AUTO";
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final List<Payment> payments;
+
+    private Traffic(List<Payment> payments) {
+        if (payments.isEmpty()) {
+            throw new IllegalArgumentException("No payment requests to send");
+        }
+        this.payments = payments;
+    }
+
+    static Traffic load(Path file) {
+        List<Payment> payments = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(file)) {
+                if (!line.isBlank()) {
+                    payments.add(Payment.of(objectMapper.readTree(line)));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read traffic from " + file, e);
+        }
+        return new Traffic(payments);
+    }
+
+    /**
+     * A synthetic version of this traffic with {@code count} requests, drawn at random from it with their amounts
+     * varied by a few percent, so the provider mix and amount distribution are kept without replaying the same
+     * amounts. The same seed always gives the same requests.
+     */
+    Traffic scaled(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Payment> scaled = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ObjectNode body = payments.get(random.nextInt(payments.size())).body().deepCopy();
+            double factor = Math.exp(0.05 * random.nextGaussian());
+            body.put("amount", Math.round(body.path("amount").asDouble() * factor * 100) / 100.0);
+            scaled.add(Payment.of(body));
+        }
+        return new Traffic(scaled);
+    }
+
+    // Requests past the end start over from the first
+    Payment get(long index) {
+        return payments.get((int) (index % payments.size()));
+    }
+
+    int size() {
+        return payments.size();
+    }
+
+    record Payment(String label, ObjectNode body, byte[] json) {
+
+        static Payment of(JsonNode node) {
+            if (!(node instanceof ObjectNode body)) {
+                throw new IllegalArgumentException("Expected a JSON object, got " + node);
+            }
+            String label = AUTO.equals(body.path("routing").asText()) ? AUTO : body.path("provider").asText("UNKNOWN");
+            try {
+                return new Payment(label, body, objectMapper.writeValueAsBytes(body));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.paymentservice.model;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import com.fasterxml.jackson.databind.exc.UnrecognizedPropertyException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Currency;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MoneyTest {
+
+    private static final Currency JPY = Currency.getInstance("JPY");
+    private static final Currency BHD = Currency.getInstance("BHD");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void parsesDecimalsIntoMinorUnits() {
+        assertThat(Money.parse("19.99")).isEqualTo(new Money(1999, Money.DEFAULT_CURRENCY));
+        assertThat(Money.parse(" 19.9 ").minorUnits()).isEqualTo(1990);
+        assertThat(Money.parse("-0.05").minorUnits()).isEqualTo(-5);
+        assertThat(Money.parse("+7").minorUnits()).isEqualTo(700);
+        assertThat(Money.parse(".5").minorUnits()).isEqualTo(50);
+        assertThat(Money.parse("1.5e3").minorUnits()).isEqualTo(150_000);
+        assertThat(Money.parse("1250E-2").minorUnits()).isEqualTo(1250);
+        assertThat(Money.parse("12.5000").minorUnits()).isEqualTo(1250);
+        assertThat(Money.parse("500", JPY).minorUnits()).isEqualTo(500);
+        assertThat(Money.parse("1.234", BHD).minorUnits()).isEqualTo(1234);
+        // Trailing zeros past a long's digits are still exact
+        assertThat(Money.parse("0.10000000000000000000000").minorUnits()).isEqualTo(10);
+        assertThat(Money.parse("922337203685477.58").minorUnits()).isEqualTo(92_233_720_368_547_758L);
+    }
+
+    @Test
+    void rejectsAmountsTheCurrencyCannotHold() {
+        assertThatThrownBy(() -> Money.parse("10.005")).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.parse("10.5", JPY)).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.parse("0.00001")).isInstanceOf(ArithmeticException.class);
+        // Parsed amounts are held at four decimal places, so the largest is about 922 trillion
+        assertThatThrownBy(() -> Money.parse("922337203685478")).isInstanceOf(ArithmeticException.class);
+        assertThatThrownBy(() -> Money.parse("1e100")).isInstanceOf(ArithmeticException.class);
+        for (String text : new String[]{"", "-", "1.2.3", "1e", "e5", "12a", "NaN", "1,5"}) {
+            assertThatThrownBy(() -> Money.parse(text)).as(text).isInstanceOf(NumberFormatException.class);
+        }
+    }
+
+    @Test
+    void formatsWithTheCurrencysDecimalPlaces() {
+        assertThat(Money.of(1990, 2).toPlainString()).isEqualTo("19.90");
+        assertThat(Money.of(-5, 2).toPlainString()).isEqualTo("-0.05");
+        assertThat(Money.of(25, 0).toPlainString()).isEqualTo("25.00");
+        assertThat(Money.of(500, 0, JPY).toPlainString()).isEqualTo("500");
+        assertThat(Money.of(1, 3, BHD).toString()).isEqualTo("0.001 BHD");
+        assertThat(new Money(Long.MIN_VALUE, Money.DEFAULT_CURRENCY).toPlainString())
+                .isEqualTo("-92233720368547758.08");
+    }
+
+    @Test
+    void readsAmountsWithAnOptionalCurrency() {
+        assertThat(Money.valueOf("19.99")).isEqualTo(Money.of(1999, 2));
+        assertThat(Money.valueOf(" 1500000 JPY ")).isEqualTo(Money.of(1_500_000, 0, JPY));
+        assertThat(Money.valueOf(Money.of(1235, 3, BHD).toString())).isEqualTo(Money.of(1235, 3, BHD));
+        assertThatThrownBy(() -> Money.valueOf("10 XYZ")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Money.valueOf("0.5 JPY")).isInstanceOf(ArithmeticException.class);
+    }
+
+    @Test
+    void readsAndWritesFlatPaymentRequests() throws Exception {
+        PaymentRequest request = objectMapper.readValue("{\"provider\": \"STRIPE\", \"amount\": 149.99}",
+                PaymentRequest.class);
+        assertThat(request.getProvider()).isEqualTo(PaymentProviderType.STRIPE);
+        assertThat(request.getAmount()).isEqualTo(Money.of(14999, 2));
+
+        request = objectMapper.readValue("{\"amount\": \"500\", \"routing\": \"AUTO\", \"currency\": \"JPY\", "
+                + "\"allowFailover\": true}", PaymentRequest.class);
+        assertThat(request.getAmount()).isEqualTo(Money.of(500, 0, JPY));
+        assertThat(request.getRouting()).isEqualTo(PaymentRouting.AUTO);
+        assertThat(request.isAllowFailover()).isTrue();
+
+        request = objectMapper.readValue("{\"provider\": \"VENMO\", \"amount\": null}", PaymentRequest.class);
+        assertThat(request.getAmount()).isNull();
+        assertThat(request.isProviderKnown()).isFalse();
+
+        String json = objectMapper.writeValueAsString(objectMapper.readValue(
+                "{\"provider\": \"PAYPAL\", \"amount\": 12.5}", PaymentRequest.class));
+        assertThat(json).contains("\"amount\":12.50,\"currency\":\"USD\"");
+        assertThat(objectMapper.writeValueAsString(Money.of(500, 0, JPY)))
+                .isEqualTo("{\"amount\":500,\"currency\":\"JPY\"}");
+    }
+
+    @Test
+    void rejectsMalformedPaymentRequests() {
+        assertThatThrownBy(() -> objectMapper.readValue("{\"amount\": 10.001}", PaymentRequest.class))
+                .isInstanceOf(InvalidFormatException.class);
+        assertThatThrownBy(() -> objectMapper.readValue("{\"amount\": \"ten\"}", PaymentRequest.class))
+                .isInstanceOf(InvalidFormatException.class);
+        assertThatThrownBy(() -> objectMapper.readValue("{\"amount\": 1, \"currency\": \"XXX\"}",
+                PaymentRequest.class)).isInstanceOf(InvalidFormatException.class);
+        assertThatThrownBy(() -> objectMapper.readValue("{\"routing\": \"FASTEST\"}", PaymentRequest.class))
+                .isInstanceOf(InvalidFormatException.class);
+        assertThatThrownBy(() -> objectMapper.readValue("{\"amount\": 1, \"tip\": 2}", PaymentRequest.class))
+                .isInstanceOf(UnrecognizedPropertyException.class);
+    }
+}
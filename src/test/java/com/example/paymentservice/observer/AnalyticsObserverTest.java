@@ -0,0 +1,162 @@
+package com.example.paymentservice.observer;
+
+import com.example.paymentservice.config.PaymentAnalyticsProperties;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentAnalytics;
+import com.example.paymentservice.model.PaymentTransaction;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class AnalyticsObserverTest {
+
+    private final AtomicLong millis = new AtomicLong(Duration.ofDays(1).toMillis());
+
+    private final Clock clock = new Clock() {
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis.get());
+        }
+    };
+
+    @Test
+    void aggregatesByProviderAndWindow() {
+        AnalyticsObserver observer = observer();
+        observer.update(transaction("PayPalProvider", Money.of(10, 0), true));
+        observer.update(transaction("PayPalProvider", Money.of(30, 0), false));
+        millis.addAndGet(Duration.ofMinutes(10).toMillis());
+        observer.update(transaction("StripeProvider", Money.of(20, 0), true));
+
+        PaymentAnalytics lastMinute = observer.snapshot(Duration.ofMinutes(1));
+        assertThat(lastMinute.providers()).containsOnlyKeys("StripeProvider");
+        assertThat(lastMinute.total().count()).isEqualTo(1);
+
+        PaymentAnalytics lastHour = observer.snapshot(Duration.ofHours(1));
+        PaymentAnalytics.Summary payPal = lastHour.providers().get("PayPalProvider");
+        assertThat(payPal.count()).isEqualTo(2);
+        assertThat(payPal.successRate()).isEqualTo(0.5);
+        assertThat(payPal.amounts().get("USD").total()).isEqualTo(40.0);
+        assertThat(lastHour.total().count()).isEqualTo(3);
+        assertThat(lastHour.total().amounts().get("USD").total()).isEqualTo(60.0);
+        assertThat(lastHour.total().amounts().get("USD").quantiles().get("p50")).isCloseTo(20.0, within(0.2));
+
+        // Past the retention, the first slice has been dropped
+        millis.addAndGet(Duration.ofMinutes(55).toMillis());
+        assertThat(observer.snapshot(Duration.ofDays(1)).providers()).containsOnlyKeys("StripeProvider");
+    }
+
+    @Test
+    void quantilesAreWithinOnePercentAcrossMergedSlices() {
+        AnalyticsObserver observer = observer();
+        for (int i = 1; i <= 10_000; i++) {
+            observer.update(transaction("SquareProvider", Money.of(i, 0), true));
+            if (i % 1000 == 0) {
+                millis.addAndGet(Duration.ofMinutes(1).toMillis());
+            }
+        }
+
+        PaymentAnalytics.Summary total = observer.snapshot(Duration.ofHours(1)).total();
+
+        assertThat(total.count()).isEqualTo(10_000);
+        Map<String, Double> quantiles = total.amounts().get("USD").quantiles();
+        assertThat(quantiles.get("p50")).isCloseTo(5_000, within(50.0));
+        assertThat(quantiles.get("p90")).isCloseTo(9_000, within(90.0));
+        assertThat(quantiles.get("p99")).isCloseTo(9_900, within(99.0));
+    }
+
+    @Test
+    void concurrentUpdatesAreAllCounted() throws Exception {
+        AnalyticsObserver observer = observer();
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            done.add(threads.submit(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    observer.update(transaction("PayPalProvider", Money.of(125, 2), true));
+                }
+            }));
+        }
+        for (Future<?> future : done) {
+            future.get();
+        }
+        threads.shutdown();
+
+        PaymentAnalytics.Summary payPal = observer.snapshot(Duration.ofMinutes(1)).providers().get("PayPalProvider");
+        assertThat(payPal.count()).isEqualTo(80_000);
+        assertThat(payPal.amounts().get("USD").total()).isEqualTo(100_000.0);
+    }
+
+    @Test
+    void keepsAmountsInDifferentCurrenciesApart() {
+        AnalyticsObserver observer = observer();
+        Currency yen = Currency.getInstance("JPY");
+        observer.update(transaction("PayPalProvider", Money.of(10, 0), true));
+        observer.update(transaction("PayPalProvider", Money.of(1500, 0, yen), true));
+        observer.update(transaction("StripeProvider", Money.of(2500, 0, yen), true));
+
+        PaymentAnalytics.Summary total = observer.snapshot(Duration.ofMinutes(1)).total();
+
+        assertThat(total.count()).isEqualTo(3);
+        assertThat(total.amounts()).containsOnlyKeys("USD", "JPY");
+        assertThat(total.amounts().get("USD").count()).isEqualTo(1);
+        assertThat(total.amounts().get("USD").total()).isEqualTo(10.0);
+        assertThat(total.amounts().get("JPY").count()).isEqualTo(2);
+        assertThat(total.amounts().get("JPY").total()).isEqualTo(4000.0);
+        assertThat(total.amounts().get("JPY").quantiles().get("p99")).isCloseTo(2500, within(25.0));
+    }
+
+    @Test
+    void countsLateTransactionsInTheSliceTheyWereCreatedIn() {
+        AnalyticsObserver observer = observer();
+        PaymentTransaction backlogged = transaction("PayPalProvider", Money.of(10, 0), true);
+        PaymentTransaction expired = transaction("PayPalProvider", Money.of(20, 0), true);
+        expired.setCreatedAt(clock.instant().minus(Duration.ofHours(2)));
+        // Observed ten minutes late, as under an observer backlog or a journal replay
+        millis.addAndGet(Duration.ofMinutes(10).toMillis());
+        observer.update(backlogged);
+        observer.update(expired);
+
+        assertThat(observer.snapshot(Duration.ofMinutes(1)).providers()).isEmpty();
+        PaymentAnalytics.Summary lastHour = observer.snapshot(Duration.ofHours(1)).total();
+        assertThat(lastHour.count()).isEqualTo(1);
+        assertThat(lastHour.amounts().get("USD").total()).isEqualTo(10.0);
+    }
+
+    private AnalyticsObserver observer() {
+        return new AnalyticsObserver(new PaymentAnalyticsProperties(), clock);
+    }
+
+    private PaymentTransaction transaction(String provider, Money amount, boolean successful) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setCreatedAt(clock.instant());
+        transaction.setProvider(provider);
+        transaction.setAmount(amount);
+        transaction.setSuccessful(successful);
+        return transaction;
+    }
+}
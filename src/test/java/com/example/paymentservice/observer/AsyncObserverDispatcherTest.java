@@ -0,0 +1,197 @@
+package com.example.paymentservice.observer;
+
+import com.example.paymentservice.config.ObserverDispatchProperties;
+import com.example.paymentservice.model.PaymentTransaction;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncObserverDispatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void slowObserverDoesNotDelayPublisherOrOtherObservers() throws Exception {
+        AsyncObserverDispatcher dispatcher = dispatcher(16, OverflowPolicy.BLOCK);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingObserver slow = new RecordingObserver(release);
+        RecordingObserver fast = new RecordingObserver(null);
+        dispatcher.registerObserver(slow);
+        dispatcher.registerObserver(fast);
+
+        long start = System.nanoTime();
+        for (long id = 1; id <= 10; id++) {
+            dispatcher.notifyObservers(transaction(id));
+        }
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(100);
+
+        awaitSize(fast.received, 10);
+        assertThat(slow.received).hasSizeLessThanOrEqualTo(1);
+
+        release.countDown();
+        dispatcher.destroy();
+    }
+
+    @Test
+    void deliversInOrderAndDrainsOnShutdown() {
+        AsyncObserverDispatcher dispatcher = dispatcher(4, OverflowPolicy.SPILL);
+        RecordingObserver observer = new RecordingObserver(null);
+        observer.delayMillis = 2;
+        dispatcher.registerObserver(observer);
+
+        for (long id = 1; id <= 200; id++) {
+            dispatcher.notifyObservers(transaction(id));
+        }
+        dispatcher.destroy();
+
+        assertThat(observer.received).hasSize(200);
+        for (int i = 0; i < 200; i++) {
+            assertThat(observer.received.get(i)).isEqualTo(i + 1L);
+        }
+        assertThat(meterRegistry.get("payment.observer.spilled").counter().count()).isPositive();
+    }
+
+    @Test
+    void dropOldestKeepsTheNewestTransactions() throws Exception {
+        AsyncObserverDispatcher dispatcher = dispatcher(2, OverflowPolicy.DROP_OLDEST);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingObserver observer = new RecordingObserver(release);
+        dispatcher.registerObserver(observer);
+
+        dispatcher.notifyObservers(transaction(1));
+        awaitSize(observer.received, 1);
+        for (long id = 2; id <= 10; id++) {
+            dispatcher.notifyObservers(transaction(id));
+        }
+        release.countDown();
+        dispatcher.destroy();
+
+        assertThat(observer.received).containsExactly(1L, 9L, 10L);
+        assertThat(meterRegistry.get("payment.observer.dropped").counter().count()).isEqualTo(7);
+    }
+
+    @Test
+    void publisherBacklogIsBoundedUnderBlock() throws Exception {
+        AsyncObserverDispatcher dispatcher = dispatcher(2, OverflowPolicy.BLOCK);
+        CountDownLatch release = new CountDownLatch(1);
+        RecordingObserver observer = new RecordingObserver(release);
+        dispatcher.registerObserver(observer);
+
+        AtomicInteger handedOver = new AtomicInteger();
+        Thread flusher = new Thread(() -> {
+            for (long id = 1; id <= 20; id++) {
+                PaymentTransaction transaction = transaction(id);
+                dispatcher.publisher().execute(() -> dispatcher.notifyObservers(transaction));
+                handedOver.incrementAndGet();
+            }
+        });
+        flusher.start();
+        Thread.sleep(300);
+        // One with the observer, two in its queue, one with the publisher thread and two in the publisher's queue
+        assertThat(handedOver.get()).isLessThan(20);
+        assertThat(meterRegistry.get("payment.observer.publish.pending").gauge().value()).isLessThanOrEqualTo(2);
+
+        release.countDown();
+        flusher.join(5000);
+        dispatcher.destroy();
+        assertThat(observer.received).hasSize(20);
+        for (int i = 0; i < 20; i++) {
+            assertThat(observer.received.get(i)).isEqualTo(i + 1L);
+        }
+    }
+
+    @Test
+    void publishersRacingShutdownLoseNothing() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            AsyncObserverDispatcher dispatcher = dispatcher(2, OverflowPolicy.BLOCK);
+            RecordingObserver observer = new RecordingObserver(null);
+            dispatcher.registerObserver(observer);
+
+            ExecutorService publishers = Executors.newFixedThreadPool(4);
+            for (int p = 0; p < 4; p++) {
+                long first = p * 250L;
+                publishers.execute(() -> {
+                    for (long id = first; id < first + 250; id++) {
+                        dispatcher.notifyObservers(transaction(id));
+                    }
+                });
+            }
+            dispatcher.destroy();
+            publishers.shutdown();
+            assertThat(publishers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(observer.received).hasSize(1000);
+        }
+    }
+
+    @Test
+    void observersOfTheSameClassHaveTheirOwnMeters() {
+        AsyncObserverDispatcher dispatcher = dispatcher(4, OverflowPolicy.BLOCK);
+        RecordingObserver first = new RecordingObserver(null);
+        RecordingObserver second = new RecordingObserver(null);
+        dispatcher.registerObserver(first);
+        dispatcher.registerObserver(second);
+
+        assertThat(meterRegistry.find("payment.observer.queued").tag("observer", "RecordingObserver").gauges())
+                .hasSize(2);
+
+        dispatcher.unregisterObserver(first);
+        assertThat(meterRegistry.find("payment.observer.queued").gauges()).hasSize(1);
+        dispatcher.destroy();
+    }
+
+    private AsyncObserverDispatcher dispatcher(int capacity, OverflowPolicy policy) {
+        ObserverDispatchProperties properties = new ObserverDispatchProperties();
+        properties.setQueueCapacity(capacity);
+        properties.setOverflowPolicy(policy);
+        properties.setShutdownTimeout(Duration.ofSeconds(5));
+        return new AsyncObserverDispatcher(properties, meterRegistry);
+    }
+
+    private static PaymentTransaction transaction(long id) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setId(id);
+        return transaction;
+    }
+
+    private static void awaitSize(List<Long> list, int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (list.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(list).hasSize(size);
+    }
+
+    private static final class RecordingObserver implements Observer {
+        private final List<Long> received = new CopyOnWriteArrayList<>();
+        private final CountDownLatch release;
+        private long delayMillis;
+
+        private RecordingObserver(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void update(PaymentTransaction transaction) {
+            received.add(transaction.getId());
+            try {
+                if (release != null) {
+                    release.await();
+                }
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
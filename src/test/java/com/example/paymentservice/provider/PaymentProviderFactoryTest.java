@@ -0,0 +1,158 @@
+package com.example.paymentservice.provider;
+
+import com.example.paymentservice.config.PaymentProviderProperties;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Builds providers from properties alone, against WireMock.
+ */
+class PaymentProviderFactoryTest {
+
+    private static final WireMockServer wireMock = new WireMockServer(options().dynamicPort());
+
+    static {
+        wireMock.start();
+    }
+
+    private PaymentProviderProperties properties;
+    private PaymentHttpClients httpClients;
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @BeforeEach
+    void setUp() {
+        wireMock.resetAll();
+        wireMock.stubFor(post(urlPathMatching("/.*")).willReturn(aResponse().withStatus(200).withBody("{}")));
+        properties = new PaymentProviderProperties();
+        for (PaymentProviderType type : PaymentProviderType.values()) {
+            properties.getProvider(type).setUrl(wireMock.baseUrl() + "/" + type.name().toLowerCase());
+        }
+    }
+
+    @AfterEach
+    void closeClients() throws Exception {
+        if (httpClients != null) {
+            httpClients.destroy();
+        }
+    }
+
+    @Test
+    void regionalEndpointsTakeTurns() {
+        properties.getProvider(PaymentProviderType.STRIPE)
+                .setEndpoints(List.of(wireMock.baseUrl() + "/us", wireMock.baseUrl() + "/eu"));
+        PaymentProviderFactory factory = factory();
+
+        for (int i = 0; i < 4; i++) {
+            factory.getPaymentProvider(PaymentProviderType.STRIPE).processPayment(request(PaymentProviderType.STRIPE));
+        }
+        for (int i = 0; i < 2; i++) {
+            factory.getReactivePaymentProvider(PaymentProviderType.STRIPE)
+                    .processPaymentReactive(request(PaymentProviderType.STRIPE)).block();
+        }
+
+        wireMock.verify(3, postRequestedFor(urlEqualTo("/us")));
+        wireMock.verify(3, postRequestedFor(urlEqualTo("/eu")));
+        wireMock.verify(0, postRequestedFor(urlEqualTo("/stripe")));
+    }
+
+    @Test
+    void requestsAreWrittenWithTheProvidersSerializationSettings() {
+        PaymentProviderProperties.SerializationSettings serialization =
+                properties.getProvider(PaymentProviderType.SQUARE).getSerialization();
+        serialization.setPropertyNaming(PaymentProviderProperties.PropertyNaming.SNAKE_CASE);
+        serialization.setIncludeNulls(false);
+        PaymentProviderFactory factory = factory();
+
+        PaymentRequest request = request(PaymentProviderType.SQUARE);
+        request.setRouting(null);
+        factory.getPaymentProvider(PaymentProviderType.SQUARE).processPayment(request);
+        factory.getReactivePaymentProvider(PaymentProviderType.SQUARE).processPaymentReactive(request).block();
+        factory.getPaymentProvider(PaymentProviderType.PAYPAL).processPayment(request(PaymentProviderType.PAYPAL));
+
+        wireMock.verify(2, postRequestedFor(urlEqualTo("/square")).withRequestBody(equalToJson(
+                "{\"provider\": \"SQUARE\", \"allow_failover\": false, \"amount\": 12.50, \"currency\": \"USD\"}")));
+        wireMock.verify(postRequestedFor(urlEqualTo("/paypal")).withRequestBody(equalToJson(
+                "{\"provider\": \"PAYPAL\", \"routing\": \"PINNED\", \"allowFailover\": false, \"amount\": 12.50,"
+                        + " \"currency\": \"USD\"}")));
+    }
+
+    @Test
+    void providerNamesDefaultFromTheirType() {
+        properties.getProvider(PaymentProviderType.PAYPAL).setName("PayPalProvider");
+        PaymentProviderFactory factory = factory();
+
+        assertThat(factory.getPaymentProvider(PaymentProviderType.PAYPAL).getName()).isEqualTo("PayPalProvider");
+        assertThat(factory.getPaymentProvider(PaymentProviderType.STRIPE).getName()).isEqualTo("StripeProvider");
+    }
+
+    @Test
+    void aProviderBeanReplacesTheConfiguredOne() {
+        List<PaymentRequest> processed = new ArrayList<>();
+        PaymentProvider custom = new PaymentProvider() {
+            @Override
+            public PaymentProviderType getType() {
+                return PaymentProviderType.PAYPAL;
+            }
+
+            @Override
+            public void processPayment(PaymentRequest request) {
+                processed.add(request);
+            }
+        };
+        httpClients = new PaymentHttpClients(properties, new ObjectMapper(), new SimpleMeterRegistry());
+        PaymentProviderFactory factory = new PaymentProviderFactory(properties, httpClients, List.of(custom));
+
+        factory.getReactivePaymentProvider(PaymentProviderType.PAYPAL)
+                .processPaymentReactive(request(PaymentProviderType.PAYPAL)).block();
+
+        assertThat(factory.getPaymentProvider(PaymentProviderType.PAYPAL)).isSameAs(custom);
+        assertThat(processed).hasSize(1);
+        wireMock.verify(0, postRequestedFor(urlEqualTo("/paypal")));
+    }
+
+    @Test
+    void aProviderWithoutEndpointsFailsStartup() {
+        properties.getProvider(PaymentProviderType.SQUARE).setUrl(null);
+
+        assertThatThrownBy(this::factory)
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("external.payment.providers.square.url");
+    }
+
+    private PaymentProviderFactory factory() {
+        httpClients = new PaymentHttpClients(properties, new ObjectMapper(), new SimpleMeterRegistry());
+        return new PaymentProviderFactory(properties, httpClients, List.of());
+    }
+
+    private static PaymentRequest request(PaymentProviderType provider) {
+        PaymentRequest request = new PaymentRequest();
+        request.setProvider(provider);
+        request.setAmount(Money.of(1250, 2));
+        return request;
+    }
+}
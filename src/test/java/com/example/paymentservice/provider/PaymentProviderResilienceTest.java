@@ -0,0 +1,172 @@
+package com.example.paymentservice.provider;
+
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import com.github.tomakehurst.wiremock.http.Fault;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Degrades the Square stub with WireMock delays and faults and checks that PayPal payments are unaffected.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.threads.max=20",
+        "external.payment.providers.square.bulkhead.max-concurrent-calls=5",
+        "external.payment.providers.square.circuit-breaker.sliding-window-size=10",
+        "external.payment.providers.square.circuit-breaker.minimum-number-of-calls=5",
+        "external.payment.providers.square.circuit-breaker.wait-duration-in-open-state=1m"
+})
+class PaymentProviderResilienceTest {
+
+    private static final int SQUARE_DELAY_MS = 5000;
+
+    private static final WireMockServer wireMock = new WireMockServer(options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("wiremock")
+            .asynchronousResponseEnabled(true)
+            .containerThreads(100));
+
+    static {
+        wireMock.start();
+    }
+
+    @DynamicPropertySource
+    static void externalServices(DynamicPropertyRegistry registry) {
+        String baseUrl = wireMock.baseUrl();
+        registry.add("external.fraud-service-url", () -> baseUrl + "/api/fraud-check");
+        registry.add("external.payment.providers.paypal.url", () -> baseUrl + "/v1/payments/payment");
+        registry.add("external.payment.providers.stripe.url", () -> baseUrl + "/v1/charges");
+        registry.add("external.payment.providers.square.url", () -> baseUrl + "/v2/payments");
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private PaymentProviderResilience providerResilience;
+
+    @BeforeEach
+    void resetState() {
+        // The default pooled client caps connections per host, which would queue the test's own requests
+        restTemplate.getRestTemplate().setRequestFactory(new JdkClientHttpRequestFactory(
+                HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()));
+        wireMock.resetToDefaultMappings();
+        for (PaymentProviderType providerType : PaymentProviderType.values()) {
+            providerResilience.circuitBreaker(providerType).reset();
+        }
+    }
+
+    @Test
+    void slowSquareDoesNotStarvePayPal() throws Exception {
+        for (int i = 0; i < 10; i++) {
+            pay(PaymentProviderType.PAYPAL);
+            pay(PaymentProviderType.SQUARE);
+        }
+        wireMock.stubFor(post(urlEqualTo("/v2/payments"))
+                .willReturn(aResponse().withStatus(200).withFixedDelay(SQUARE_DELAY_MS)));
+
+        ExecutorService squareClients = Executors.newFixedThreadPool(40);
+        List<Future<ResponseEntity<String>>> squareResponses = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            squareResponses.add(squareClients.submit(() -> pay(PaymentProviderType.SQUARE)));
+        }
+        Thread.sleep(500);
+
+        long[] payPalLatencies = new long[20];
+        for (int i = 0; i < payPalLatencies.length; i++) {
+            long start = System.nanoTime();
+            assertThat(pay(PaymentProviderType.PAYPAL).getStatusCode()).isEqualTo(HttpStatus.OK);
+            payPalLatencies[i] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        }
+
+        long rejected = 0;
+        for (Future<ResponseEntity<String>> response : squareResponses) {
+            if (response.get().getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) {
+                rejected++;
+            }
+        }
+        squareClients.shutdown();
+
+        // Only the bulkhead's five calls may wait on Square, the rest are rejected without touching a thread for long
+        assertThat(rejected).isGreaterThanOrEqualTo(30);
+        Arrays.sort(payPalLatencies);
+        assertThat(payPalLatencies[payPalLatencies.length / 2]).isLessThan(500);
+        assertThat(payPalLatencies[payPalLatencies.length - 1]).isLessThan(SQUARE_DELAY_MS);
+    }
+
+    @Test
+    void failingSquareOpensItsCircuitAndFailsFast() {
+        wireMock.stubFor(post(urlEqualTo("/v2/payments"))
+                .willReturn(aResponse().withFault(Fault.CONNECTION_RESET_BY_PEER)));
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(pay(PaymentProviderType.SQUARE).getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        assertThat(providerResilience.circuitBreaker(PaymentProviderType.SQUARE).getState())
+                .isEqualTo(CircuitBreaker.State.OPEN);
+
+        int squareCallsBefore = wireMock.findAll(postRequestedFor(urlEqualTo("/v2/payments"))).size();
+        ResponseEntity<String> rejected = pay(PaymentProviderType.SQUARE);
+        assertThat(rejected.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(rejected.getBody()).contains("Payment provider unavailable");
+        assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/v2/payments")))).hasSize(squareCallsBefore);
+
+        assertThat(pay(PaymentProviderType.PAYPAL).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(providerResilience.circuitBreaker(PaymentProviderType.PAYPAL).getState())
+                .isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    void clientErrorsFromSquareDoNotOpenItsCircuit() {
+        wireMock.stubFor(post(urlEqualTo("/v2/payments")).willReturn(aResponse().withStatus(400)));
+        int squareCallsBefore = wireMock.findAll(postRequestedFor(urlEqualTo("/v2/payments"))).size();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(pay(PaymentProviderType.SQUARE).getStatusCode()).isNotEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        }
+        CircuitBreaker circuitBreaker = providerResilience.circuitBreaker(PaymentProviderType.SQUARE);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isZero();
+        assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/v2/payments")))).hasSize(squareCallsBefore + 10);
+    }
+
+    private ResponseEntity<String> pay(PaymentProviderType providerType) {
+        PaymentRequest request = new PaymentRequest();
+        request.setProvider(providerType);
+        request.setAmount(Money.of(25, 0));
+        return restTemplate.postForEntity("/api/payments/process", request, String.class);
+    }
+}
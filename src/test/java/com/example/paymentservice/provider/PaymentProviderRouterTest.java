@@ -0,0 +1,121 @@
+package com.example.paymentservice.provider;
+
+import com.example.paymentservice.config.PaymentProviderProperties;
+import com.example.paymentservice.config.ProviderRoutingProperties;
+import com.example.paymentservice.model.PaymentProviderType;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+
+import static com.example.paymentservice.model.PaymentProviderType.PAYPAL;
+import static com.example.paymentservice.model.PaymentProviderType.SQUARE;
+import static com.example.paymentservice.model.PaymentProviderType.STRIPE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PaymentProviderRouterTest {
+
+    private final PaymentProviderResilience resilience =
+            new PaymentProviderResilience(new PaymentProviderProperties(), new SimpleMeterRegistry());
+
+    @Test
+    void prefersTheFastestProvider() {
+        PaymentProviderRouter router = router(Duration.ofSeconds(10));
+        for (int i = 0; i < 5; i++) {
+            router.track(PAYPAL, () -> sleep(30));
+            router.track(STRIPE, () -> sleep(2));
+            router.track(SQUARE, () -> sleep(15));
+        }
+
+        assertThat(router.choose(0)).isEqualTo(STRIPE);
+        assertThat(router.choose(PaymentProviderRouter.mask(STRIPE))).isEqualTo(SQUARE);
+    }
+
+    @Test
+    void spreadsLoadAcrossProvidersWithCallsInFlight() {
+        PaymentProviderRouter router = router(Duration.ofSeconds(10));
+        Disposable paypal = router.track(PAYPAL, Mono.never()).subscribe();
+        Disposable stripe = router.track(STRIPE, Mono.never()).subscribe();
+
+        assertThat(router.choose(0)).isEqualTo(SQUARE);
+
+        paypal.dispose();
+        stripe.dispose();
+        Disposable square = router.track(SQUARE, Mono.never()).subscribe();
+        assertThat(router.choose(0)).isNotEqualTo(SQUARE);
+        square.dispose();
+    }
+
+    @Test
+    void avoidsFailingProvidersUntilTheirErrorsFade() throws Exception {
+        PaymentProviderRouter router = router(Duration.ofMillis(100));
+        for (int i = 0; i < 10; i++) {
+            fail(router, PAYPAL);
+            fail(router, STRIPE);
+        }
+        assertThat(router.choose(0)).isEqualTo(SQUARE);
+
+        // Another call to SQUARE keeps its averages fresh while the failures fade away
+        Thread.sleep(1000);
+        Disposable square = router.track(SQUARE, Mono.never()).subscribe();
+        assertThat(router.choose(0)).isNotEqualTo(SQUARE);
+        square.dispose();
+    }
+
+    @Test
+    void skipsProvidersWithAnOpenCircuitBreaker() {
+        PaymentProviderRouter router = router(Duration.ofSeconds(10));
+        resilience.circuitBreaker(STRIPE).transitionToOpenState();
+
+        assertThat(router.choose(PaymentProviderRouter.mask(PAYPAL) | PaymentProviderRouter.mask(SQUARE))).isNull();
+        assertThat(router.choose(0)).isNotEqualTo(STRIPE);
+    }
+
+    @Test
+    void failsOverOnlyWhenTheProviderDidNotTakeThePayment() {
+        assertThat(PaymentProviderRouter.isFailoverSafe(
+                CallNotPermittedException.createCallNotPermittedException(resilience.circuitBreaker(PAYPAL)))).isTrue();
+        assertThat(PaymentProviderRouter.isFailoverSafe(
+                new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE))).isTrue();
+        assertThat(PaymentProviderRouter.isFailoverSafe(
+                WebClientResponseException.create(502, "Bad Gateway", null, null, null))).isTrue();
+        assertThat(PaymentProviderRouter.isFailoverSafe(
+                new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR))).isFalse();
+        assertThat(PaymentProviderRouter.isFailoverSafe(
+                WebClientResponseException.create(504, "Gateway Timeout", null, null, null))).isFalse();
+        assertThat(PaymentProviderRouter.isFailoverSafe(
+                new ResourceAccessException("refused", new ConnectException()))).isTrue();
+        assertThat(PaymentProviderRouter.isFailoverSafe(
+                new ResourceAccessException("read timed out", new SocketTimeoutException()))).isFalse();
+    }
+
+    private PaymentProviderRouter router(Duration decay) {
+        ProviderRoutingProperties properties = new ProviderRoutingProperties();
+        properties.setDecay(decay);
+        return new PaymentProviderRouter(resilience, properties, new SimpleMeterRegistry());
+    }
+
+    private static void fail(PaymentProviderRouter router, PaymentProviderType providerType) {
+        assertThatThrownBy(() -> router.track(providerType, () -> {
+            throw new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR);
+        })).isInstanceOf(HttpServerErrorException.class);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
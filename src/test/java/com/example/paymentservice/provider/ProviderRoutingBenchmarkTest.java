@@ -0,0 +1,199 @@
+package com.example.paymentservice.provider;
+
+import com.example.paymentservice.model.PaymentProviderType;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Simulates three providers with different latency profiles, one of which goes down for a while, and compares payments
+ * pinned round-robin to a provider with {@code AUTO} routing and failover. Each run has three phases: all providers
+ * healthy, SQUARE answering 503, and SQUARE recovered.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "spring.jpa.show-sql=false",
+        "external.payment.providers.square.circuit-breaker.wait-duration-in-open-state=2s",
+        "payment.routing.decay=2s"
+})
+class ProviderRoutingBenchmarkTest {
+
+    private static final int CONCURRENCY = 24;
+    private static final int REQUESTS_PER_PHASE = 600;
+    private static final PaymentProviderType[] PROVIDERS = PaymentProviderType.values();
+
+    private static final WireMockServer wireMock = new WireMockServer(options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("wiremock")
+            .asynchronousResponseEnabled(true)
+            .containerThreads(100));
+
+    static {
+        wireMock.start();
+    }
+
+    @DynamicPropertySource
+    static void externalServices(DynamicPropertyRegistry registry) {
+        String baseUrl = wireMock.baseUrl();
+        registry.add("external.fraud-service-url", () -> baseUrl + "/api/fraud-check");
+        registry.add("external.payment.providers.paypal.url", () -> baseUrl + "/v1/payments/payment");
+        registry.add("external.payment.providers.stripe.url", () -> baseUrl + "/v1/charges");
+        registry.add("external.payment.providers.square.url", () -> baseUrl + "/v2/payments");
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private PaymentProviderResilience providerResilience;
+
+    @Autowired
+    private PaymentProviderRouter providerRouter;
+
+    @Test
+    void autoRoutingBeatsPinnedRoundRobin() throws Exception {
+        WebClient client = WebClient.create("http://localhost:" + port + "/api/payments/process");
+        IntFunction<String> pinned = i -> "{\"provider\": \"" + PROVIDERS[i % PROVIDERS.length] + "\", \"amount\": "
+                + (100 + i) + "}";
+        IntFunction<String> auto = i -> "{\"routing\": \"AUTO\", \"allowFailover\": true, \"amount\": " + (100 + i)
+                + "}";
+
+        healthyProviders();
+        send(client, pinned, 200);
+        send(client, auto, 200);
+
+        RunResult pinnedResult = run(client, pinned);
+        RunResult autoResult = run(client, auto);
+
+        System.out.println("pinned round-robin: " + pinnedResult);
+        System.out.println("auto with failover: " + autoResult);
+        double choiceNanos = measureChoice();
+        System.out.printf("routing decision: %.0fns%n", choiceNanos);
+
+        assertThat(autoResult.failures).isLessThan(pinnedResult.failures);
+        assertThat(autoResult.p50Millis).isLessThan(pinnedResult.p50Millis);
+        assertThat(choiceNanos).isLessThan(2_000);
+    }
+
+    private RunResult run(WebClient client, IntFunction<String> payments) throws Exception {
+        for (PaymentProviderType provider : PROVIDERS) {
+            providerResilience.circuitBreaker(provider).reset();
+        }
+        List<Outcome> outcomes = new ArrayList<>();
+        healthyProviders();
+        outcomes.addAll(send(client, payments, REQUESTS_PER_PHASE));
+        wireMock.stubFor(post(urlEqualTo("/v2/payments")).willReturn(aResponse().withStatus(503).withFixedDelay(5)));
+        outcomes.addAll(send(client, payments, REQUESTS_PER_PHASE));
+        healthyProviders();
+        // Past SQUARE's open circuit breaker wait, so both strategies can use it again
+        Thread.sleep(2500);
+        outcomes.addAll(send(client, payments, REQUESTS_PER_PHASE));
+        return RunResult.of(outcomes);
+    }
+
+    private static void healthyProviders() {
+        wireMock.resetToDefaultMappings();
+        wireMock.stubFor(post(urlEqualTo("/v1/payments/payment"))
+                .willReturn(aResponse().withStatus(200).withUniformRandomDelay(40, 80)));
+        wireMock.stubFor(post(urlEqualTo("/v1/charges"))
+                .willReturn(aResponse().withStatus(200).withLogNormalRandomDelay(15, 0.6)));
+        wireMock.stubFor(post(urlEqualTo("/v2/payments"))
+                .willReturn(aResponse().withStatus(200).withFixedDelay(10)));
+    }
+
+    private static List<Outcome> send(WebClient client, IntFunction<String> payments, int requests) {
+        return Flux.range(0, requests)
+                .flatMap(i -> {
+                    long start = System.nanoTime();
+                    return client.post()
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .bodyValue(payments.apply(i))
+                            .exchangeToMono(response -> response.bodyToMono(String.class)
+                                    .defaultIfEmpty("")
+                                    .map(body -> new Outcome(response.statusCode().is2xxSuccessful(), body,
+                                            System.nanoTime() - start)))
+                            .onErrorResume(e -> Mono.just(new Outcome(false, "", System.nanoTime() - start)));
+                }, CONCURRENCY)
+                .collectList()
+                .block();
+    }
+
+    private double measureChoice() {
+        int iterations = 1_000_000;
+        int sink = 0;
+        for (int i = 0; i < iterations; i++) {
+            sink += providerRouter.choose(0).ordinal();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink += providerRouter.choose(0).ordinal();
+        }
+        double nanos = (double) (System.nanoTime() - start) / iterations;
+        assertThat(sink).isNotNegative();
+        return nanos;
+    }
+
+    private record Outcome(boolean successful, String body, long latencyNanos) {
+    }
+
+    private record RunResult(int requests, int failures, long p50Millis, long p99Millis,
+                             Map<PaymentProviderType, Integer> processedBy) {
+
+        static RunResult of(List<Outcome> outcomes) {
+            long[] latencies = outcomes.stream().mapToLong(Outcome::latencyNanos).sorted().toArray();
+            Map<PaymentProviderType, Integer> processedBy = new EnumMap<>(PaymentProviderType.class);
+            int failures = 0;
+            for (Outcome outcome : outcomes) {
+                if (!outcome.successful()) {
+                    failures++;
+                    continue;
+                }
+                for (PaymentProviderType provider : PROVIDERS) {
+                    if (outcome.body().startsWith(provider.name())) {
+                        processedBy.merge(provider, 1, Integer::sum);
+                    }
+                }
+            }
+            return new RunResult(outcomes.size(), failures, percentile(latencies, 0.50), percentile(latencies, 0.99),
+                    processedBy);
+        }
+
+        private static long percentile(long[] sorted, double percentile) {
+            return sorted[(int) Math.ceil(percentile * sorted.length) - 1] / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d payments, %d failed, p50=%dms, p99=%dms, processed by %s", requests, failures,
+                    p50Millis, p99Millis, processedBy);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.paymentservice.repository;
+
+import com.example.paymentservice.PaymentServiceApplication;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentTransaction;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SchemaMigrationTest {
+
+    @Test
+    void convertsStoredAmountsToMinorUnits() {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:schema-migration;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        // A database Hibernate created before the migrations existed, so without Flyway's history table
+        Flyway.configure().dataSource(dataSource).target("1").load().migrate();
+        jdbcTemplate.execute("drop table \"flyway_schema_history\"");
+        jdbcTemplate.update("insert into payment_transaction (id, provider, amount, successful) values "
+                + "(1, 'PayPalProvider', 19.99, true), (2, 'StripeProvider', 0.1 + 0.2, false), "
+                + "(3, 'SquareProvider', 1234567.89, true)");
+
+        Flyway.configure().dataSource(dataSource).baselineOnMigrate(true).baselineVersion("1").load().migrate();
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "select amount_minor, currency from payment_transaction order by id");
+        assertThat(rows).extracting(row -> row.get("AMOUNT_MINOR")).containsExactly(1999L, 30L, 123456789L);
+        assertThat(rows).extracting(row -> row.get("CURRENCY")).containsOnly("USD");
+    }
+
+    @Test
+    void bringsADatabaseFromTheFirstReleaseToTheSchemaHibernateValidates() {
+        String url = "jdbc:h2:mem:first-release;DB_CLOSE_DELAY=-1";
+        DataSource dataSource = new DriverManagerDataSource(url, "sa", "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Flyway.configure().dataSource(dataSource).target("1").load().migrate();
+        jdbcTemplate.execute("drop table \"flyway_schema_history\"");
+        jdbcTemplate.update("insert into payment_transaction (provider, amount, successful) values "
+                + "('PayPalProvider', 19.99, true), ('StripeProvider', 5, true)");
+
+        // Baselined at V1 and migrated on startup, then validated by Hibernate
+        try (ConfigurableApplicationContext application = new SpringApplicationBuilder(PaymentServiceApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=" + url, "--spring.jpa.show-sql=false")) {
+            PaymentTransactionRepository repository = application.getBean(PaymentTransactionRepository.class);
+            PaymentTransaction transaction = new PaymentTransaction();
+            transaction.setProvider("SquareProvider");
+            transaction.setAmount(Money.of(300, 0));
+            transaction.setSuccessful(true);
+
+            // Ids from the new sequence stay clear of the ones the identity column handed out
+            assertThat(repository.save(transaction).getId()).isGreaterThan(2);
+            assertThat(repository.count()).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void stampsTransactionsSavedWithoutACreationTimeAsTheOldest() {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:created-at-migration;DB_CLOSE_DELAY=-1", "sa",
+                "");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Flyway.configure().dataSource(dataSource).target("3").load().migrate();
+        jdbcTemplate.update("insert into payment_transaction (id, provider, amount_minor, currency, successful, "
+                + "created_at) values (1, 'PayPalProvider', 100, 'USD', true, null), "
+                + "(2, 'StripeProvider', 200, 'USD', true, null), "
+                + "(3, 'SquareProvider', 300, 'USD', true, timestamp with time zone '2024-05-01 10:00:00+00'), "
+                + "(4, 'SquareProvider', 400, 'USD', true, timestamp with time zone '2024-06-01 10:00:00+00')");
+
+        Flyway.configure().dataSource(dataSource).load().migrate();
+
+        List<Long> newestFirst = jdbcTemplate.queryForList(
+                "select id from payment_transaction order by created_at desc, id desc", Long.class);
+        assertThat(newestFirst).containsExactly(4L, 3L, 2L, 1L);
+        assertThat(jdbcTemplate.queryForObject("select count(distinct created_at) from payment_transaction "
+                + "where id <= 3", Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("select is_nullable from information_schema.columns "
+                + "where table_name = 'PAYMENT_TRANSACTION' and column_name = 'CREATED_AT'", String.class))
+                .isEqualTo("NO");
+    }
+}
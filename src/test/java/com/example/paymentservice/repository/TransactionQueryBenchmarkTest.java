@@ -0,0 +1,154 @@
+package com.example.paymentservice.repository;
+
+import com.example.paymentservice.model.TransactionFilter;
+import com.example.paymentservice.service.TransactionQueryService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Query latency on a file-backed H2 table of {@code benchmark.transactions} rows, 10 million by default: keyset pages
+ * near the start and deep into the table, filtered pages, the same deep page by offset for comparison, and export
+ * throughput. The table is generated on the first run and kept in {@code target/transaction-query-benchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        // H2 would otherwise answer a repeated query from its last result
+        "spring.datasource.url=jdbc:h2:file:./target/transaction-query-benchmark/db;OPTIMIZE_REUSE_RESULTS=FALSE",
+        "spring.jpa.show-sql=false"
+})
+class TransactionQueryBenchmarkTest {
+
+    private static final long ROWS = Long.getLong("benchmark.transactions", 10_000_000);
+    private static final Instant START = Instant.parse("2024-01-01T00:00:00Z");
+    private static final int PAGE = 50;
+
+    @Autowired
+    private PaymentTransactionRepository transactionRepository;
+
+    @Autowired
+    private TransactionQueryService transactionQueryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Test
+    void keysetPagesStayFastDeepIntoTheTable() throws Exception {
+        populate();
+        TransactionFilter all = new TransactionFilter(null, null, null, null, null, null, null);
+        // Deep pages start at a different row each run, between a quarter and three quarters into the table
+        SplittableRandom random = new SplittableRandom(42);
+        LongSupplier deepRow = () -> random.nextLong(ROWS / 4, ROWS * 3 / 4);
+
+        double first = p50("first page", 200, () -> transactionRepository.findPage(all, null, null, PAGE));
+        double deep = p50("page deep in the table", 200, () -> {
+            // Row n was created n seconds after START
+            long row = deepRow.getAsLong();
+            return transactionRepository.findPage(all, START.plusSeconds(row), row, PAGE);
+        });
+        p50("provider, successful, day range", 200, () -> {
+            Instant from = START.plusSeconds(deepRow.getAsLong());
+            return transactionRepository.findPage(new TransactionFilter("StripeProvider", true, null, null, null, from,
+                    from.plusSeconds(86_400)), null, null, PAGE);
+        });
+        p50("provider, amount range, deep", 200, () -> {
+            long row = deepRow.getAsLong();
+            return transactionRepository.findPage(new TransactionFilter("PayPalProvider", null, null, BigDecimal.valueOf(100),
+                    BigDecimal.valueOf(110), null, null), START.plusSeconds(row), row, PAGE);
+        });
+        double offset = p50("page deep in the table, by offset", 5, () -> entityManager
+                .createQuery("select t.id from PaymentTransaction t order by t.createdAt desc, t.id desc", Long.class)
+                .setFirstResult((int) deepRow.getAsLong())
+                .setMaxResults(PAGE)
+                .getResultList());
+
+        TransactionFilter day = new TransactionFilter(null, null, null, null, null, START.plusSeconds(1),
+                START.plusSeconds(86_401));
+        CountingOutputStream out = new CountingOutputStream();
+        long start = System.nanoTime();
+        transactionQueryService.export(day, out);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-40s %,d rows, %.0f rows/s, %,d bytes%n", "export of one day", out.lines,
+                out.lines / seconds, out.bytes);
+
+        assertThat(out.lines).isEqualTo(Math.min(ROWS, 86_400));
+        // A keyset page deep in the table costs about what the first one does, an offset page scans up to it
+        assertThat(deep).isLessThan(Math.max(first * 10, 5));
+        assertThat(offset).isGreaterThan(deep * 10);
+    }
+
+    private void populate() {
+        Long rows = jdbcTemplate.queryForObject("select count(*) from payment_transaction", Long.class);
+        if (rows != null && rows == ROWS) {
+            return;
+        }
+        long start = System.nanoTime();
+        jdbcTemplate.execute("truncate table payment_transaction");
+        // Providers rotate, one payment in 20 failed, amounts spread over 0 to 999.99, one payment a second
+        jdbcTemplate.update("insert into payment_transaction (id, provider, amount_minor, currency, "
+                + "successful, created_at) "
+                + "select x, case mod(x, 3) when 0 then 'PayPalProvider' when 1 then 'StripeProvider' "
+                + "else 'SquareProvider' end, mod(x * 7919, 100000), 'USD', mod(x, 20) <> 0, "
+                + "dateadd(second, x, timestamp with time zone '2024-01-01 00:00:00+00') "
+                + "from system_range(1, ?)", ROWS);
+        jdbcTemplate.execute("analyze");
+        System.out.printf("Generated %,d transactions in %.0fs%n", ROWS, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static double p50(String name, int runs, Supplier<List<?>> query) {
+        // Warm up
+        for (int i = 0; i < Math.min(runs, 20); i++) {
+            assertThat(query.get()).isNotEmpty();
+        }
+        long[] nanos = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = System.nanoTime();
+            query.get();
+            nanos[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(nanos);
+        double p50 = nanos[runs / 2] / 1e6;
+        double p99 = nanos[Math.min(runs - 1, (int) Math.ceil(runs * 0.99) - 1)] / 1e6;
+        System.out.printf("%-40s p50 %8.3f ms  p99 %8.3f ms%n", name, p50, p99);
+        return p50;
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+
+        private long bytes;
+        private long lines;
+
+        @Override
+        public void write(int b) {
+            bytes++;
+            if (b == '\n') {
+                lines++;
+            }
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.config.ConcurrencyLimitProperties;
+import com.example.paymentservice.exception.PaymentRejectedException;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.example.paymentservice.model.PaymentRouting;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+
+class ConcurrencyLimiterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    void shedsOverTheLimitExceptWithinAProvidersReserve() {
+        ConcurrencyLimitProperties properties = fixedLimit(10);
+        properties.setRetryAfter(Duration.ofMillis(1500));
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties, meterRegistry, nanoTime::get);
+
+        // Square's reserve of 1 and the 6 no reserve claims
+        List<ConcurrencyLimiter.Permit> square = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            square.add(limiter.acquire(request(PaymentProviderType.SQUARE)));
+        }
+        PaymentRejectedException shed = catchThrowableOfType(
+                () -> limiter.acquire(request(PaymentProviderType.SQUARE)), PaymentRejectedException.class);
+        ResponseEntity<byte[]> response = shed.getResponse();
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("2");
+
+        // PayPal and Stripe keep their 10% of the limit while Square holds the rest
+        limiter.acquire(request(PaymentProviderType.PAYPAL));
+        assertThatThrownBy(() -> limiter.acquire(request(PaymentProviderType.PAYPAL)))
+                .isInstanceOf(PaymentRejectedException.class);
+        limiter.acquire(request(PaymentProviderType.STRIPE));
+        assertThat(limiter.getInFlight()).isEqualTo(9);
+
+        square.get(6).release(null);
+        square.get(6).release(null);
+        assertThat(limiter.getInFlight()).isEqualTo(8);
+        limiter.acquire(request(PaymentProviderType.SQUARE));
+        assertThatThrownBy(() -> limiter.acquire(request(PaymentProviderType.SQUARE)))
+                .isInstanceOf(PaymentRejectedException.class);
+        assertThat(meterRegistry.get("payment.concurrency.shed").tag("provider", "square").counter().count())
+                .isEqualTo(2);
+        assertThat(meterRegistry.get("payment.concurrency.shed").tag("provider", "paypal").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void paymentsInFlightNeverExceedTheLimit() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(fixedLimit(150), meterRegistry, nanoTime::get);
+        PaymentProviderType[] providers = PaymentProviderType.values();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        ExecutorService threads = Executors.newFixedThreadPool(16);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int thread = 0; thread < 16; thread++) {
+            int offset = thread;
+            workers.add(threads.submit(() -> {
+                List<ConcurrencyLimiter.Permit> held = new ArrayList<>();
+                for (int i = 0; i < 20_000; i++) {
+                    PaymentRequest request = request(providers[(i + offset) % providers.length]);
+                    if ((i + offset) % 7 == 0) {
+                        request.setRouting(PaymentRouting.AUTO);
+                    }
+                    try {
+                        held.add(limiter.acquire(request));
+                        maxInFlight.accumulateAndGet(limiter.getInFlight(), Math::max);
+                    } catch (PaymentRejectedException e) {
+                        // Shed; make room
+                    }
+                    if (held.size() > 20 || i % 3 == 0 && !held.isEmpty()) {
+                        held.remove(0).cancel();
+                    }
+                }
+                held.forEach(ConcurrencyLimiter.Permit::cancel);
+            }));
+        }
+        for (Future<?> worker : workers) {
+            worker.get(30, TimeUnit.SECONDS);
+        }
+        threads.shutdown();
+
+        // 16 threads holding up to 21 each would reach 336 if reserves came on top of the limit
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(150);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void growsWhileLatencyHoldsAndShrinksWhenItRises() {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.setMinLimit(5);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties, meterRegistry, nanoTime::get);
+        assertThat(limiter.getLimit()).isEqualTo(20);
+
+        runWindows(limiter, 30, 10);
+        int grown = limiter.getLimit();
+        assertThat(grown).isGreaterThan(40);
+
+        runWindows(limiter, 30, 50);
+        assertThat(limiter.getLimit()).isLessThan(grown / 2);
+        assertThat(meterRegistry.get("payment.concurrency.limit").gauge().value()).isEqualTo(limiter.getLimit());
+    }
+
+    @Test
+    void fastFailuresAndCancellationsDoNotMoveTheLimit() {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties, meterRegistry, nanoTime::get);
+
+        for (int window = 0; window < 30; window++) {
+            List<ConcurrencyLimiter.Permit> permits = acquireAll(limiter);
+            nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+            for (int i = 0; i < permits.size(); i++) {
+                if (i % 2 == 0) {
+                    permits.get(i).release(PaymentRejectedException.FRAUDULENT);
+                } else {
+                    permits.get(i).cancel();
+                }
+            }
+        }
+
+        assertThat(limiter.getLimit()).isEqualTo(20);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void admitsEverythingWhenDisabled() {
+        ConcurrencyLimitProperties properties = fixedLimit(10);
+        properties.setEnabled(false);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(properties, meterRegistry, nanoTime::get);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.acquire(request(PaymentProviderType.STRIPE));
+        }
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    // Each window the limit is filled with payments that all take latencyMillis
+    private void runWindows(ConcurrencyLimiter limiter, int windows, long latencyMillis) {
+        for (int window = 0; window < windows; window++) {
+            List<ConcurrencyLimiter.Permit> permits = acquireAll(limiter);
+            nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+            permits.forEach(permit -> permit.release(null));
+            nanoTime.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+        }
+    }
+
+    private List<ConcurrencyLimiter.Permit> acquireAll(ConcurrencyLimiter limiter) {
+        // Spread over the providers and AUTO routing, since one alone cannot use the others' reserves
+        PaymentProviderType[] providers = PaymentProviderType.values();
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = limiter.getInFlight(); i < limiter.getLimit(); i++) {
+            int partition = i % (providers.length + 1);
+            PaymentRequest request = request(providers[partition % providers.length]);
+            if (partition == providers.length) {
+                request.setRouting(PaymentRouting.AUTO);
+            }
+            permits.add(limiter.acquire(request));
+        }
+        return permits;
+    }
+
+    private static ConcurrencyLimitProperties fixedLimit(int limit) {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.setInitialLimit(limit);
+        properties.setMinLimit(limit);
+        properties.setMaxLimit(limit);
+        return properties;
+    }
+
+    private static PaymentRequest request(PaymentProviderType provider) {
+        PaymentRequest request = new PaymentRequest();
+        request.setProvider(provider);
+        request.setAmount(Money.of(10, 0));
+        return request;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.config.FraudBatchProperties;
+import com.example.paymentservice.config.FraudCacheProperties;
+import com.example.paymentservice.model.Money;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathMatching;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Sends the same burst of fraud checks one call at a time and micro-batched, against a fraud stub with a fixed latency
+ * and a limited number of worker threads, like a real service under load.
+ */
+@Tag("benchmark")
+class FraudCheckBatchingBenchmarkTest {
+
+    private static final int CALLERS = 200;
+    private static final int CHECKS = 4000;
+
+    private static final WireMockServer wireMock = new WireMockServer(options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("wiremock")
+            .containerThreads(30));
+
+    static {
+        wireMock.start();
+        wireMock.setGlobalFixedDelay(20);
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @Test
+    void batchingCutsRequestsAndTailLatency() throws Exception {
+        FraudBatchProperties perCall = new FraudBatchProperties();
+        FraudBatchProperties batched = new FraudBatchProperties();
+        batched.setEnabled(true);
+
+        run(perCall, 200);
+        run(batched, 200);
+
+        Result perCallResult = run(perCall, CHECKS);
+        Result batchedResult = run(batched, CHECKS);
+
+        System.out.println("per call: " + perCallResult);
+        System.out.println("batched:  " + batchedResult);
+
+        assertThat(batchedResult.requests).isLessThan(perCallResult.requests / 10);
+        assertThat(batchedResult.p99Millis).isLessThan(perCallResult.p99Millis);
+    }
+
+    private Result run(FraudBatchProperties batchProperties, int checks) throws Exception {
+        FraudCacheProperties cacheProperties = new FraudCacheProperties();
+        cacheProperties.setEnabled(false);
+        FraudDetectionService service = new FraudDetectionService(wireMock.baseUrl() + "/api/fraud-check",
+                Duration.ofSeconds(2), Duration.ofSeconds(3), cacheProperties, batchProperties,
+                new SimpleMeterRegistry());
+        wireMock.resetRequests();
+
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        List<Future<Long>> latencies = new ArrayList<>(checks);
+        for (int i = 0; i < checks; i++) {
+            Money amount = Money.of(10 + i, 0);
+            latencies.add(callers.submit(() -> {
+                long start = System.nanoTime();
+                service.isFraudulent(amount);
+                return System.nanoTime() - start;
+            }));
+        }
+        long[] sorted = new long[checks];
+        for (int i = 0; i < checks; i++) {
+            sorted[i] = latencies.get(i).get();
+        }
+        callers.shutdown();
+        service.destroy();
+
+        Arrays.sort(sorted);
+        int requests = wireMock.findAll(postRequestedFor(urlPathMatching("/api/fraud-check/check.*"))).size();
+        return new Result(requests, sorted[(int) Math.ceil(0.99 * checks) - 1] / 1_000_000);
+    }
+
+    private record Result(int requests, long p99Millis) {
+
+        @Override
+        public String toString() {
+            return String.format("%d fraud service requests, p99=%dms", requests, p99Millis);
+        }
+    }
+}
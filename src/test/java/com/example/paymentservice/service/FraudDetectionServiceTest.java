@@ -0,0 +1,213 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.config.FraudBatchProperties;
+import com.example.paymentservice.config.FraudCacheProperties;
+import com.example.paymentservice.model.Money;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Currency;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.equalToJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.post;
+import static com.github.tomakehurst.wiremock.client.WireMock.postRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FraudDetectionServiceTest {
+
+    private static final WireMockServer wireMock = new WireMockServer(options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("wiremock"));
+
+    static {
+        wireMock.start();
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(2);
+    private static final Duration TIMEOUT = Duration.ofSeconds(3);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void resetStubs() {
+        wireMock.resetToDefaultMappings();
+        wireMock.resetRequests();
+    }
+
+    @Test
+    void concurrentIdenticalChecksMakeOneRemoteCall() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/api/fraud-check/check"))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                        .withBody("true").withFixedDelay(300)));
+        FraudDetectionService service = service(cacheProperties(Duration.ofMinutes(1)));
+
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        List<Future<Boolean>> verdicts = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            verdicts.add(callers.submit(() -> service.isFraudulent(Money.parse("42.50"))));
+        }
+        for (Future<Boolean> verdict : verdicts) {
+            assertThat(verdict.get()).isTrue();
+        }
+        callers.shutdown();
+
+        assertThat(service.isFraudulent(Money.parse("42.50"))).isTrue();
+        assertThat(remoteChecks()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isPositive();
+        assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isPositive();
+    }
+
+    @Test
+    void bucketedAmountsShareAVerdict() {
+        FraudCacheProperties properties = cacheProperties(Duration.ofMinutes(1));
+        FraudCacheProperties.Bucket bucket = new FraudCacheProperties.Bucket();
+        bucket.setUpTo(Money.parse("100"));
+        bucket.setWidth(Money.parse("1"));
+        properties.getBuckets().add(bucket);
+        FraudDetectionService service = service(properties);
+
+        assertThat(service.isFraudulent(Money.parse("12.10"))).isFalse();
+        assertThat(service.isFraudulent(Money.parse("12.95"))).isFalse();
+        assertThat(service.isFraudulent(Money.parse("13.00"))).isFalse();
+        // Above the bucket rules, and in other currencies, every minor unit is its own entry
+        assertThat(service.isFraudulent(Money.parse("250.10"))).isFalse();
+        assertThat(service.isFraudulent(Money.parse("250.11"))).isFalse();
+
+        assertThat(service.isFraudulent(Money.parse("12", Currency.getInstance("JPY")))).isFalse();
+        assertThat(service.isFraudulent(Money.parse("13", Currency.getInstance("JPY")))).isFalse();
+
+        assertThat(remoteChecks()).isEqualTo(6);
+        wireMock.verify(1, postRequestedFor(urlEqualTo("/api/fraud-check/check"))
+                .withRequestBody(equalToJson("{\"amount\": 12.10, \"currency\": \"USD\"}")));
+    }
+
+    @Test
+    void verdictsExpireAfterTtl() throws Exception {
+        FraudDetectionService service = service(cacheProperties(Duration.ofMillis(200)));
+
+        service.isFraudulent(Money.parse("10"));
+        service.isFraudulent(Money.parse("10"));
+        assertThat(remoteChecks()).isEqualTo(1);
+
+        Thread.sleep(400);
+        service.isFraudulent(Money.parse("10"));
+        assertThat(remoteChecks()).isEqualTo(2);
+    }
+
+    @Test
+    void failedChecksAreNotCached() {
+        wireMock.stubFor(post(urlEqualTo("/api/fraud-check/check")).willReturn(aResponse().withStatus(500)));
+        FraudDetectionService service = service(cacheProperties(Duration.ofMinutes(1)));
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                service.isFraudulent(Money.parse("99"));
+            } catch (RuntimeException expected) {
+                // The remote failure surfaces to the caller
+            }
+        }
+        assertThat(remoteChecks()).isEqualTo(2);
+    }
+
+    @Test
+    void batchedChecksGetTheirOwnVerdicts() throws Exception {
+        wireMock.stubFor(post(urlEqualTo("/api/fraud-check/check/batch"))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                        .withBody("[{{#each (parseJson request.body) as |check|}}"
+                                + "{{#if (gt check.amount 1000)}}true{{else}}false{{/if}}"
+                                + "{{#unless @last}},{{/unless}}{{/each}}]")
+                        .withTransformers("response-template")));
+        FraudCacheProperties cacheProperties = cacheProperties(Duration.ofMinutes(1));
+        cacheProperties.setEnabled(false);
+        FraudBatchProperties batchProperties = new FraudBatchProperties();
+        batchProperties.setEnabled(true);
+        batchProperties.setWindow(Duration.ofMillis(50));
+        batchProperties.setMaxBatchSize(10);
+        FraudDetectionService service = new FraudDetectionService(wireMock.baseUrl() + "/api/fraud-check",
+                CONNECT_TIMEOUT, TIMEOUT, cacheProperties, batchProperties, meterRegistry);
+
+        ExecutorService callers = Executors.newFixedThreadPool(20);
+        List<Future<Boolean>> verdicts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Money amount = Money.of(i % 2 == 0 ? 2000 + i : 10 + i, 0);
+            verdicts.add(callers.submit(() -> service.isFraudulent(amount)));
+        }
+        for (int i = 0; i < 20; i++) {
+            assertThat(verdicts.get(i).get()).isEqualTo(i % 2 == 0);
+        }
+        callers.shutdown();
+        service.destroy();
+
+        assertThat(remoteChecks()).isZero();
+        assertThat(wireMock.findAll(postRequestedFor(urlEqualTo("/api/fraud-check/check/batch"))))
+                .hasSizeBetween(2, 4);
+    }
+
+    @Test
+    void slowChecksTimeOut() {
+        wireMock.stubFor(post(urlEqualTo("/api/fraud-check/check"))
+                .willReturn(aResponse().withStatus(200).withHeader("Content-Type", "application/json")
+                        .withBody("false").withFixedDelay(5000)));
+        FraudDetectionService service = new FraudDetectionService(wireMock.baseUrl() + "/api/fraud-check",
+                CONNECT_TIMEOUT, Duration.ofMillis(200), cacheProperties(Duration.ofMinutes(1)),
+                new FraudBatchProperties(), meterRegistry);
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> service.isFraudulent(Money.parse("15"))).isInstanceOf(RuntimeException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    void checksWaitingForABatchFailWhenTheServiceShutsDown() {
+        FraudCacheProperties cacheProperties = cacheProperties(Duration.ofMinutes(1));
+        cacheProperties.setEnabled(false);
+        FraudBatchProperties batchProperties = new FraudBatchProperties();
+        batchProperties.setEnabled(true);
+        batchProperties.setWindow(Duration.ofMinutes(1));
+        FraudDetectionService service = new FraudDetectionService(wireMock.baseUrl() + "/api/fraud-check",
+                CONNECT_TIMEOUT, TIMEOUT, cacheProperties, batchProperties, meterRegistry);
+
+        CompletableFuture<Boolean> verdict = service.isFraudulentReactive(Money.parse("20")).toFuture();
+        service.destroy();
+
+        assertThat(verdict).failsWithin(Duration.ofSeconds(1))
+                .withThrowableOfType(ExecutionException.class)
+                .withMessageContaining("shut down");
+        assertThatThrownBy(() -> service.isFraudulent(Money.parse("21"))).hasMessageContaining("shut down");
+    }
+
+    private FraudDetectionService service(FraudCacheProperties properties) {
+        return new FraudDetectionService(wireMock.baseUrl() + "/api/fraud-check", CONNECT_TIMEOUT, TIMEOUT,
+                properties, new FraudBatchProperties(), meterRegistry);
+    }
+
+    private static FraudCacheProperties cacheProperties(Duration ttl) {
+        FraudCacheProperties properties = new FraudCacheProperties();
+        properties.setTtl(ttl);
+        return properties;
+    }
+
+    private static int remoteChecks() {
+        return wireMock.findAll(postRequestedFor(urlEqualTo("/api/fraud-check/check"))).size();
+    }
+}
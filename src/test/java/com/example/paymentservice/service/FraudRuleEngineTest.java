@@ -0,0 +1,131 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.config.FraudRuleProperties;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.service.FraudRuleEngine.Decision;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.env.StandardEnvironment;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FraudRuleEngineTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong nanoTime = new AtomicLong();
+
+    @Test
+    void decidesClearCasesLocally() {
+        FraudRuleProperties properties = new FraudRuleProperties();
+        properties.setApproveBelow(List.of(Money.parse("5")));
+        properties.setDenyAbove(List.of(Money.parse("10000")));
+        properties.setAllow(List.of(Money.parse("19.99")));
+        properties.setDeny(List.of(Money.parse("1")));
+        FraudRuleEngine engine = engine(properties);
+
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.parse("4.99"))).isEqualTo(Decision.APPROVE);
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.parse("19.99"))).isEqualTo(Decision.APPROVE);
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.parse("1.00"))).isEqualTo(Decision.DENY);
+        assertThat(engine.screen(null, Money.parse("10000.01"))).isEqualTo(Decision.DENY);
+        assertThat(engine.screen(PaymentProviderType.STRIPE, Money.parse("5.00"))).isEqualTo(Decision.REMOTE);
+        assertThat(engine.screen(PaymentProviderType.STRIPE, Money.parse("10000"))).isEqualTo(Decision.REMOTE);
+
+        assertThat(decisions("approve")).isEqualTo(2);
+        assertThat(decisions("deny")).isEqualTo(2);
+        assertThat(decisions("remote")).isEqualTo(2);
+        assertThat(meterRegistry.get("fraud.rules.decisions").tag("rule", "allow_list").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void sendsEverythingRemotelyByDefault() {
+        FraudRuleEngine engine = engine(new FraudRuleProperties());
+
+        assertThat(engine.screen(PaymentProviderType.SQUARE, Money.parse("0.01"))).isEqualTo(Decision.REMOTE);
+        assertThat(engine.screen(null, Money.parse("1000000"))).isEqualTo(Decision.REMOTE);
+    }
+
+    @Test
+    void stopsApprovingLocallyOverAProvidersVelocityLimit() {
+        FraudRuleProperties properties = new FraudRuleProperties();
+        properties.setApproveBelow(List.of(Money.parse("5")));
+        properties.getVelocity().setWindow(Duration.ofSeconds(10));
+        properties.getVelocity().setSlots(10);
+        properties.getVelocity().setLimits(Map.of("paypal", 3L));
+        FraudRuleEngine engine = engine(properties);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.parse("1"))).isEqualTo(Decision.APPROVE);
+        }
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.parse("1"))).isEqualTo(Decision.REMOTE);
+        // Other providers have their own limits, here none
+        assertThat(engine.screen(PaymentProviderType.STRIPE, Money.parse("1"))).isEqualTo(Decision.APPROVE);
+
+        // Still within the window
+        nanoTime.addAndGet(Duration.ofSeconds(8).toNanos());
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.parse("1"))).isEqualTo(Decision.REMOTE);
+        // The first four payments have slid out, the fifth has not
+        nanoTime.addAndGet(Duration.ofSeconds(3).toNanos());
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.parse("1"))).isEqualTo(Decision.APPROVE);
+    }
+
+    @Test
+    void appliesAmountRulesOnlyInTheirCurrency() {
+        FraudRuleProperties properties = new FraudRuleProperties();
+        properties.setApproveBelow(List.of(Money.parse("5"), Money.valueOf("500 JPY")));
+        properties.setDenyAbove(List.of(Money.parse("10000")));
+        properties.setDeny(List.of(Money.valueOf("1 JPY")));
+        FraudRuleEngine engine = engine(properties);
+
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.valueOf("10001 JPY"))).isEqualTo(Decision.REMOTE);
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.valueOf("499 JPY"))).isEqualTo(Decision.APPROVE);
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.valueOf("1 JPY"))).isEqualTo(Decision.DENY);
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.parse("1"))).isEqualTo(Decision.APPROVE);
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.valueOf("4 EUR"))).isEqualTo(Decision.REMOTE);
+    }
+
+    @Test
+    void reloadsRulesWhenTheFileChanges(@TempDir Path directory) throws Exception {
+        Path file = directory.resolve("fraud-rules.yml");
+        Files.writeString(file, "fraud.rules.approve-below: 10\n");
+        FraudRuleProperties properties = new FraudRuleProperties();
+        properties.setFile(file.toString());
+        properties.setDeny(List.of(Money.parse("7")));
+        FraudRuleEngine engine = engine(properties);
+
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.parse("9.99"))).isEqualTo(Decision.APPROVE);
+
+        Files.writeString(file, "fraud:\n  rules:\n    approve-below: 5, 500 JPY\n    deny: [9.99]\n");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(1)));
+        engine.reload();
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.parse("9.99"))).isEqualTo(Decision.DENY);
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.parse("4.99"))).isEqualTo(Decision.APPROVE);
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.valueOf("499 JPY"))).isEqualTo(Decision.APPROVE);
+
+        // A broken file keeps the rules in place
+        Files.writeString(file, "fraud.rules.velocity.limits.venmo: 10\n");
+        Files.setLastModifiedTime(file, FileTime.from(Instant.now().plusSeconds(2)));
+        engine.reload();
+        assertThat(engine.screen(PaymentProviderType.PAYPAL, Money.parse("9.99"))).isEqualTo(Decision.DENY);
+    }
+
+    private FraudRuleEngine engine(FraudRuleProperties properties) {
+        return new FraudRuleEngine(properties, new StandardEnvironment(), meterRegistry, nanoTime::get);
+    }
+
+    private double decisions(String decision) {
+        return meterRegistry.get("fraud.rules.decisions").tag("decision", decision).counters().stream()
+                .mapToDouble(counter -> counter.count())
+                .sum();
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.PaymentServiceApplication;
+import com.github.tomakehurst.wiremock.WireMockServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs the service in a child JVM in {@code JOURNAL} mode with a file-based H2 database, kills it with SIGKILL while
+ * payments are in flight, restarts it and checks that every payment that was answered with 200 is in the database
+ * exactly once.
+ */
+@Tag("slow")
+class JournalCrashRecoveryTest {
+
+    private static final WireMockServer wireMock = new WireMockServer(options()
+            .dynamicPort()
+            .usingFilesUnderDirectory("wiremock"));
+
+    static {
+        wireMock.start();
+    }
+
+    @AfterAll
+    static void stopWireMock() {
+        wireMock.stop();
+    }
+
+    @TempDir
+    Path workDirectory;
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(2))
+            .build();
+
+    @Test
+    void acknowledgedPaymentsSurviveAKill() throws Exception {
+        int port = freePort();
+        Process app = start(port);
+        awaitHealthy(port);
+
+        Set<Integer> acknowledged = ConcurrentHashMap.newKeySet();
+        AtomicInteger nextAmount = new AtomicInteger(1);
+        ExecutorService load = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            load.submit(() -> {
+                while (!Thread.currentThread().isInterrupted()) {
+                    int amount = nextAmount.getAndIncrement();
+                    try {
+                        if (pay(port, amount) == 200) {
+                            acknowledged.add(amount);
+                        }
+                    } catch (IOException | InterruptedException e) {
+                        // The service was killed
+                        return;
+                    }
+                }
+            });
+        }
+        while (acknowledged.size() < 300) {
+            Thread.sleep(20);
+        }
+        app.destroyForcibly().waitFor(30, TimeUnit.SECONDS);
+        load.shutdownNow();
+        load.awaitTermination(30, TimeUnit.SECONDS);
+
+        // The database lags far behind the journal, so most acknowledged payments only exist in the journal now
+        assertThat(committedAmounts()).hasSizeLessThan(acknowledged.size());
+
+        Process restarted = start(port);
+        awaitHealthy(port);
+        restarted.destroy();
+        assertThat(restarted.waitFor(60, TimeUnit.SECONDS)).isTrue();
+
+        List<Integer> committed = committedAmounts();
+        assertThat(new HashSet<>(committed)).containsAll(acknowledged);
+        assertThat(committed).doesNotHaveDuplicates();
+    }
+
+    private Process start(int port) throws IOException {
+        String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        List<String> command = List.of(java, "-cp", System.getProperty("java.class.path"),
+                PaymentServiceApplication.class.getName(),
+                "--server.port=" + port,
+                "--spring.datasource.url=jdbc:h2:file:" + workDirectory.resolve("db"),
+                "--spring.jpa.show-sql=false",
+                "--spring.devtools.restart.enabled=false",
+                "--payment.persistence.mode=JOURNAL",
+                "--payment.persistence.journal.directory=" + workDirectory.resolve("journal"),
+                "--payment.persistence.journal.segment-size=64KB",
+                // Hold records back from the database so the kill lands between journal and database
+                "--payment.persistence.batch-size=100000",
+                "--payment.persistence.flush-interval=1h",
+                "--external.fraud-service-url=" + wireMock.baseUrl() + "/api/fraud-check",
+                "--external.payment.providers.paypal.url=" + wireMock.baseUrl() + "/v1/payments/payment",
+                "--external.payment.providers.stripe.url=" + wireMock.baseUrl() + "/v1/charges",
+                "--external.payment.providers.square.url=" + wireMock.baseUrl() + "/v2/payments");
+        return new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(workDirectory.resolve("app-" + port + "-" + System.nanoTime() + ".log").toFile())
+                .start();
+    }
+
+    private void awaitHealthy(int port) throws Exception {
+        long deadline = System.currentTimeMillis() + 120_000;
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                HttpResponse<Void> response = client.send(HttpRequest.newBuilder(
+                                URI.create("http://localhost:" + port + "/actuator/health")).GET().build(),
+                        HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException e) {
+                // Not listening yet
+            }
+            Thread.sleep(250);
+        }
+        throw new IllegalStateException("Service on port " + port + " did not start, see logs in " + workDirectory);
+    }
+
+    private int pay(int port, int amount) throws IOException, InterruptedException {
+        String body = "{\"provider\": \"PAYPAL\", \"amount\": " + amount + "}";
+        HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/payments/process"))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(10))
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    private List<Integer> committedAmounts() throws Exception {
+        List<Integer> amounts = new ArrayList<>();
+        String url = "jdbc:h2:file:" + workDirectory.resolve("db");
+        try (Connection connection = DriverManager.getConnection(url, "sa", "");
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("select amount_minor / 100 from payment_transaction")) {
+            while (rows.next()) {
+                amounts.add(rows.getInt(1));
+            }
+        }
+        return amounts;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
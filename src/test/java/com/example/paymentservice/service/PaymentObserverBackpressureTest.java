@@ -0,0 +1,132 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.example.paymentservice.observer.Observer;
+import com.example.paymentservice.provider.PaymentProvider;
+import com.example.paymentservice.repository.PaymentTransactionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Under the {@code BLOCK} overflow policy, a blocked observer makes the write-behind flusher wait once the publisher's
+ * bounded backlog is full, rather than letting the backlog grow without limit. Payments then save their own records,
+ * so they still reach the database, and wait to notify observers instead.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = {
+        "payment.persistence.mode=WRITE_BEHIND",
+        "payment.persistence.buffer-capacity=4",
+        "payment.observers.overflow-policy=BLOCK",
+        "payment.observers.queue-capacity=1"
+})
+class PaymentObserverBackpressureTest {
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private PaymentTransactionRepository transactionRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockBean
+    private FraudDetectionService fraudDetectionService;
+
+    @TestConfiguration
+    static class InstantProviders {
+
+        @Bean
+        PaymentProvider payPalProvider() {
+            return new InstantProvider(PaymentProviderType.PAYPAL);
+        }
+
+        @Bean
+        PaymentProvider stripeProvider() {
+            return new InstantProvider(PaymentProviderType.STRIPE);
+        }
+
+        @Bean
+        PaymentProvider squareProvider() {
+            return new InstantProvider(PaymentProviderType.SQUARE);
+        }
+    }
+
+    private record InstantProvider(PaymentProviderType getType) implements PaymentProvider {
+
+        @Override
+        public void processPayment(PaymentRequest request) {
+        }
+    }
+
+    @Test
+    void aBlockedObserverBoundsThePublishBacklogWithoutStoppingWrites() throws Exception {
+        when(fraudDetectionService.isFraudulent(any())).thenReturn(false);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger delivered = new AtomicInteger();
+        Observer blocked = transaction -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            delivered.incrementAndGet();
+        };
+        paymentService.registerObserver(blocked);
+        long before = transactionRepository.count();
+        ExecutorService payments = Executors.newFixedThreadPool(50);
+        try {
+            List<Future<?>> submitted = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                PaymentRequest request = new PaymentRequest();
+                request.setProvider(PaymentProviderType.STRIPE);
+                request.setAmount(Money.of(10 + i, 0));
+                submitted.add(payments.submit(() -> paymentService.processPayment(request)));
+                // So the flusher commits them in separate batches, each of which publishes to the blocked observer
+                Thread.sleep(10);
+            }
+
+            // At most the records waiting in the writer's buffer are not yet written
+            long deadline = System.currentTimeMillis() + 5000;
+            while (transactionRepository.count() < before + 46 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(transactionRepository.count()).isGreaterThanOrEqualTo(before + 46);
+            assertThat(meterRegistry.get("payment.observer.publish.pending").gauge().value()).isLessThanOrEqualTo(1);
+
+            release.countDown();
+            for (Future<?> payment : submitted) {
+                payment.get(5, TimeUnit.SECONDS);
+            }
+            deadline = System.currentTimeMillis() + 5000;
+            while (delivered.get() < 50 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(delivered).hasValue(50);
+            assertThat(transactionRepository.count()).isEqualTo(before + 50);
+        } finally {
+            release.countDown();
+            payments.shutdownNow();
+            paymentService.unregisterObserver(blocked);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.model.PaymentRequest;
+import com.example.paymentservice.provider.PaymentProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PaymentServiceConcurrencyTest {
+
+    private static final long PROVIDER_LATENCY_MS = 20;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @MockBean
+    private FraudDetectionService fraudDetectionService;
+
+    private static final AtomicInteger misrouted = new AtomicInteger();
+    private static final Map<PaymentProviderType, AtomicInteger> routed = new EnumMap<>(PaymentProviderType.class);
+
+    @TestConfiguration
+    static class SlowProviders {
+
+        @Bean
+        PaymentProvider payPalProvider() {
+            return new SlowProvider(PaymentProviderType.PAYPAL);
+        }
+
+        @Bean
+        PaymentProvider stripeProvider() {
+            return new SlowProvider(PaymentProviderType.STRIPE);
+        }
+
+        @Bean
+        PaymentProvider squareProvider() {
+            return new SlowProvider(PaymentProviderType.SQUARE);
+        }
+    }
+
+    // Stands in for a provider's API and counts the payments it is given
+    private record SlowProvider(PaymentProviderType getType) implements PaymentProvider {
+
+        @Override
+        public void processPayment(PaymentRequest request) {
+            if (request.getProvider() != getType) {
+                misrouted.incrementAndGet();
+            }
+            routed.get(getType).incrementAndGet();
+            try {
+                Thread.sleep(PROVIDER_LATENCY_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        // The default pooled client caps connections per host, which would queue the test's own requests
+        restTemplate.getRestTemplate().setRequestFactory(new JdkClientHttpRequestFactory(
+                HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()));
+        when(fraudDetectionService.isFraudulent(any())).thenReturn(false);
+        misrouted.set(0);
+        for (PaymentProviderType type : PaymentProviderType.values()) {
+            routed.put(type, new AtomicInteger());
+        }
+    }
+
+    @Test
+    void concurrentRequestsAreRoutedToTheirOwnProvider() throws Exception {
+        int requests = 300;
+        runLoad(16, requests);
+
+        assertThat(misrouted.get()).isZero();
+        assertThat(routed.values().stream().mapToInt(AtomicInteger::get).sum()).isEqualTo(requests);
+        for (PaymentProviderType type : PaymentProviderType.values()) {
+            assertThat(routed.get(type).get()).isEqualTo(requests / PaymentProviderType.values().length);
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void throughputGrowsWithRequestThreads() throws Exception {
+        double singleThreaded = runLoad(1, 30);
+        double multiThreaded = runLoad(16, 240);
+
+        assertThat(misrouted.get()).isZero();
+        assertThat(multiThreaded).isGreaterThan(singleThreaded * 4);
+    }
+
+    /**
+     * Sends {@code requests} payments spread evenly over all providers and returns the observed payments per second.
+     */
+    private double runLoad(int threads, int requests) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        PaymentProviderType[] types = PaymentProviderType.values();
+        List<Future<ResponseEntity<String>>> responses = new ArrayList<>(requests);
+        long start = System.nanoTime();
+        for (int i = 0; i < requests; i++) {
+            PaymentRequest request = new PaymentRequest();
+            request.setProvider(types[i % types.length]);
+            request.setAmount(Money.of(10 + i, 0));
+            responses.add(executor.submit(() -> restTemplate.postForEntity("/api/payments/process", request, String.class)));
+        }
+        for (Future<ResponseEntity<String>> response : responses) {
+            assertThat(response.get().getStatusCode()).isEqualTo(HttpStatus.OK);
+        }
+        long elapsedNanos = System.nanoTime() - start;
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        return requests / (elapsedNanos / 1_000_000_000.0);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.model.PaymentProviderType;
+import com.example.paymentservice.service.PaymentStageMetrics.Outcome;
+import com.example.paymentservice.service.PaymentStageMetrics.Stage;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PaymentStageMetricsTest {
+
+    private final PrometheusMeterRegistry registry = new PrometheusMeterRegistry(PrometheusConfig.DEFAULT);
+    private final PaymentStageMetrics metrics = new PaymentStageMetrics(registry);
+
+    @Test
+    void recordsIntoTheTimerOfTheStageProviderAndOutcome() {
+        metrics.record(Stage.PROVIDER_CALL, PaymentProviderType.STRIPE, Outcome.FAILURE, System.nanoTime() - 5_000_000);
+        metrics.record(Stage.FRAUD_CHECK, null, Outcome.REJECTED, System.nanoTime());
+
+        Timer providerCall = registry.get("payment.stage")
+                .tags("stage", "provider_call", "provider", "stripe", "outcome", "failure").timer();
+        assertThat(providerCall.count()).isEqualTo(1);
+        assertThat(providerCall.totalTime(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(5);
+        assertThat(registry.get("payment.stage")
+                .tags("stage", "fraud_check", "provider", "auto", "outcome", "rejected").timer().count()).isEqualTo(1);
+        assertThat(registry.scrape()).contains("payment_stage_seconds_bucket{outcome=\"failure\",provider=\"stripe\","
+                + "stage=\"provider_call\"");
+    }
+
+    @Test
+    void recordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        PaymentProviderType[] providers = PaymentProviderType.values();
+        for (int i = 0; i < 100_000; i++) {
+            metrics.record(Stage.PERSISTENCE, providers[i % providers.length], Outcome.SUCCESS, System.nanoTime());
+        }
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < 100_000; i++) {
+            metrics.record(Stage.PERSISTENCE, providers[i % providers.length], Outcome.SUCCESS, System.nanoTime());
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        // Well under one byte per recording; a single boxed value per call would be 1.6 MB
+        assertThat(allocated).isLessThan(16_384);
+    }
+}
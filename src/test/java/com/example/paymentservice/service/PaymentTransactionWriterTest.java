@@ -0,0 +1,120 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.config.TransactionPersistenceProperties;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentTransaction;
+import com.example.paymentservice.repository.PaymentTransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+class PaymentTransactionWriterTest {
+
+    @Autowired
+    private PaymentTransactionRepository transactionRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void clearTransactions() {
+        transactionRepository.deleteAll();
+    }
+
+    @Test
+    void groupCommitAnswersOnceTheRecordIsCommittedInABatch() throws Exception {
+        PaymentTransactionWriter writer = writer(DurabilityMode.GROUP_COMMIT, 10_000);
+
+        ExecutorService callers = Executors.newFixedThreadPool(16);
+        List<Future<PaymentTransaction>> saved = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            int amount = i;
+            saved.add(callers.submit(() -> {
+                PaymentTransaction transaction = writer.write(transaction(amount)).getNow(null);
+                // Already committed when write returns
+                assertThat(transactionRepository.existsById(transaction.getId())).isTrue();
+                return transaction;
+            }));
+        }
+        for (Future<PaymentTransaction> transaction : saved) {
+            assertThat(transaction.get().getId()).isNotNull();
+        }
+        callers.shutdown();
+        writer.destroy();
+
+        assertThat(transactionRepository.count()).isEqualTo(400);
+        assertThat(meterRegistry.get("payment.persistence.written").counter().count()).isEqualTo(400);
+    }
+
+    @Test
+    void writeBehindAnswersBeforeCommitAndDrainsOnShutdown() {
+        PaymentTransactionWriter writer = writer(DurabilityMode.WRITE_BEHIND, 10_000);
+
+        List<CompletableFuture<PaymentTransaction>> saved = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            saved.add(writer.write(transaction(i)));
+        }
+        assertThat(saved).anyMatch(transaction -> !transaction.isDone());
+
+        writer.destroy();
+
+        assertThat(saved).allMatch(transaction -> transaction.isDone() && !transaction.isCompletedExceptionally());
+        assertThat(transactionRepository.count()).isEqualTo(1000);
+    }
+
+    @Test
+    void fullBufferFallsBackToSynchronousSaves() {
+        PaymentTransactionWriter writer = writer(DurabilityMode.WRITE_BEHIND, 1);
+
+        for (int i = 0; i < 200; i++) {
+            writer.write(transaction(i));
+        }
+        writer.destroy();
+
+        assertThat(transactionRepository.count()).isEqualTo(200);
+    }
+
+    @Test
+    void writeAllCommitsTheWholeBatchBeforeReturningInGroupCommit() {
+        PaymentTransactionWriter writer = writer(DurabilityMode.GROUP_COMMIT, 10_000);
+
+        List<PaymentTransaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            transactions.add(transaction(i));
+        }
+        List<CompletableFuture<PaymentTransaction>> saved = writer.writeAll(transactions);
+
+        assertThat(saved).hasSize(250).allMatch(transaction -> transaction.isDone()
+                && !transaction.isCompletedExceptionally());
+        assertThat(transactionRepository.count()).isEqualTo(250);
+        writer.destroy();
+    }
+
+    private PaymentTransactionWriter writer(DurabilityMode mode, int bufferCapacity) {
+        TransactionPersistenceProperties properties = new TransactionPersistenceProperties();
+        properties.setMode(mode);
+        properties.setBufferCapacity(bufferCapacity);
+        properties.setFlushInterval(Duration.ofMillis(20));
+        return new PaymentTransactionWriter(transactionRepository, properties, meterRegistry);
+    }
+
+    private static PaymentTransaction transaction(long amount) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setProvider("PayPalProvider");
+        transaction.setAmount(Money.of(amount, 0));
+        transaction.setSuccessful(true);
+        return transaction;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentTransaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransactionJournalTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsBackAppendedRecordsAcrossSegments() {
+        try (TransactionJournal journal = new TransactionJournal(directory, 256, true, 1)) {
+            for (int i = 0; i < 50; i++) {
+                journal.sync(journal.append(transaction("StripeProvider", 10 + i)));
+            }
+            assertThat(journal.segmentCount()).isGreaterThan(1);
+        }
+
+        List<TransactionJournal.JournalRecord> records = TransactionJournal.readAll(directory);
+        assertThat(records).hasSize(50);
+        for (int i = 0; i < 50; i++) {
+            assertThat(records.get(i).sequence()).isEqualTo(i + 1);
+            assertThat(records.get(i).amount()).isEqualTo(Money.of(10 + i, 0));
+            assertThat(records.get(i).provider()).isEqualTo("StripeProvider");
+            assertThat(records.get(i).successful()).isTrue();
+        }
+    }
+
+    @Test
+    void keepsTheCreationTime() {
+        PaymentTransaction transaction = transaction("StripeProvider", 10);
+        Instant createdAt = Instant.parse("2024-03-01T10:15:30.123456Z");
+        transaction.setCreatedAt(createdAt);
+        try (TransactionJournal journal = new TransactionJournal(directory, 4096, true, 1)) {
+            journal.sync(journal.append(transaction));
+        }
+
+        assertThat(TransactionJournal.readAll(directory)).singleElement()
+                .satisfies(record -> assertThat(record.toTransaction().getCreatedAt()).isEqualTo(createdAt));
+    }
+
+    @Test
+    void readsRecordsLeftUnderASparesName() throws Exception {
+        try (TransactionJournal journal = new TransactionJournal(directory, 4096, false, 1)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(transaction("PayPalProvider", i));
+            }
+        }
+        // As if power was lost before the rename of a spare to its segment name reached the disk
+        Files.move(segments().get(0), directory.resolve("journal-spare-7.tmp"));
+
+        assertThat(TransactionJournal.readAll(directory))
+                .extracting(TransactionJournal.JournalRecord::sequence)
+                .containsExactly(1L, 2L, 3L);
+        assertThatThrownBy(() -> new TransactionJournal(directory, 4096, false, 4))
+                .isInstanceOf(IllegalStateException.class);
+
+        TransactionJournal.deleteAll(directory);
+        new TransactionJournal(directory, 4096, false, 4).close();
+    }
+
+    @Test
+    void stopsAtATornRecord() throws Exception {
+        try (TransactionJournal journal = new TransactionJournal(directory, 4096, false, 1)) {
+            for (int i = 0; i < 3; i++) {
+                journal.append(transaction("PayPalProvider", i));
+            }
+        }
+        Path segment = segments().get(0);
+        long thirdRecordPayload = 2L * (8 + 30 + "PayPalProvider".length()) + 8 + 10;
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+            // Flip a byte inside the third record, as if the crash hit while it was being written
+            file.seek(thirdRecordPayload);
+            file.write(file.read() ^ 0xFF);
+        }
+
+        assertThat(TransactionJournal.readAll(directory))
+                .extracting(TransactionJournal.JournalRecord::sequence)
+                .containsExactly(1L, 2L);
+    }
+
+    @Test
+    void deletesSegmentsOnceAllTheirRecordsAreReleased() throws Exception {
+        try (TransactionJournal journal = new TransactionJournal(directory, 128, false, 1)) {
+            for (long sequence = 1; sequence <= 12; sequence++) {
+                journal.append(transaction("SquareProvider", sequence));
+            }
+            int segments = segments().size();
+            assertThat(segments).isGreaterThan(2);
+
+            // The oldest record is still outstanding, so nothing can go
+            for (long sequence = 2; sequence <= 12; sequence++) {
+                journal.release(sequence);
+            }
+            journal.deleteReleasedSegments();
+            assertThat(segments()).hasSize(segments);
+
+            journal.release(1);
+            journal.deleteReleasedSegments();
+            assertThat(segments()).hasSize(1);
+            assertThat(journal.hasOutstanding()).isFalse();
+        }
+    }
+
+    @Test
+    void readsSegmentsWrittenWithDoubleAmounts() throws Exception {
+        byte[] provider = "PayPalProvider".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer payload = ByteBuffer.allocate(8 + 8 + 1 + 2 + provider.length)
+                .putLong(1).putDouble(19.99).put((byte) 1).putShort((short) provider.length).put(provider);
+        CRC32C crc = new CRC32C();
+        crc.update(payload.array());
+        ByteBuffer record = ByteBuffer.allocate(8 + payload.capacity())
+                .putInt(payload.capacity()).putInt((int) crc.getValue()).put(payload.array());
+        Files.write(directory.resolve(String.format("journal-%020d.log", 1)), record.array());
+        try (TransactionJournal journal = new TransactionJournal(directory, 4096, false, 2)) {
+            journal.append(transaction("StripeProvider", 5));
+        }
+
+        List<TransactionJournal.JournalRecord> records = TransactionJournal.readAll(directory);
+        assertThat(records).extracting(TransactionJournal.JournalRecord::amount)
+                .containsExactly(Money.of(1999, 2), Money.of(5, 0));
+        assertThat(records.get(0).provider()).isEqualTo("PayPalProvider");
+    }
+
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static PaymentTransaction transaction(String provider, long amount) {
+        PaymentTransaction transaction = new PaymentTransaction();
+        transaction.setProvider(provider);
+        transaction.setAmount(Money.of(amount, 0));
+        transaction.setSuccessful(true);
+        return transaction;
+    }
+}
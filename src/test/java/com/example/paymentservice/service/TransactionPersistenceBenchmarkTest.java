@@ -0,0 +1,80 @@
+package com.example.paymentservice.service;
+
+import com.example.paymentservice.config.TransactionPersistenceProperties;
+import com.example.paymentservice.model.Money;
+import com.example.paymentservice.model.PaymentTransaction;
+import com.example.paymentservice.repository.PaymentTransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Inserts per second into the in-memory H2 database, with one save and commit per payment compared with the batched
+ * writer modes, all driven by the same number of concurrent payment threads.
+ */
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE, properties = "spring.jpa.show-sql=false")
+class TransactionPersistenceBenchmarkTest {
+
+    private static final int THREADS = 32;
+    private static final int INSERTS = 50_000;
+
+    @Autowired
+    private PaymentTransactionRepository transactionRepository;
+
+    @Test
+    void batchedWritesInsertFasterThanOneSavePerPayment() throws Exception {
+        for (DurabilityMode mode : DurabilityMode.values()) {
+            run(mode, 5_000);
+        }
+
+        double sync = run(DurabilityMode.SYNC, INSERTS);
+        double groupCommit = run(DurabilityMode.GROUP_COMMIT, INSERTS);
+        double writeBehind = run(DurabilityMode.WRITE_BEHIND, INSERTS);
+
+        System.out.printf("SYNC: %.0f inserts/s, GROUP_COMMIT: %.0f inserts/s, WRITE_BEHIND: %.0f inserts/s%n",
+                sync, groupCommit, writeBehind);
+
+        assertThat(groupCommit).isGreaterThan(sync);
+        assertThat(writeBehind).isGreaterThan(sync);
+    }
+
+    private double run(DurabilityMode mode, int inserts) throws Exception {
+        transactionRepository.deleteAllInBatch();
+        TransactionPersistenceProperties properties = new TransactionPersistenceProperties();
+        properties.setMode(mode);
+        PaymentTransactionWriter writer = new PaymentTransactionWriter(transactionRepository, properties,
+                new SimpleMeterRegistry());
+
+        ExecutorService payments = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        List<Future<?>> done = new ArrayList<>(inserts);
+        for (int i = 0; i < inserts; i++) {
+            PaymentTransaction transaction = new PaymentTransaction();
+            transaction.setProvider("PayPalProvider");
+            transaction.setAmount(Money.of(i, 0));
+            transaction.setSuccessful(true);
+            done.add(payments.submit(() -> writer.write(transaction)));
+        }
+        for (Future<?> insert : done) {
+            insert.get();
+        }
+        // Write-behind only counts once everything it buffered is committed
+        writer.destroy();
+        long elapsedNanos = System.nanoTime() - start;
+        payments.shutdown();
+
+        assertThat(transactionRepository.count()).isEqualTo(inserts);
+        return inserts / (elapsedNanos / 1_000_000_000.0);
+    }
+}